@@ -0,0 +1,44 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cloud.CloudVerdictStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@EnableConfigurationProperties(CloudProperties.class)
+public class CloudConfig {
+
+    /*
+    checks are network bound, they run on a shared pool and each request uses a few of its threads.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService cloudCheckExecutor(CloudProperties properties) {
+        return Executors.newFixedThreadPool(
+                properties.getCheck().getThreads(),
+                new CustomizableThreadFactory("cloud-check-")
+        );
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pcc.cloud.verdicts", name = "enabled", havingValue = "true")
+    public CloudVerdictStore cloudVerdictStore(
+            CloudProperties properties,
+            MeterRegistry meterRegistry
+    ) throws IOException {
+        var verdictProperties = properties.getVerdicts();
+        if (verdictProperties.getDirectory() == null) {
+            throw new IllegalStateException("pcc.cloud.verdicts.directory has to be set to store cloud verdicts");
+        }
+        var verdictStore = new CloudVerdictStore(verdictProperties.getDirectory(), verdictProperties.getMaxEntries());
+        verdictStore.bindTo(meterRegistry);
+        return verdictStore;
+    }
+}
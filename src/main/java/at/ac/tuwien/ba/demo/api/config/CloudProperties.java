@@ -0,0 +1,82 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+/**
+ * settings for detecting cloudy items, bound to the prefix {@code pcc.cloud}.
+ */
+@ConfigurationProperties(prefix = "pcc.cloud")
+@Getter
+@Setter
+public class CloudProperties {
+
+    private final Check check = new Check();
+
+    private final Progressive progressive = new Progressive();
+
+    private final Verdicts verdicts = new Verdicts();
+
+    @Getter
+    @Setter
+    public static class Check {
+
+        /**
+         * the number of threads checking items, shared by all requests (the bean {@code cloudCheckExecutor}).
+         */
+        private int threads = 16;
+
+        /**
+         * the maximum number of items of a single request which are checked concurrently.
+         */
+        private int parallelism = 4;
+
+        /**
+         * when filtering cloudy items this many candidates per requested item are searched,
+         * the candidates are checked in order until enough cloud free items are found.
+         */
+        private int candidateFactor = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class Progressive {
+
+        /**
+         * whether a low resolution overview of the cloud band is checked first,
+         * a cloud in an overview pixel lying entirely within the area decides the item is cloudy,
+         * otherwise the full resolution image is checked.
+         * this requires overviews which keep the classes of the cloud band (nearest or mode resampling).
+         */
+        private boolean enabled = true;
+
+        /**
+         * the pixel size of the overview in units of the coverage crs (meters for sentinel-2).
+         */
+        private double overviewResolution = 160;
+    }
+
+    @Getter
+    @Setter
+    public static class Verdicts {
+
+        /**
+         * whether the cloudiness of an item within an area is stored, so repeated checks skip reading the image.
+         */
+        private boolean enabled = false;
+
+        /**
+         * the directory the verdicts are persisted in, they are restored from it after a restart.
+         * it has to be set if the verdicts are stored.
+         */
+        private Path directory;
+
+        /**
+         * the maximum number of stored verdicts, this also bounds the size of the persisted log.
+         */
+        private long maxEntries = 100_000;
+    }
+}
@@ -0,0 +1,169 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogAssetMirror;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogBlockCache;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogCircuitBreaker;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogFetchPlanner;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogHeaderCache;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogHedging;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogRangeFetcher;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogReadContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpMetricsEventListener;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties(CogProperties.class)
+public class CogConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "pcc.cog.block-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public CogBlockCache cogBlockCache(CogProperties properties, MeterRegistry meterRegistry) {
+        var blockCache = new CogBlockCache(properties.getBlockCache().getMaxSize().toBytes());
+        blockCache.bindTo(meterRegistry);
+        CogReadContext.setBlockCache(blockCache);
+        return blockCache;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "pcc.cog.header-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public CogHeaderCache cogHeaderCache(CogProperties properties, MeterRegistry meterRegistry) {
+        var headerCache = new CogHeaderCache(properties.getHeaderCache().getMaxAssets());
+        headerCache.bindTo(meterRegistry);
+        CogReadContext.setHeaderCache(headerCache);
+        return headerCache;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pcc.cog.mirror", name = "enabled", havingValue = "true")
+    public CogAssetMirror cogAssetMirror(
+            CogProperties properties,
+            OkHttpClient cogHttpClient,
+            CogCircuitBreaker cogCircuitBreaker,
+            MeterRegistry meterRegistry
+    ) throws IOException {
+        var mirrorProperties = properties.getMirror();
+        var mirror = new CogAssetMirror(
+                mirrorProperties.getDirectory(),
+                mirrorProperties.getMaxSize().toBytes(),
+                mirrorProperties.getHotThreshold(),
+                mirrorProperties.getHotWindow(),
+                cogHttpClient,
+                cogCircuitBreaker,
+                Executors.newFixedThreadPool(
+                        mirrorProperties.getDownloadThreads(),
+                        new CustomizableThreadFactory("cog-mirror-")
+                )
+        );
+        mirror.bindTo(meterRegistry);
+        CogReadContext.setAssetMirror(mirror);
+        return mirror;
+    }
+
+    @Bean
+    public OkHttpClient cogHttpClient(CogProperties properties, MeterRegistry meterRegistry) {
+        var httpProperties = properties.getHttp();
+
+        var dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(httpProperties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(httpProperties.getMaxRequestsPerHost());
+
+        var connectionPool = new ConnectionPool(
+                httpProperties.getMaxIdleConnections(),
+                httpProperties.getKeepAlive().toMillis(),
+                TimeUnit.MILLISECONDS
+        );
+        Gauge.builder("cog.http.connections", connectionPool, ConnectionPool::connectionCount)
+                .description("open connections of the cog transport")
+                .tag("state", "total")
+                .register(meterRegistry);
+        Gauge.builder("cog.http.connections", connectionPool, ConnectionPool::idleConnectionCount)
+                .description("open connections of the cog transport")
+                .tag("state", "idle")
+                .register(meterRegistry);
+
+        var protocols = httpProperties.isHttp2()
+                ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : List.of(Protocol.HTTP_1_1);
+
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .protocols(protocols)
+                .connectTimeout(httpProperties.getConnectTimeout())
+                .readTimeout(httpProperties.getReadTimeout())
+                .eventListener(OkHttpMetricsEventListener.builder(meterRegistry, "cog.http.requests").build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pcc.cog.hedge", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public CogHedging cogHedging(CogProperties properties, MeterRegistry meterRegistry) {
+        var scheduler = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("cog-hedge-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        var hedging = new CogHedging(
+                properties.getHedge().getPercentile(),
+                properties.getHedge().getMinDelay(),
+                properties.getHedge().getMinSamples(),
+                scheduler
+        );
+        hedging.bindTo(meterRegistry);
+        return hedging;
+    }
+
+    @Bean
+    public CogCircuitBreaker cogCircuitBreaker(CogProperties properties, MeterRegistry meterRegistry) {
+        var circuitBreaker = new CogCircuitBreaker(
+                properties.getCircuitBreaker().getFailureThreshold(),
+                properties.getCircuitBreaker().getOpenDuration()
+        );
+        circuitBreaker.bindTo(meterRegistry);
+        return circuitBreaker;
+    }
+
+    @Bean
+    public CogRangeFetcher cogRangeFetcher(
+            CogProperties properties,
+            OkHttpClient cogHttpClient,
+            ObjectProvider<CogHedging> cogHedging,
+            CogCircuitBreaker cogCircuitBreaker
+    ) {
+        var planner = new CogFetchPlanner(
+                properties.getFetch().getMaxGap().toBytes(),
+                properties.getFetch().getMaxRequestSize().toBytes()
+        );
+        var hedging = cogHedging.getIfAvailable();
+        var hedgeClient = hedging == null ? cogHttpClient : hedgeHttpClient(cogHttpClient, properties.getHedge());
+        var fetcher = new CogRangeFetcher(cogHttpClient, hedgeClient, planner, hedging, cogCircuitBreaker);
+        CogReadContext.setRangeFetcher(fetcher);
+        return fetcher;
+    }
+
+    /*
+    hedged requests get a dispatcher of their own, the connection pool and the settings are shared.
+     */
+    private static OkHttpClient hedgeHttpClient(OkHttpClient cogHttpClient, CogProperties.Hedge hedgeProperties) {
+        var dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(hedgeProperties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(hedgeProperties.getMaxRequestsPerHost());
+        return cogHttpClient.newBuilder()
+                .dispatcher(dispatcher)
+                .build();
+    }
+}
@@ -0,0 +1,195 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * settings for reading cloud optimized geotiffs, bound to the prefix {@code pcc.cog}.
+ */
+@ConfigurationProperties(prefix = "pcc.cog")
+@Getter
+@Setter
+public class CogProperties {
+
+    private final BlockCache blockCache = new BlockCache();
+
+    private final Mirror mirror = new Mirror();
+
+    private final Fetch fetch = new Fetch();
+
+    private final HeaderCache headerCache = new HeaderCache();
+
+    private final Http http = new Http();
+
+    private final Hedge hedge = new Hedge();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    @Getter
+    @Setter
+    public static class BlockCache {
+
+        /**
+         * whether fetched byte ranges are kept in memory.
+         */
+        private boolean enabled = true;
+
+        /**
+         * upper bound for the sum of all cached byte ranges.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+    }
+
+    @Getter
+    @Setter
+    public static class Mirror {
+
+        /**
+         * whether hot assets are downloaded to the local disk.
+         */
+        private boolean enabled = false;
+
+        /**
+         * the directory holding the mirrored assets, it is reused after a restart.
+         */
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "pcc-demo-api", "cog-mirror");
+
+        /**
+         * upper bound for the disk space used by mirrored assets.
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(2);
+
+        /**
+         * number of reads within {@link #hotWindow} after which an asset gets mirrored.
+         */
+        private int hotThreshold = 5;
+
+        /**
+         * the time accesses are counted, an asset whose download failed is not downloaded again within it.
+         */
+        private Duration hotWindow = Duration.ofHours(1);
+
+        private int downloadThreads = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class Fetch {
+
+        /**
+         * ranges separated by at most this many bytes are fetched with a single request.
+         */
+        private DataSize maxGap = DataSize.ofKilobytes(16);
+
+        /**
+         * upper bound for the size of a merged request.
+         */
+        private DataSize maxRequestSize = DataSize.ofMegabytes(8);
+    }
+
+    @Getter
+    @Setter
+    public static class HeaderCache {
+
+        /**
+         * whether parsed headers are cached and header lengths are learned per asset profile.
+         */
+        private boolean enabled = true;
+
+        /**
+         * the maximum number of assets whose header is kept in memory.
+         */
+        private long maxAssets = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Http {
+
+        /**
+         * the maximum number of requests sent in parallel to the same host,
+         * with http/2 they may share a single connection.
+         */
+        private int maxRequestsPerHost = 8;
+
+        /**
+         * the maximum number of requests sent in parallel to all hosts.
+         */
+        private int maxRequests = 64;
+
+        /**
+         * the maximum number of idle connections kept open for reuse.
+         */
+        private int maxIdleConnections = 16;
+
+        /**
+         * how long an idle connection is kept open.
+         */
+        private Duration keepAlive = Duration.ofMinutes(5);
+
+        private Duration connectTimeout = Duration.ofSeconds(5);
+
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        /**
+         * whether HTTP/2 is negotiated with servers supporting it.
+         */
+        private boolean http2 = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Hedge {
+
+        /**
+         * whether slow range requests are sent a second time.
+         */
+        private boolean enabled = true;
+
+        /**
+         * the latency percentile (0..1) after which a range request is hedged.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * the minimum time before a range request is hedged.
+         */
+        private Duration minDelay = Duration.ofMillis(50);
+
+        /**
+         * the number of observed latencies needed before requests are hedged.
+         */
+        private int minSamples = 20;
+
+        /**
+         * the maximum number of hedged requests sent in parallel to the same host,
+         * in addition to the requests limited by {@link Http#maxRequestsPerHost}.
+         */
+        private int maxRequestsPerHost = 4;
+
+        /**
+         * the maximum number of hedged requests sent in parallel to all hosts.
+         */
+        private int maxRequests = 16;
+    }
+
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+
+        /**
+         * the number of consecutive failures after which a host is not used anymore.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * how long a failing host is not used before a trial request is sent.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+}
@@ -1,15 +1,124 @@
 package at.ac.tuwien.ba.demo.api.config;
 
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.FileItemSource;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.ItemSource;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.ItemSummaryClient;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.LocalItemCatalog;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.ParallelItemSearch;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.RemoteItemSource;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.SasTokenCache;
+import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github11904212.pcc.PlanetaryComputerClient;
 import io.github11904212.pcc.impl.PCClientImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.GeometryCollection;
+import mil.nga.sf.wkt.GeometryReader;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
 
 @Configuration
+@EnableConfigurationProperties(StacProperties.class)
 public class PccConfig {
 
     @Bean
     public PlanetaryComputerClient getPCClient(){
         return new PCClientImpl();
     }
+
+    @Bean
+    public ItemSummaryClient itemSummaryClient(StacProperties properties, ObjectMapper objectMapper) {
+        return new ItemSummaryClient(
+                HttpClient.newBuilder()
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .connectTimeout(properties.getConnectTimeout())
+                        .build(),
+                objectMapper,
+                properties.getSearchUrl(),
+                properties.getSearchTimeout()
+        );
+    }
+
+    @Bean(destroyMethod = "close")
+    public SasTokenCache sasTokenCache(
+            PlanetaryComputerClient planetaryComputer,
+            StacProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        var sasProperties = properties.getSas();
+        var tokenCache = new SasTokenCache(
+                planetaryComputer,
+                sasProperties.getMinRemaining(),
+                sasProperties.getRefreshAhead(),
+                sasProperties.getIdleTimeout(),
+                Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sas-refresh-"))
+        );
+        tokenCache.bindTo(meterRegistry);
+        return tokenCache;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pcc.stac.catalog", name = "enabled", havingValue = "true")
+    public LocalItemCatalog localItemCatalog(
+            PlanetaryComputerClient planetaryComputer,
+            GeoJsonToJtsConverter geoJsonToJtsConverter,
+            StacProperties properties,
+            MeterRegistry meterRegistry
+    ) throws IOException {
+        var catalogProperties = properties.getCatalog();
+
+        ItemSource source = switch (catalogProperties.getSource()) {
+            case REMOTE -> new RemoteItemSource(planetaryComputer.getStacClientInstance());
+            case FILE -> new FileItemSource(catalogProperties.getFile(), geoJsonToJtsConverter);
+        };
+
+        List<GeometryCollection> regions = new ArrayList<>();
+        for (var wkt : catalogProperties.getRegions()) {
+            regions.add(new GeometryCollection(List.of(FeatureConverter.toGeometry(GeometryReader.readGeometry(wkt)))));
+        }
+
+        var catalog = new LocalItemCatalog(
+                source,
+                geoJsonToJtsConverter,
+                catalogProperties.getCollections(),
+                regions,
+                catalogProperties.getHistory(),
+                catalogProperties.getSyncOverlap(),
+                catalogProperties.getMaxStaleness(),
+                catalogProperties.getPageLimit(),
+                Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stac-catalog-"))
+        );
+        catalog.bindTo(meterRegistry);
+        catalog.start(catalogProperties.getSyncInterval());
+        return catalog;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ParallelItemSearch parallelItemSearch(
+            PlanetaryComputerClient planetaryComputer,
+            StacProperties properties
+    ) {
+        var streamProperties = properties.getStream();
+        return new ParallelItemSearch(
+                new RemoteItemSource(planetaryComputer.getStacClientInstance()),
+                streamProperties.getSliceDuration(),
+                streamProperties.getMinSliceDuration(),
+                streamProperties.getPageLimit(),
+                streamProperties.getParallelRequests(),
+                Executors.newFixedThreadPool(
+                        streamProperties.getParallelRequests(),
+                        new CustomizableThreadFactory("stac-stream-")
+                )
+        );
+    }
 }
@@ -0,0 +1,21 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import at.ac.tuwien.ba.demo.api.util.raster.AoiMaskCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RasterProperties.class)
+public class RasterConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "pcc.raster.mask-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public AoiMaskCache aoiMaskCache(RasterProperties properties, MeterRegistry meterRegistry) {
+        var maskCache = new AoiMaskCache(properties.getMaskCache().getMaxSize().toBytes());
+        maskCache.bindTo(meterRegistry);
+        return maskCache;
+    }
+}
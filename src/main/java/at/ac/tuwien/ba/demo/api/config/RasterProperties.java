@@ -0,0 +1,50 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * settings for processing the fetched rasters, bound to the prefix {@code pcc.raster}.
+ */
+@ConfigurationProperties(prefix = "pcc.raster")
+@Getter
+@Setter
+public class RasterProperties {
+
+    private final MaskCache maskCache = new MaskCache();
+
+    private final Processing processing = new Processing();
+
+    @Getter
+    @Setter
+    public static class MaskCache {
+
+        /**
+         * whether the pixel masks of areas of interest are reused across bands, items and requests.
+         */
+        private boolean enabled = true;
+
+        /**
+         * upper bound for the memory used by cached masks.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(32);
+    }
+
+    @Getter
+    @Setter
+    public static class Processing {
+
+        /**
+         * the number of threads processing pixels, shared by all requests.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * rasters are split into strips of at most this many rows which are processed concurrently,
+         * it must be at least 1.
+         */
+        private int stripRows = 64;
+    }
+}
@@ -0,0 +1,165 @@
+package at.ac.tuwien.ba.demo.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * settings for querying the planetary computer STAC api, bound to the prefix {@code pcc.stac}.
+ */
+@ConfigurationProperties(prefix = "pcc.stac")
+@Getter
+@Setter
+public class StacProperties {
+
+    /**
+     * the root of the STAC api the planetary computer client searches,
+     * searches the STAC client does not support are sent to its search endpoint directly.
+     */
+    private URI url = URI.create("https://planetarycomputer.microsoft.com/api/stac/v1");
+
+    /**
+     * the maximum duration of a search sent to the STAC api directly.
+     */
+    private Duration searchTimeout = Duration.ofSeconds(30);
+
+    /**
+     * the maximum duration to establish a connection to the STAC api for a search sent directly.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    private final ItemCache itemCache = new ItemCache();
+
+    private final Sas sas = new Sas();
+
+    private final Catalog catalog = new Catalog();
+
+    private final Stream stream = new Stream();
+
+    /**
+     * @return the item search endpoint of the STAC api at {@link #url}.
+     */
+    public URI getSearchUrl() {
+        var root = url.toString();
+        return URI.create(root.endsWith("/") ? root + "search" : root + "/search");
+    }
+
+    @Getter
+    @Setter
+    public static class ItemCache {
+
+        /**
+         * how long the metadata of an item is reused before it is fetched again.
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * the maximum number of cached items.
+         */
+        private long maxSize = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Sas {
+
+        /**
+         * a cached token is not used anymore if it expires within this duration.
+         */
+        private Duration minRemaining = Duration.ofMinutes(2);
+
+        /**
+         * a used token is refreshed in the background if it expires within this duration.
+         */
+        private Duration refreshAhead = Duration.ofMinutes(10);
+
+        /**
+         * tokens which were not used within this duration are dropped instead of refreshed.
+         */
+        private Duration idleTimeout = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Catalog {
+
+        /**
+         * whether searches within the monitored collections and regions are answered by a local catalog.
+         */
+        private boolean enabled = false;
+
+        /**
+         * where the local catalog is synced from.
+         */
+        private Source source = Source.REMOTE;
+
+        /**
+         * the ItemCollection json file read if the source is {@code file}.
+         */
+        private Path file;
+
+        private List<String> collections = List.of("sentinel-2-l2a");
+
+        /**
+         * the monitored regions as well known text, coordinates in WGS84 (longitude, latitude).
+         */
+        private List<String> regions = List.of();
+
+        /**
+         * how far back in time the first sync reaches.
+         */
+        private Duration history = Duration.ofDays(365);
+
+        private Duration syncInterval = Duration.ofMinutes(15);
+
+        /**
+         * items this much older than the newest known item are fetched again, to catch late published items.
+         */
+        private Duration syncOverlap = Duration.ofDays(2);
+
+        /**
+         * searches ending at most this much after the last sync are answered locally.
+         */
+        private Duration maxStaleness = Duration.ofHours(1);
+
+        /**
+         * the maximum number of items requested with a single search while syncing.
+         */
+        private int pageLimit = 1000;
+
+        public enum Source {
+            REMOTE,
+            FILE
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+
+        /**
+         * the length of the slices a long time interval is split into.
+         */
+        private Duration sliceDuration = Duration.ofDays(30);
+
+        /**
+         * slices returning a full page are split again, but not below this length.
+         */
+        private Duration minSliceDuration = Duration.ofHours(1);
+
+        /**
+         * the maximum number of items requested per slice.
+         */
+        private int pageLimit = 1000;
+
+        /**
+         * the number of slices searched concurrently, this also bounds the number of items held in memory.
+         */
+        private int parallelRequests = 4;
+    }
+}
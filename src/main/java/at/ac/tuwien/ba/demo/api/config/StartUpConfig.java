@@ -43,7 +43,8 @@ public class StartUpConfig implements ApplicationListener<ApplicationReadyEvent>
             imageEndpoint.getGeoTiff(
                     ITEM_ID,
                     AOI_WKT,
-                    ImageType.TCI
+                    ImageType.TCI,
+                    null
             );
         } catch (Exception e) {
             LOGGER.error("start up failed, terminating application.", e);
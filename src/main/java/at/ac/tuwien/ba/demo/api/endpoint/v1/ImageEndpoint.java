@@ -27,6 +27,7 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import java.lang.invoke.MethodHandles;
 
 import static at.ac.tuwien.ba.demo.api.endpoint.v1.dto.SampleConst.*;
@@ -74,6 +75,9 @@ public class ImageEndpoint {
      *                       the coordinates must be given in WGS84 format (longitude, latitude).
      *                       given area must be less the 10km2.
      * @param imageType the {@link ImageType} of the requested image.
+     * @param resolution the requested pixel size in meters (default native resolution).
+     *                   coarser resolutions are read from the overviews of the geotiff,
+     *                   which reduces the response time for large areas and previews.
      * @return the image as geotiff.
      */
     @GetMapping(
@@ -91,10 +95,13 @@ public class ImageEndpoint {
 
             @Schema(example = SAMPLE_IMAGE_TYPE)
             @NotNull
-            @RequestParam ImageType imageType
+            @RequestParam ImageType imageType,
+
+            @Positive
+            @RequestParam(required = false) Double resolution
     ) throws NotFoundException, ServiceException, ValidationException {
-        LOGGER.info("GET " + BASE_URL + " itemId={} areaOfInterest={} imageType={}",
-                itemId, areaOfInterest, imageType
+        LOGGER.info("GET " + BASE_URL + " itemId={} areaOfInterest={} imageType={} resolution={}",
+                itemId, areaOfInterest, imageType, resolution
         );
 
         ImageReqDto dto = new ImageReqDto();
@@ -102,6 +109,7 @@ public class ImageEndpoint {
         var geom = wktMapper.wktToGeometryCollection(areaOfInterest);
         dto.setAreaOfInterest(geom);
         dto.setImageType(imageType);
+        dto.setResolution(resolution);
         return fetchGeoTiff(dto);
     }
 
@@ -133,9 +141,15 @@ public class ImageEndpoint {
         var aoi = this.geoJsonToJtsConverter.convertGeometry(dto.getAreaOfInterest());
         aoi.setSRID(4326);
 
+        var resolution = dto.getResolution();
+
         var coverage = switch (dto.getImageType()) {
-            case TCI -> imageService.getTciImage(item, aoi);
-            case NDVI -> imageService.getNdviImage(item, aoi);
+            case TCI -> resolution == null
+                    ? imageService.getTciImage(item, aoi)
+                    : imageService.getTciImage(item, aoi, resolution);
+            case NDVI -> resolution == null
+                    ? imageService.getNdviImage(item, aoi)
+                    : imageService.getNdviImage(item, aoi, resolution);
         };
 
         return geoTiffMapper.coverageToBinary(coverage);
@@ -9,6 +9,8 @@ import at.ac.tuwien.ba.demo.api.exception.NotFoundException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
 import at.ac.tuwien.ba.demo.api.exception.ValidationException;
 import at.ac.tuwien.ba.demo.api.service.ItemService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.v3.oas.annotations.media.Schema;
 import mil.nga.sf.geojson.FeatureConverter;
 import mil.nga.sf.geojson.GeoJsonObject;
@@ -27,14 +29,20 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PastOrPresent;
 import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -48,9 +56,12 @@ import static at.ac.tuwien.ba.demo.api.endpoint.v1.dto.SampleConst.*;
 @Validated
 public class ItemEndpoint {
     public static final String BASE_URL = "/v1/items";
+    public static final String STREAM_URL = "/stream";
     public static final int MAX_RESULTS = 100;
     public static final int DEFAULT_RESULTS = 10;
     public static final boolean DEFAULT_FILTER_CLOUDY = false;
+    public static final double DEFAULT_CLOUDY_SCENE_COVER = 100;
+    public static final double DEFAULT_MAX_CLOUD_PERCENT = 0;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
@@ -59,19 +70,22 @@ public class ItemEndpoint {
     private final ItemMapper itemMapper;
     private final WktMapper wktMapper;
     private final AreaOfIntrestValidator aoiValidator;
+    private final ObjectWriter itemWriter;
 
     @Autowired
     public ItemEndpoint(
 
             ItemService itemService, ItemMapper itemMapper,
             WktMapper wktMapper,
-            AreaOfIntrestValidator aoiValidator
+            AreaOfIntrestValidator aoiValidator,
+            ObjectMapper objectMapper
     ) {
         this.itemService = itemService;
 
         this.itemMapper = itemMapper;
         this.wktMapper = wktMapper;
         this.aoiValidator = aoiValidator;
+        this.itemWriter = objectMapper.writerFor(ItemInfoDto.class);
     }
 
     /**
@@ -86,6 +100,14 @@ public class ItemEndpoint {
      *                       given area must be less the 10km2.
      * @param limit an upper limit on the number of results returned (default 100).
      * @param filterCloudy indicates whether only cloud-free images are returned.
+     * @param cloudySceneCover if filtering cloudy items, items whose whole scene is at least this cloudy (percent)
+     *                         are skipped without checking the area of interest (default 100).
+     * @param clearSceneCover if filtering cloudy items, items whose whole scene is at most this cloudy (percent)
+     *                        are cloud free without checking the area of interest (default none, every item
+     *                        is checked). the scene cloud cover does not count cloud shadows, so such items
+     *                        may contain pixels within the area which are not cloud free.
+     * @param maxCloudPercent only items whose area of interest is at most this cloudy (percent) are returned,
+     *                        setting it implies filterCloudy (default 0, no cloudy pixel is tolerated).
      * @return the list of matching {@link ItemInfoDto}
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
@@ -113,11 +135,22 @@ public class ItemEndpoint {
             @Max(value = MAX_RESULTS)
             @RequestParam(required = false) Integer limit,
 
-            @RequestParam(required = false) Boolean filterCloudy
+            @RequestParam(required = false) Boolean filterCloudy,
+
+            @DecimalMin("0") @DecimalMax("100")
+            @RequestParam(required = false) Double cloudySceneCover,
+
+            @DecimalMin("0") @DecimalMax("100")
+            @RequestParam(required = false) Double clearSceneCover,
+
+            @DecimalMin("0") @DecimalMax("100")
+            @RequestParam(required = false) Double maxCloudPercent
             ) throws ValidationException, NotFoundException, ServiceException {
 
-        LOGGER.info("GET " + BASE_URL + " collections={} dateFrom={} dateTo={} aresOfInterest={} limit={}",
-                collections, dateTimeFrom, dateTimeTo, aresOfInterest, limit
+        LOGGER.info("GET " + BASE_URL + " collections={} dateFrom={} dateTo={} aresOfInterest={} limit={}"
+                        + " filterCloudy={} cloudySceneCover={} clearSceneCover={} maxCloudPercent={}",
+                collections, dateTimeFrom, dateTimeTo, aresOfInterest, limit,
+                filterCloudy, cloudySceneCover, clearSceneCover, maxCloudPercent
         );
 
         GeometryCollection collection = wktMapper.wktToGeometryCollection(aresOfInterest);
@@ -128,7 +161,10 @@ public class ItemEndpoint {
                 Optional.ofNullable(dateTimeTo),
                 collection,
                 Optional.ofNullable(limit),
-                Optional.ofNullable(filterCloudy)
+                Optional.ofNullable(filterCloudy),
+                Optional.ofNullable(cloudySceneCover),
+                Optional.ofNullable(clearSceneCover),
+                Optional.ofNullable(maxCloudPercent)
         );
     }
 
@@ -158,43 +194,138 @@ public class ItemEndpoint {
                 Optional.ofNullable(itemReqDto.getDateTimeTo()),
                 collection,
                 Optional.ofNullable(itemReqDto.getLimit()),
-                Optional.ofNullable(itemReqDto.getFilterCloudy())
+                Optional.ofNullable(itemReqDto.getFilterCloudy()),
+                Optional.ofNullable(itemReqDto.getCloudySceneCover()),
+                Optional.ofNullable(itemReqDto.getClearSceneCover()),
+                Optional.ofNullable(itemReqDto.getMaxCloudPercent())
         );
     }
 
+    /**
+     * a query endpoint to get all items matching the given query parameters, without an upper limit.
+     * the items are written as newline delimited json (one {@link ItemInfoDto} per line) while they are searched,
+     * so multi-year time series can be retrieved without holding them in memory.
+     * long time intervals are split and searched concurrently, the items are returned roughly the newest first.
+     * filtering cloudy items is not supported by this endpoint.
+     *
+     * @param collections the list of collections which should be searched.
+     * @param dateTimeFrom items should not be older than this date.
+     * @param dateTimeTo items should not be newer than this date (default is current datetime).
+     * @param aresOfInterest items should intersect with this area of interest.
+     *                       the string must be formatted as well known text and
+     *                       the coordinates must be given in WGS84 format (longitude, latitude).
+     *                       given area must be less the 10km2.
+     * @return the matching {@link ItemInfoDto} as newline delimited json.
+     */
+    @GetMapping(value = STREAM_URL, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody streamItems(
+            @Schema(example = SAMPLE_COLLECTION)
+            @NotEmpty
+            @RequestParam List<String> collections,
+
+            @Schema(example = SAMPLE_DATETIME_FROM)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @PastOrPresent
+            @RequestParam ZonedDateTime dateTimeFrom,
+
+            @Schema(example = SAMPLE_DATETIME_TO)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @PastOrPresent
+            @RequestParam(required = false) ZonedDateTime dateTimeTo,
+
+            @Schema(example = SAMPLE_WKT)
+            @NotBlank
+            @RequestParam String aresOfInterest
+    ) throws ValidationException {
+
+        LOGGER.info("GET " + BASE_URL + STREAM_URL + " collections={} dateFrom={} dateTo={} aresOfInterest={}",
+                collections, dateTimeFrom, dateTimeTo, aresOfInterest
+        );
+
+        GeometryCollection collection = wktMapper.wktToGeometryCollection(aresOfInterest);
+        aoiValidator.validate(collection);
+        var dateTimeToDefault = validateInterval(dateTimeFrom, Optional.ofNullable(dateTimeTo));
+
+        // the response is already committed while streaming, so errors can only abort it
+        return outputStream -> {
+            try {
+                this.itemService.streamItemsInInterval(
+                        collections,
+                        dateTimeFrom,
+                        dateTimeToDefault,
+                        collection,
+                        item -> writeLine(outputStream, itemMapper.itemToDto(item))
+                );
+            } catch (ServiceException e) {
+                throw new IOException("could not stream items", e);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    private void writeLine(OutputStream outputStream, ItemInfoDto dto) {
+        try {
+            outputStream.write(itemWriter.writeValueAsBytes(dto));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            // most likely the client closed the connection, this aborts the search
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ZonedDateTime validateInterval(
+            ZonedDateTime dateTimeFrom,
+            Optional<ZonedDateTime> dateTimeTo
+    ) throws ValidationException {
+        var dateTimeToDefault = dateTimeTo.orElse(ZonedDateTime.now(ZoneId.of("UTC")));
+
+        if (dateTimeFrom.isAfter(dateTimeToDefault)) {
+            LOGGER.debug("invalid request dateFrom({}) is before dateTo({})", dateTimeFrom, dateTimeTo);
+            throw new ValidationException("the given dateTimeFrom must be before the given dateTimeTo");
+        }
+        return dateTimeToDefault;
+    }
+
     private List<ItemInfoDto> searchItems(
             List<String> collections,
             ZonedDateTime dateTimeFrom,
             Optional<ZonedDateTime> dateTimeTo,
             GeometryCollection aresOfInterest,
             Optional<Integer> limit,
-            Optional<Boolean> filterCloudy
+            Optional<Boolean> filterCloudy,
+            Optional<Double> cloudySceneCover,
+            Optional<Double> clearSceneCover,
+            Optional<Double> maxCloudPercent
     ) throws ValidationException, NotFoundException, ServiceException {
 
         aoiValidator.validate(aresOfInterest);
 
-        var dateTimeToDefault = dateTimeTo.orElse(ZonedDateTime.now(ZoneId.of("UTC")));
-
+        var dateTimeToDefault = validateInterval(dateTimeFrom, dateTimeTo);
 
-        if (dateTimeFrom.isAfter(dateTimeToDefault)) {
-            LOGGER.debug("invalid request dateFrom({}) is before dateTo({})", dateTimeFrom, dateTimeTo);
-            throw new ValidationException("the given dateTimeFrom must be before the given dateTimeTo");
+        var cloudySceneCoverDefault = cloudySceneCover.orElse(DEFAULT_CLOUDY_SCENE_COVER);
+        if (clearSceneCover.isPresent() && clearSceneCover.get() > cloudySceneCoverDefault) {
+            throw new ValidationException("the given clearSceneCover must not be above the given cloudySceneCover");
         }
 
-        var items = this.itemService.getItemsInInterval(
+        var items = this.itemService.getItemSummariesInInterval(
                 collections,
                 dateTimeFrom,
                 dateTimeToDefault,
                 aresOfInterest,
                 limit.orElse(DEFAULT_RESULTS),
-                filterCloudy.orElse(DEFAULT_FILTER_CLOUDY)
+                filterCloudy.orElse(DEFAULT_FILTER_CLOUDY) || maxCloudPercent.isPresent(),
+                cloudySceneCoverDefault,
+                clearSceneCover.orElse(null),
+                maxCloudPercent.orElse(DEFAULT_MAX_CLOUD_PERCENT)
         );
 
         if (items.isEmpty()) {
             LOGGER.debug("could not find items for from: {}, to: {} and aoi: {}", dateTimeFrom, dateTimeTo, aresOfInterest);
         }
 
-        return items.stream().map(itemMapper::itemToDto).toList();
+        return items.stream().map(itemMapper::summaryToDto).toList();
     }
 
 
@@ -1,6 +1,7 @@
 package at.ac.tuwien.ba.demo.api.endpoint.v1;
 
 import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.NdviStatsDto;
+import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.SclStatsDto;
 import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.in.NdviStatsReqDto;
 import at.ac.tuwien.ba.demo.api.endpoint.v1.mapper.WktMapper;
 import at.ac.tuwien.ba.demo.api.endpoint.v1.validation.AreaOfIntrestValidator;
@@ -119,6 +120,39 @@ public class StatisticsEndpoint {
         return getNdviStatistics(body.getItemIds(), collection);
     }
 
+    /**
+     * returns the scene classes (SCL) and the cloud cover within the area of interest for a given set of items.
+     *
+     * @param itemIds the ids of the items.
+     * @param aresOfInterest items should intersect with this area of interest.
+     *                       the string must be formatted as well known text and
+     *                       the coordinates must be given in WGS84 format (longitude, latitude).
+     *                       given area must be less the 10km2.
+     * @return the list of {@link SclStatsDto}s containing the number of pixels per class.
+     *         items for which no statistic could be calculated (unknown id,
+     *         no intersection with area) are excluded from the resulting list.
+     */
+    @GetMapping(value = "scl", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public List<SclStatsDto> getSclStatistics(
+            @Schema(example = SAMPLE_ITEM_LIST)
+            @NotEmpty
+            @RequestParam List<String> itemIds,
+
+            @Schema(example = SAMPLE_WKT)
+            @NotBlank
+            @RequestParam String aresOfInterest
+    ) throws ValidationException, NotFoundException, ServiceException {
+        LOGGER.info("GET " + BASE_URL + "/scl?itemIds={}", itemIds);
+
+        var collection = wktMapper.wktToGeometryCollection(aresOfInterest);
+        var jtsCollection = geoJsonToJtsConverter.convertGeometryCollection(collection);
+
+        areaOfIntrestValidator.validate(jtsCollection);
+        var items = this.itemService.getItemsById(itemIds);
+        return statisticsService.calcSclStatistics(items, jtsCollection);
+    }
+
     private List<NdviStatsDto> getNdviStatistics(List<String> itemIds, GeometryCollection collection)
             throws NotFoundException, ServiceException, ValidationException {
         areaOfIntrestValidator.validate(collection);
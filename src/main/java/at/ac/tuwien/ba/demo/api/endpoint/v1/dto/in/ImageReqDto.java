@@ -8,8 +8,10 @@ import lombok.Setter;
 import lombok.ToString;
 import mil.nga.sf.geojson.GeoJsonObject;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 
 import static at.ac.tuwien.ba.demo.api.endpoint.v1.dto.SampleConst.*;
 
@@ -31,4 +33,8 @@ public class ImageReqDto {
     @NotNull
     private GeoJsonObject areaOfInterest;
 
+    @Nullable
+    @Positive
+    private Double resolution;
+
 }
@@ -10,6 +10,8 @@ import mil.nga.sf.geojson.GeoJsonObject;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.annotation.Nullable;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -50,6 +52,18 @@ public class ItemReqDto {
     @Nullable
     private Boolean filterCloudy;
 
+    @Nullable
+    @DecimalMin("0") @DecimalMax("100")
+    private Double cloudySceneCover;
+
+    @Nullable
+    @DecimalMin("0") @DecimalMax("100")
+    private Double clearSceneCover;
+
+    @Nullable
+    @DecimalMin("0") @DecimalMax("100")
+    private Double maxCloudPercent;
+
     @NotNull
     @Schema(example = SAMPLE_GEOJSON)
     private GeoJsonObject areaOfInterest;
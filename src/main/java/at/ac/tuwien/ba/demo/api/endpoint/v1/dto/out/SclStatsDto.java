@@ -0,0 +1,23 @@
+package at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.Map;
+
+@NoArgsConstructor
+@Setter
+@Getter
+@ToString
+public class SclStatsDto {
+
+    private Double cloudPercent;
+    // number of pixels within the area of interest per scene class, classes without pixels are left out
+    private Map<Integer, Long> classCounts;
+
+    private String itemId;
+    private String dateTime;
+
+}
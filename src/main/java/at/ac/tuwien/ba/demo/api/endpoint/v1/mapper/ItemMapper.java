@@ -2,6 +2,7 @@ package at.ac.tuwien.ba.demo.api.endpoint.v1.mapper;
 
 
 import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.ItemInfoDto;
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
 import io.github11904212.java.stac.client.core.Item;
 import org.springframework.stereotype.Component;
 
@@ -15,4 +16,12 @@ public class ItemMapper {
         dto.setId(item.getId());
         return dto;
     }
+
+    public ItemInfoDto summaryToDto(ItemSummary summary) {
+        var dto = new ItemInfoDto();
+        dto.setCollectionId(summary.collection());
+        dto.setDateTime(summary.dateTime());
+        dto.setId(summary.id());
+        return dto;
+    }
 }
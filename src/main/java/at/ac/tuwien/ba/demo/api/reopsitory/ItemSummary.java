@@ -0,0 +1,22 @@
+package at.ac.tuwien.ba.demo.api.reopsitory;
+
+import io.github11904212.java.stac.client.core.Item;
+
+/**
+ * the few properties of an item needed to list search results, without its assets and geometry.
+ *
+ * @param id the item id.
+ * @param collection the id of the collection, may be null.
+ * @param dateTime the acquisition time as ISO-8601 string, may be null.
+ * @param cloudCover the cloud cover of the whole scene in percent ({@code eo:cloud_cover}), may be null.
+ */
+public record ItemSummary(String id, String collection, String dateTime, Double cloudCover) {
+
+    /**
+     * @param item a full STAC item.
+     * @return the summary of the item, without cloud cover.
+     */
+    public static ItemSummary of(Item item) {
+        return new ItemSummary(item.getId(), item.getCollection().orElse(null), item.getDateTime().orElse(null), null);
+    }
+}
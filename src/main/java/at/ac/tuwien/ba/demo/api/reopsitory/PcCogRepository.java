@@ -1,12 +1,18 @@
 package at.ac.tuwien.ba.demo.api.reopsitory;
 
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 
 import java.io.IOException;
 import java.net.URL;
 
 public interface PcCogRepository {
 
+    /**
+     * requests the native resolution of a geotiff.
+     */
+    double NATIVE_RESOLUTION = 0d;
+
     /**
      * fetches a cloud optimized geotiff and returns a {@link GridCoverage2D}.
      * @param href the {@link URL} of the requested geotiff
@@ -15,4 +21,51 @@ public interface PcCogRepository {
      */
     GridCoverage2D fetchCoverageFromUrl(URL href) throws IOException;
 
+    /**
+     * fetches the part of a cloud optimized geotiff which intersects the area of interest.
+     * only the internal tiles of the geotiff intersecting the area are requested and decoded.
+     * @param href the {@link URL} of the requested geotiff
+     * @param areaOfInterest the envelope of the area of interest,
+     *                       it is transformed into the crs of the coverage if necessary.
+     * @return a lazy loaded {@link GridCoverage2D} covering at least the area of interest
+     * @throws IOException if the coverage could not be fetched or does not intersect the area of interest.
+     */
+    GridCoverage2D fetchCoverage(URL href, ReferencedEnvelope areaOfInterest) throws IOException;
+
+    /**
+     * fetches the part of a cloud optimized geotiff which intersects the area of interest
+     * from the overview which matches the target resolution best.
+     * @param href the {@link URL} of the requested geotiff
+     * @param areaOfInterest the envelope of the area of interest,
+     *                       it is transformed into the crs of the coverage if necessary.
+     * @param targetResolution the requested pixel size in units of the coverage crs (meters for sentinel-2).
+     *                         the finest overview which is not finer than needed is used,
+     *                         values below the native resolution select the full resolution image.
+     * @return a lazy loaded {@link GridCoverage2D} covering at least the area of interest
+     * @throws IOException if the coverage could not be fetched or does not intersect the area of interest.
+     */
+    GridCoverage2D fetchCoverage(URL href, ReferencedEnvelope areaOfInterest, double targetResolution)
+            throws IOException;
+
+    /**
+     * fetches the part of a cloud optimized geotiff which intersects the area of interest
+     * from the overview which matches the target resolution best.
+     * the header length seen for other assets of the same profile is fetched up front,
+     * so the header usually needs a single request.
+     * @param href the {@link URL} of the requested geotiff
+     * @param assetProfile groups assets with the same structure, e.g. {@code sentinel-2-l2a/B04}, may be null.
+     * @param areaOfInterest the envelope of the area of interest,
+     *                       it is transformed into the crs of the coverage if necessary.
+     * @param targetResolution the requested pixel size in units of the coverage crs,
+     *                         see {@link #fetchCoverage(URL, ReferencedEnvelope, double)}.
+     * @return a lazy loaded {@link GridCoverage2D} covering at least the area of interest
+     * @throws IOException if the coverage could not be fetched or does not intersect the area of interest.
+     */
+    GridCoverage2D fetchCoverage(
+            URL href,
+            String assetProfile,
+            ReferencedEnvelope areaOfInterest,
+            double targetResolution
+    ) throws IOException;
+
 }
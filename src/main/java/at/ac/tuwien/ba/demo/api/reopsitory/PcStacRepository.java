@@ -7,6 +7,7 @@ import mil.nga.sf.geojson.GeometryCollection;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface PcStacRepository {
 
@@ -28,6 +29,19 @@ public interface PcStacRepository {
     Item signItem(Item item) throws RepositoryException;
 
 
+    /**
+     * signs the href of a single asset of an item.
+     * the SAS token of the storage container is reused until shortly before it expires,
+     * so this usually does not call the planetary computer.
+     *
+     * @param item the unsigned {@link Item}
+     * @param assetKey the key of the asset, e.g. {@code B04}
+     * @return the signed href of the asset.
+     * @throws RepositoryException if the item has no such asset or it could not be signed.
+     */
+    String signAssetHref(Item item, String assetKey) throws RepositoryException;
+
+
     /**
      * get a list of entries by their IDs.
      *
@@ -53,4 +67,47 @@ public interface PcStacRepository {
             GeometryCollection aresOfInterest,
             int limit
     ) throws RepositoryException;
+
+
+    /**
+     * like {@link #getItemsInIntervalAndAoi} but only id, collection and datetime of the items are requested and kept.
+     * use this if the assets of the items are not needed, it avoids transferring and parsing their metadata.
+     *
+     * @param collections the collections of interest.
+     * @param dateTimeFrom a datetime marking the start of the time interval.
+     * @param dateTimeTo a datetime marking the end of the time interval.
+     * @param areaOfInterest the area which should be intersected by the items.
+     * @param limit the maximum of returned items.
+     * @param maxCloudCover if not null only items whose scene cloud cover ({@code eo:cloud_cover})
+     *                      is below this percentage are returned.
+     * @return the summaries of the items that meet the conditions.
+     */
+    List<ItemSummary> getItemSummariesInIntervalAndAoi(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            int limit,
+            Double maxCloudCover
+    ) throws RepositoryException;
+
+
+    /**
+     * passes all items which are contained in the time interval and intersect the area of interest to a consumer.
+     * long time intervals are split into slices which are searched concurrently,
+     * the items are passed on while searching, so the number of items is not limited by the memory.
+     *
+     * @param collections the collections of interest.
+     * @param dateTimeFrom a datetime marking the start of the time interval.
+     * @param dateTimeTo a datetime marking the end of the time interval.
+     * @param areaOfInterest the area which should be intersected by the items.
+     * @param consumer receives the items, roughly the newest first.
+     */
+    void streamItemsInIntervalAndAoi(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            Consumer<Item> consumer
+    ) throws RepositoryException;
 }
@@ -1,20 +1,30 @@
 package at.ac.tuwien.ba.demo.api.reopsitory.impl;
 
 import at.ac.tuwien.ba.demo.api.reopsitory.PcCogRepository;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CachingHttpRangeReader;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogBlockCache;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cog.CogReadContext;
 import it.geosolutions.imageio.core.BasicAuthURI;
-import it.geosolutions.imageio.plugins.cog.CogImageReadParam;
 import it.geosolutions.imageioimpl.plugins.cog.CogImageInputStreamSpi;
 import it.geosolutions.imageioimpl.plugins.cog.CogImageReaderSpi;
 import it.geosolutions.imageioimpl.plugins.cog.CogSourceSPIProvider;
-import it.geosolutions.imageioimpl.plugins.cog.HttpRangeReader;
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.OverviewPolicy;
 import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.net.URI;
 import java.net.URL;
 
 @Service
@@ -26,22 +36,109 @@ public class PcCogRepositoryImpl implements PcCogRepository {
     @Override
     public GridCoverage2D fetchCoverageFromUrl(URL href) throws IOException {
         LOGGER.debug("fetching COG from URL: {}", href);
+
+        GeoTiffReader reader = openReader(href, null);
+        try {
+            return reader.read(null);
+        } finally {
+            // also closes the image input stream holding the range reader
+            reader.dispose();
+        }
+    }
+
+    @Override
+    public GridCoverage2D fetchCoverage(URL href, ReferencedEnvelope areaOfInterest) throws IOException {
+        return fetchCoverage(href, areaOfInterest, NATIVE_RESOLUTION);
+    }
+
+    @Override
+    public GridCoverage2D fetchCoverage(URL href, ReferencedEnvelope areaOfInterest, double targetResolution)
+            throws IOException {
+        return fetchCoverage(href, null, areaOfInterest, targetResolution);
+    }
+
+    @Override
+    public GridCoverage2D fetchCoverage(
+            URL href,
+            String assetProfile,
+            ReferencedEnvelope areaOfInterest,
+            double targetResolution
+    ) throws IOException {
+        LOGGER.debug("fetching COG from URL: {} restricted to: {} with resolution: {}",
+                href, areaOfInterest, targetResolution
+        );
+
+        GeoTiffReader reader = openReader(href, assetProfile);
+        try {
+            var readGridGeometry = AbstractGridFormat.READ_GRIDGEOMETRY2D.createValue();
+            readGridGeometry.setValue(getReadGridGeometry(reader, areaOfInterest, targetResolution));
+
+            // choose the overview closest to, but not coarser than the requested resolution
+            var overviewPolicy = AbstractGridFormat.OVERVIEW_POLICY.createValue();
+            overviewPolicy.setValue(OverviewPolicy.QUALITY);
+
+            GridCoverage2D coverage = reader.read(new GeneralParameterValue[]{readGridGeometry, overviewPolicy});
+            if (coverage == null) {
+                throw new IOException("the area of interest does not intersect the coverage: " + href.getPath());
+            }
+            return coverage;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private GeoTiffReader openReader(URL href, String assetProfile) throws IOException {
         BasicAuthURI cogUri = new BasicAuthURI(href, false);
-        HttpRangeReader rangeReader =
-                new HttpRangeReader(cogUri.getUri(), CogImageReadParam.DEFAULT_HEADER_LENGTH);
+        // the range reader looks up the header length learned for the profile of the asset
+        CogReadContext.getHeaderCache().ifPresent(headerCache ->
+                headerCache.registerProfile(CogBlockCache.assetPath(URI.create(href.toString())), assetProfile)
+        );
+        // the range reader is instantiated by imageio-ext, repeated reads are served by the block cache
         CogSourceSPIProvider input =
                 new CogSourceSPIProvider(
                         cogUri,
                         new CogImageReaderSpi(),
                         new CogImageInputStreamSpi(),
-                        rangeReader.getClass().getName());
+                        CachingHttpRangeReader.class.getName());
+
+        return new GeoTiffReader(input);
+    }
+
+    /*
+    computes the grid geometry of the source region intersecting the area of interest at the target resolution.
+    the reader uses it to select the overview and to decode only the intersecting internal tiles.
+     */
+    private GridGeometry2D getReadGridGeometry(
+            GeoTiffReader reader,
+            ReferencedEnvelope areaOfInterest,
+            double targetResolution
+    ) throws IOException {
+        var coverageCrs = reader.getCoordinateReferenceSystem();
+        var coverageEnvelope = new ReferencedEnvelope(reader.getOriginalEnvelope());
+        var gridRange = reader.getOriginalGridRange();
+
+        ReferencedEnvelope window;
+        try {
+            window = areaOfInterest.transform(coverageCrs, true);
+        } catch (TransformException | FactoryException e) {
+            throw new IOException("could not transform the area of interest into the crs of the coverage", e);
+        }
 
-        GeoTiffReader reader = new GeoTiffReader(input);
+        double resX = coverageEnvelope.getWidth() / gridRange.getSpan(0);
+        double resY = coverageEnvelope.getHeight() / gridRange.getSpan(1);
 
-        GridCoverage2D coverage = reader.read(null);
+        // one additional pixel on each side, so pixels touching the border of the aoi are part of the result
+        window.expandBy(resX, resY);
+        var intersection = new ReferencedEnvelope(window.intersection(coverageEnvelope), coverageCrs);
+        if (intersection.isEmpty()) {
+            throw new IOException("the area of interest does not intersect the coverage");
+        }
 
-        reader.dispose();
+        double readResX = Math.max(resX, targetResolution);
+        double readResY = Math.max(resY, targetResolution);
+        int width = (int) Math.max(1, Math.ceil(intersection.getWidth() / readResX));
+        int height = (int) Math.max(1, Math.ceil(intersection.getHeight() / readResY));
 
-        return coverage;
+        return new GridGeometry2D(new GridEnvelope2D(0, 0, width, height), intersection);
     }
 }
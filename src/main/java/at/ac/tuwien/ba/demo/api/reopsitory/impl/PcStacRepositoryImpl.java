@@ -1,15 +1,33 @@
 package at.ac.tuwien.ba.demo.api.reopsitory.impl;
 
+import at.ac.tuwien.ba.demo.api.config.StacProperties;
 import at.ac.tuwien.ba.demo.api.exception.RepositoryException;
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
 import at.ac.tuwien.ba.demo.api.reopsitory.PcStacRepository;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.ItemSummaryClient;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.LocalItemCatalog;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.ParallelItemSearch;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.SasTokenCache;
+import at.ac.tuwien.ba.demo.api.util.SingleFlight;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github11904212.java.stac.client.StacClient;
 import io.github11904212.java.stac.client.core.Item;
 import io.github11904212.java.stac.client.search.ItemCollection;
 import io.github11904212.java.stac.client.search.dto.QueryParameter;
 import io.github11904212.pcc.PlanetaryComputerClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import mil.nga.sf.geojson.GeometryCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -17,30 +35,79 @@ import java.lang.invoke.MethodHandles;
 import java.net.URISyntaxException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class PcStacRepositoryImpl implements PcStacRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
     private final PlanetaryComputerClient planetaryComputer;
     private final StacClient stacClient;
+    private final SasTokenCache sasTokenCache;
+    private final ParallelItemSearch parallelItemSearch;
+    private final ItemSummaryClient itemSummaryClient;
+
+    // answers searches within the monitored regions, null if the local catalog is disabled
+    private final LocalItemCatalog localCatalog;
+
+    // item metadata rarely changes, so items are reused for a while instead of searching them again
+    private final Cache<String, Item> itemCache;
+
+    // concurrent identical searches (e.g. the same dashboard query of many clients) share one request
+    private final SingleFlight<String, ItemCollection> searchFlight = new SingleFlight<>();
+    private final SingleFlight<String, List<ItemSummary>> summaryFlight = new SingleFlight<>();
 
     public PcStacRepositoryImpl(
-            PlanetaryComputerClient planetaryComputer
+            PlanetaryComputerClient planetaryComputer,
+            SasTokenCache sasTokenCache,
+            ParallelItemSearch parallelItemSearch,
+            ItemSummaryClient itemSummaryClient,
+            ObjectProvider<LocalItemCatalog> localCatalog,
+            StacProperties properties,
+            MeterRegistry meterRegistry
     ) {
         this.planetaryComputer = planetaryComputer;
         this.stacClient = planetaryComputer.getStacClientInstance();
+        this.sasTokenCache = sasTokenCache;
+        this.parallelItemSearch = parallelItemSearch;
+        this.itemSummaryClient = itemSummaryClient;
+        this.localCatalog = localCatalog.getIfAvailable();
+        this.itemCache = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getItemCache().getTtl())
+                .maximumSize(properties.getItemCache().getMaxSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, itemCache, "stacItems");
+        searchFlight.bindTo(meterRegistry, "stac.search.requests");
+        summaryFlight.bindTo(meterRegistry, "stac.summary.requests");
     }
 
 
     @Override
     public Optional<Item> getItemById(String id) throws RepositoryException {
+        var cachedItem = itemCache.getIfPresent(id);
+        if (cachedItem != null) {
+            return Optional.of(cachedItem);
+        }
+
         var query = new QueryParameter();
         query.setIds(List.of(id));
-        return Optional.ofNullable(this.getItemsByQuery(query).get(0));
+        return this.getItemsByQuery(query).stream()
+                .filter(item -> id.equals(item.getId()))
+                .findFirst();
     }
 
 
@@ -53,12 +120,40 @@ public class PcStacRepositoryImpl implements PcStacRepository {
         }
     }
 
+    @Override
+    public String signAssetHref(Item item, String assetKey) throws RepositoryException {
+        var asset = item.getAsset(assetKey);
+        if (asset.isEmpty()) {
+            throw new RepositoryException(String.format("item %s has no asset %s", item.getId(), assetKey));
+        }
+        try {
+            return this.sasTokenCache.sign(item, assetKey, asset.get().getHref());
+        } catch (IOException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
     @Override
     public List<Item> getItemsById(List<String> itemIds) throws RepositoryException {
-        var query = new QueryParameter();
-        query.setIds(itemIds);
+        Map<String, Item> items = new HashMap<>(itemCache.getAllPresent(itemIds));
+
+        var missingIds = itemIds.stream()
+                .filter(id -> !items.containsKey(id))
+                .distinct()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            var query = new QueryParameter();
+            query.setIds(missingIds);
+            query.setLimit(missingIds.size());
+            getItemsByQuery(query).forEach(item -> items.put(item.getId(), item));
+        }
 
-        return getItemsByQuery(query);
+        // keep the requested order, every item is returned once
+        return itemIds.stream()
+                .distinct()
+                .map(items::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Override
@@ -69,6 +164,62 @@ public class PcStacRepositoryImpl implements PcStacRepository {
             GeometryCollection aresOfInterest,
             int limit
     ) throws RepositoryException {
+        if (localCatalog != null) {
+            var localItems = localCatalog.search(collections, dateTimeFrom, dateTimeTo, aresOfInterest, limit);
+            if (localItems.isPresent()) {
+                LOGGER.debug("answered search from the local catalog");
+                // the items are usually looked up by id next, e.g. to check them for clouds
+                cacheItems(localItems.get());
+                return localItems.get();
+            }
+        }
+
+        return getItemsByQuery(intervalQuery(collections, dateTimeFrom, dateTimeTo, aresOfInterest, limit));
+    }
+
+    @Override
+    public List<ItemSummary> getItemSummariesInIntervalAndAoi(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            int limit,
+            Double maxCloudCover
+    ) throws RepositoryException {
+        // the local catalog does not know the cloud cover, so bounded searches are always sent to the api
+        if (localCatalog != null && maxCloudCover == null) {
+            var localItems = localCatalog.search(collections, dateTimeFrom, dateTimeTo, areaOfInterest, limit);
+            if (localItems.isPresent()) {
+                LOGGER.debug("answered summary search from the local catalog");
+                cacheItems(localItems.get());
+                return localItems.get().stream().map(ItemSummary::of).toList();
+            }
+        }
+
+        var query = intervalQuery(collections, dateTimeFrom, dateTimeTo, areaOfInterest, limit);
+        LOGGER.debug("called with query: {}", query);
+        try {
+            return this.summaryFlight.execute(
+                    canonicalKey(query) + "|cloudCover<" + maxCloudCover,
+                    () -> this.itemSummaryClient.search(query, maxCloudCover)
+            );
+        } catch (IOException e) {
+            LOGGER.error("could not find item summaries with query:{}", query);
+            throw new RepositoryException(e);
+        } catch (InterruptedException e) {
+            LOGGER.error("thread got interrupted", e);
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+    }
+
+    private static QueryParameter intervalQuery(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            int limit
+    ) {
         var query = new QueryParameter();
         query.setCollections(collections);
 
@@ -81,11 +232,30 @@ public class PcStacRepositoryImpl implements PcStacRepository {
             );
         }
 
-        query.setIntersects(aresOfInterest);
+        query.setIntersects(areaOfInterest);
         query.setLimit(limit);
+        return query;
+    }
 
-
-        return getItemsByQuery(query);
+    @Override
+    public void streamItemsInIntervalAndAoi(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            Consumer<Item> consumer
+    ) throws RepositoryException {
+        try {
+            parallelItemSearch.search(collections, dateTimeFrom, dateTimeTo, areaOfInterest, consumer);
+        } catch (IOException e) {
+            LOGGER.error("could not stream items between {} and {}", dateTimeFrom, dateTimeTo);
+            throw new RepositoryException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // the items streamed so far are incomplete, the response must not end as if they were all
+            throw new RepositoryException("interrupted while streaming items between "
+                    + dateTimeFrom + " and " + dateTimeTo, e);
+        }
     }
 
     private List<Item> getItemsByQuery(QueryParameter query) throws RepositoryException {
@@ -93,7 +263,7 @@ public class PcStacRepositoryImpl implements PcStacRepository {
 
         ItemCollection results;
         try {
-            results = this.stacClient.search(query);
+            results = this.searchFlight.execute(canonicalKey(query), () -> this.stacClient.search(query));
         } catch (IOException e) {
             LOGGER.error("could not find items with query:{}", query);
             throw new RepositoryException(e);
@@ -105,10 +275,39 @@ public class PcStacRepositoryImpl implements PcStacRepository {
         var itemList = results.getItems();
 
         if (itemList != null && !itemList.isEmpty()) {
+            cacheItems(itemList);
             return itemList;
         } else {
             return Collections.emptyList();
         }
     }
 
+    private void cacheItems(List<Item> items) {
+        items.forEach(item -> itemCache.put(item.getId(), item));
+    }
+
+    /*
+    a representation of the query which is equal for queries returning the same items.
+    properties are sorted and so are the ids and collections, whose order does not change the result.
+     */
+    private static String canonicalKey(QueryParameter query) {
+        ObjectNode node;
+        try {
+            node = CANONICAL_MAPPER.valueToTree(query);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("could not serialize query {}, it is not coalesced", query, e);
+            return UUID.randomUUID().toString();
+        }
+        for (var field : List.of("ids", "collections")) {
+            if (node.get(field) instanceof ArrayNode values) {
+                var sorted = new ArrayList<String>();
+                values.forEach(value -> sorted.add(value.asText()));
+                Collections.sort(sorted);
+                values.removeAll();
+                sorted.forEach(values::add);
+            }
+        }
+        return node.toString();
+    }
+
 }
@@ -0,0 +1,261 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cloud;
+
+import at.ac.tuwien.ba.demo.api.util.raster.SclHistogram;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * remembers the cloudiness of items within areas of interest.
+ * the cloudiness of an item over a field never changes, so a verdict stays valid as long as the definition
+ * of cloudiness it was computed with, which is part of the key.
+ * the number of verdicts is bounded, the least valuable ones are evicted by caffeine (W-TinyLFU).
+ * every verdict is appended to a log file which is read again after a restart,
+ * the log is rewritten with the retained verdicts once it holds twice as many records,
+ * so its size and the time to read it are bounded as well.
+ */
+public class CloudVerdictStore implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String LOG_FILE = "verdicts.log";
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private static final byte FLAG_CLOUDY = 1;
+    private static final byte FLAG_HISTOGRAM = 2;
+
+    private final Path logFile;
+    private final long maxEntries;
+    private final Cache<String, CloudVerdict> verdicts;
+
+    private DataOutputStream log;
+    // the records in the log, including the ones replaced or evicted since the last compaction
+    private long logRecords;
+
+    /**
+     * @param directory the directory holding the log, it is reused after a restart.
+     * @param maxEntries the maximum number of verdicts kept.
+     * @throws IOException if the log could not be read or opened.
+     */
+    public CloudVerdictStore(Path directory, long maxEntries) throws IOException {
+        Files.createDirectories(directory);
+        this.logFile = directory.resolve(LOG_FILE);
+        this.maxEntries = maxEntries;
+        this.verdicts = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                // evictions happen on the writing thread, so a compaction sees the retained verdicts only
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        restore();
+        this.log = openLog();
+    }
+
+    /**
+     * @param itemId the id of the item.
+     * @param aoiHash the hash of the area of interest, see {@link at.ac.tuwien.ba.demo.api.util.AoiHash}.
+     * @param definition identifies how cloudiness was decided, e.g. the cloud free classes,
+     *                   verdicts of another definition are not returned.
+     * @return the stored verdict or empty if the item was not checked within the area yet.
+     */
+    public Optional<CloudVerdict> get(String itemId, String aoiHash, String definition) {
+        return Optional.ofNullable(verdicts.getIfPresent(key(itemId, aoiHash, definition)));
+    }
+
+    /**
+     * stores whether an item is cloudy within the area, an already stored histogram is kept.
+     *
+     * @param itemId the id of the item.
+     * @param aoiHash the hash of the area of interest.
+     * @param definition identifies how cloudiness was decided.
+     * @param cloudy whether a cloudy pixel was found.
+     */
+    public void putCloudy(String itemId, String aoiHash, String definition, boolean cloudy) {
+        var key = key(itemId, aoiHash, definition);
+        if (verdicts.getIfPresent(key) != null) {
+            return;
+        }
+        store(key, new CloudVerdict(cloudy, null));
+    }
+
+    /**
+     * stores the histogram of an item within the area.
+     *
+     * @param itemId the id of the item.
+     * @param aoiHash the hash of the area of interest.
+     * @param definition identifies how cloudiness was decided.
+     * @param cloudy whether the histogram contains pixels which are not clear.
+     * @param histogram the scene classes within the area.
+     */
+    public void putHistogram(String itemId, String aoiHash, String definition, boolean cloudy, SclHistogram histogram) {
+        store(key(itemId, aoiHash, definition), new CloudVerdict(cloudy, histogram.getCounts()));
+    }
+
+    /**
+     * registers hit/miss, eviction and size metrics.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verdicts, "cloudVerdicts");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private synchronized void store(String key, CloudVerdict verdict) {
+        verdicts.put(key, verdict);
+        try {
+            write(log, key, verdict);
+            // verdicts are rare compared to their reads, so each one is flushed to survive a crash
+            log.flush();
+            logRecords++;
+            if (logRecords > 2 * maxEntries) {
+                log.close();
+                compact();
+                log = openLog();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("could not persist cloud verdict {}, it is kept in memory only", key, e);
+        }
+    }
+
+    private void restore() throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+
+        long records = 0;
+        boolean truncated = false;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            while (true) {
+                // only the end of the log before a record is a clean end
+                in.mark(1);
+                if (in.read() < 0) {
+                    break;
+                }
+                in.reset();
+                var key = in.readUTF();
+                verdicts.put(key, read(in));
+                records++;
+            }
+        } catch (IOException e) {
+            // most likely the last record was not written completely, the complete records are kept
+            LOGGER.warn("could not read all cloud verdicts from {}", logFile, e);
+            truncated = true;
+        }
+        verdicts.cleanUp();
+        LOGGER.info("restored {} cloud verdicts from {}", verdicts.estimatedSize(), logFile);
+
+        logRecords = records;
+        // new records must not be appended to a broken one
+        if (truncated || records > verdicts.estimatedSize()) {
+            compact();
+        }
+    }
+
+    /*
+    rewrites the log with the retained verdicts and replaces the old log atomically.
+     */
+    private void compact() throws IOException {
+        var compacted = logFile.resolveSibling(LOG_FILE + COMPACT_SUFFIX);
+        long records = 0;
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+            for (var entry : verdicts.asMap().entrySet()) {
+                write(out, entry.getKey(), entry.getValue());
+                records++;
+            }
+        }
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRecords = records;
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                logFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+        )));
+    }
+
+    private static void write(DataOutputStream out, String key, CloudVerdict verdict) throws IOException {
+        out.writeUTF(key);
+        byte flags = 0;
+        if (verdict.cloudy()) {
+            flags |= FLAG_CLOUDY;
+        }
+        if (verdict.classCounts() != null) {
+            flags |= FLAG_HISTOGRAM;
+        }
+        out.writeByte(flags);
+        if (verdict.classCounts() == null) {
+            return;
+        }
+
+        // sparse, an area usually contains only a few classes
+        var counts = verdict.classCounts();
+        int classes = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                classes++;
+            }
+        }
+        out.writeShort(classes);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                out.writeByte(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    private static CloudVerdict read(DataInputStream in) throws IOException {
+        byte flags = in.readByte();
+        boolean cloudy = (flags & FLAG_CLOUDY) != 0;
+        if ((flags & FLAG_HISTOGRAM) == 0) {
+            return new CloudVerdict(cloudy, null);
+        }
+
+        var counts = new long[SclHistogram.CLASSES];
+        int classes = in.readUnsignedShort();
+        for (int i = 0; i < classes; i++) {
+            counts[in.readUnsignedByte()] = in.readLong();
+        }
+        return new CloudVerdict(cloudy, counts);
+    }
+
+    private static String key(String itemId, String aoiHash, String definition) {
+        return itemId + "#" + aoiHash + "#" + definition;
+    }
+
+    /**
+     * the stored cloudiness of an item within an area.
+     *
+     * @param cloudy whether a cloudy pixel was found.
+     * @param classCounts the number of pixels per scene class, null if only the verdict is known.
+     */
+    public record CloudVerdict(boolean cloudy, long[] classCounts) {
+
+        /**
+         * @return the histogram of the scene classes, empty if only the verdict is known.
+         */
+        public Optional<SclHistogram> histogram() {
+            return Optional.ofNullable(classCounts).map(SclHistogram::of);
+        }
+    }
+}
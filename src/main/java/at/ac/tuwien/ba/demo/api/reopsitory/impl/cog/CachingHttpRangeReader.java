@@ -0,0 +1,203 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import it.geosolutions.imageioimpl.plugins.cog.HttpRangeReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * a {@link HttpRangeReader} which serves byte ranges from the {@link CogAssetMirror} or the {@link CogBlockCache}
+ * if possible and only fetches the missing ranges.
+ * missing ranges are fetched by the {@link CogRangeFetcher}, which merges neighbouring ranges
+ * and sends the requests in parallel.
+ * the header is fetched with the length learned by the {@link CogHeaderCache} for the profile of the asset,
+ * so all IFDs are usually part of the first request, headers of known assets are served from the cache.
+ * the fetched header may therefore be longer than the requested header length,
+ * {@link #getHeaderLength()} reports the length of the fetched header once it was fetched.
+ */
+public class CachingHttpRangeReader extends HttpRangeReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // upper bound for the round trips of a header which does not fit into the prefetched length
+    private static final int MAX_HEADER_REQUESTS = 8;
+
+    private final URI signedUri;
+    private final String assetPath;
+
+    // the length of the fetched header, -1 until it is fetched
+    private volatile int fetchedHeaderLength = -1;
+
+    public CachingHttpRangeReader(URI uri, int headerLength) {
+        super(uri, headerLength);
+        this.signedUri = uri;
+        this.assetPath = CogBlockCache.assetPath(uri);
+        CogReadContext.getAssetMirror().ifPresent(mirror -> mirror.recordAccess(uri));
+    }
+
+    public CachingHttpRangeReader(URL url, int headerLength) {
+        this(URI.create(url.toString()), headerLength);
+    }
+
+    public CachingHttpRangeReader(String url, int headerLength) {
+        this(URI.create(url), headerLength);
+    }
+
+    /**
+     * @return the requested header length, or the length of the header returned by {@link #fetchHeader()}
+     *         once it was fetched.
+     */
+    @Override
+    public int getHeaderLength() {
+        int fetched = fetchedHeaderLength;
+        return fetched < 0 ? super.getHeaderLength() : fetched;
+    }
+
+    /**
+     * @return the first bytes of the asset, exactly {@link #getHeaderLength()} bytes.
+     *         more than requested if the learned length of the profile is longer or the IFDs did not fit,
+     *         less only if the asset is shorter.
+     */
+    @Override
+    public byte[] fetchHeader() {
+        var header = fetchFullHeader();
+        fetchedHeaderLength = header.length;
+        return header;
+    }
+
+    private byte[] fetchFullHeader() {
+        var optHeaders = CogReadContext.getHeaderCache();
+        if (optHeaders.isEmpty()) {
+            return readRange(0, super.getHeaderLength() - 1L);
+        }
+        var headers = optHeaders.get();
+
+        var cached = headers.getHeader(assetPath);
+        if (cached != null) {
+            return cached.bytes();
+        }
+
+        int length = Math.max(super.getHeaderLength(), headers.getSuggestedLength(assetPath));
+        var header = readRange(0, length - 1L);
+        int requests = 1;
+        try {
+            var layout = TiffHeaderParser.parse(header);
+            while (!layout.complete() && requests < MAX_HEADER_REQUESTS) {
+                // fetch at least twice as much, so a long chain of IFDs needs only a few round trips
+                long end = Math.max(layout.requiredLength(), 2L * header.length) - 1;
+                var rest = readRange(header.length, end);
+                requests++;
+                boolean endOfFile = rest.length < end - header.length + 1;
+                header = concat(header, rest);
+                layout = TiffHeaderParser.parse(header);
+                if (endOfFile) {
+                    break;
+                }
+            }
+            headers.put(assetPath, new CogHeaderCache.CachedHeader(header, layout), requests);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("could not parse the header of {}: {}", assetPath, e.getMessage());
+        }
+        return header;
+    }
+
+    @Override
+    public byte[][] read(Collection<long[]> ranges) {
+        return read(ranges.toArray(long[][]::new));
+    }
+
+    @Override
+    public byte[][] read(long[]... ranges) {
+        if (isMirrored()) {
+            var result = new byte[ranges.length][];
+            for (int i = 0; i < ranges.length; i++) {
+                result[i] = readFromMirror(ranges[i][0], ranges[i][1]);
+                if (result[i] == null) {
+                    return readCached(ranges);
+                }
+            }
+            return result;
+        }
+        return readCached(ranges);
+    }
+
+    private byte[][] readCached(long[]... ranges) {
+        var optCache = CogReadContext.getBlockCache();
+        if (optCache.isEmpty()) {
+            return fetch(ranges);
+        }
+        var cache = optCache.get();
+
+        var result = new byte[ranges.length][];
+        List<Integer> missingIndices = new ArrayList<>();
+        for (int i = 0; i < ranges.length; i++) {
+            result[i] = cache.get(assetPath, ranges[i][0], ranges[i][1]);
+            if (result[i] == null) {
+                missingIndices.add(i);
+            }
+        }
+
+        if (missingIndices.isEmpty()) {
+            return result;
+        }
+
+        var missingRanges = missingIndices.stream()
+                .map(i -> ranges[i])
+                .toArray(long[][]::new);
+        var fetched = fetch(missingRanges);
+
+        for (int k = 0; k < fetched.length; k++) {
+            int i = missingIndices.get(k);
+            result[i] = fetched[k];
+            cache.put(assetPath, ranges[i][0], fetched[k]);
+        }
+        return result;
+    }
+
+    private byte[][] fetch(long[]... ranges) {
+        var optFetcher = CogReadContext.getRangeFetcher();
+        if (optFetcher.isEmpty()) {
+            return super.read(ranges);
+        }
+        try {
+            return optFetcher.get().read(signedUri, ranges);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] readRange(long start, long end) {
+        var mirrored = readFromMirror(start, end);
+        if (mirrored != null) {
+            return mirrored;
+        }
+        return readCached(new long[]{start, end})[0];
+    }
+
+    private boolean isMirrored() {
+        return CogReadContext.getAssetMirror()
+                .map(mirror -> mirror.contains(assetPath))
+                .orElse(false);
+    }
+
+    private byte[] readFromMirror(long start, long end) {
+        return CogReadContext.getAssetMirror()
+                .flatMap(mirror -> mirror.read(assetPath, start, end))
+                .orElse(null);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        var result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
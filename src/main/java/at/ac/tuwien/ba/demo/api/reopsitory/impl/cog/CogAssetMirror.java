@@ -0,0 +1,408 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * a disk backed mirror for frequently requested cloud optimized geotiffs.
+ * once an asset was opened {@code hotThreshold} times it is downloaded as a whole in the background,
+ * afterwards all reads are served from a memory mapped file instead of http range requests.
+ * downloads use the http client and circuit breaker of the range requests, an asset whose download failed
+ * or which does not fit into the disk budget is not downloaded again within the hot window.
+ * mirrored files are named by the hash of their asset path, so they survive a restart of the application.
+ * the least recently used files are deleted as soon as the disk budget is exceeded.
+ */
+public class CogAssetMirror implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String FILE_SUFFIX = ".cog";
+    private static final String PART_SUFFIX = ".part";
+    // sidecar file holding the asset path of a mirrored file
+    private static final String PATH_SUFFIX = ".path";
+
+    // minimum time between two updates of the last access time on disk
+    private static final long TOUCH_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int hotThreshold;
+    private final OkHttpClient httpClient;
+    private final CogCircuitBreaker circuitBreaker;
+    private final ExecutorService downloadExecutor;
+
+    private final Map<String, MirroredFile> files = new ConcurrentHashMap<>();
+    private final Set<String> downloading = ConcurrentHashMap.newKeySet();
+    private final Cache<String, AtomicInteger> accessCounts;
+    // assets which could not be mirrored, they are not downloaded again until they expire
+    private final Cache<String, Boolean> failedDownloads;
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private Counter hitCounter;
+    private Counter downloadCounter;
+    private Counter failureCounter;
+
+    /**
+     * @param directory the directory holding the mirrored files, it is reused after a restart.
+     * @param maxBytes the disk budget of the mirrored files.
+     * @param hotThreshold the number of accesses within the hot window after which an asset is mirrored.
+     * @param hotWindow the time accesses are counted, also the time a failed asset is not downloaded again.
+     * @param httpClient the client downloading the assets, its timeouts bound a stalled download.
+     * @param circuitBreaker rejects downloads from failing hosts.
+     * @param downloadExecutor runs the downloads, it is shut down by {@link #close()}.
+     * @throws IOException if the directory could not be created or read.
+     */
+    public CogAssetMirror(
+            Path directory,
+            long maxBytes,
+            int hotThreshold,
+            Duration hotWindow,
+            OkHttpClient httpClient,
+            CogCircuitBreaker circuitBreaker,
+            ExecutorService downloadExecutor
+    ) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.hotThreshold = hotThreshold;
+        this.httpClient = httpClient;
+        this.circuitBreaker = circuitBreaker;
+        this.downloadExecutor = downloadExecutor;
+        this.accessCounts = Caffeine.newBuilder()
+                .expireAfterWrite(hotWindow)
+                .maximumSize(10_000)
+                .build();
+        this.failedDownloads = Caffeine.newBuilder()
+                .expireAfterWrite(hotWindow)
+                .maximumSize(10_000)
+                .build();
+
+        Files.createDirectories(directory);
+        restore();
+    }
+
+    /**
+     * counts an access to an asset and schedules the download once the asset became hot.
+     *
+     * @param signedUri the signed uri of the asset, used for the download.
+     */
+    public void recordAccess(URI signedUri) {
+        var assetPath = CogBlockCache.assetPath(signedUri);
+        if (files.containsKey(assetPath) || downloading.contains(assetPath)
+                || failedDownloads.getIfPresent(assetPath) != null) {
+            return;
+        }
+        var count = accessCounts.get(assetPath, key -> new AtomicInteger()).incrementAndGet();
+        if (count >= hotThreshold && downloading.add(assetPath)) {
+            downloadExecutor.execute(() -> {
+                try {
+                    download(assetPath, signedUri);
+                } finally {
+                    downloading.remove(assetPath);
+                }
+            });
+        }
+    }
+
+    public boolean contains(String assetPath) {
+        return files.containsKey(assetPath);
+    }
+
+    /**
+     * reads a byte range of a mirrored asset.
+     *
+     * @param assetPath the asset path, see {@link CogBlockCache#assetPath(URI)}.
+     * @param start the first byte of the range.
+     * @param end the last byte of the range (inclusive).
+     * @return the bytes or empty if the asset is not mirrored.
+     */
+    public Optional<byte[]> read(String assetPath, long start, long end) {
+        var file = files.get(assetPath);
+        if (file == null) {
+            return Optional.empty();
+        }
+
+        var buffer = file.map();
+        if (buffer == null) {
+            return Optional.empty();
+        }
+
+        int from = (int) Math.min(start, file.size);
+        int to = (int) Math.min(end + 1, file.size);
+        var data = new byte[Math.max(0, to - from)];
+        buffer.get(from, data);
+
+        file.touch();
+        if (hitCounter != null) {
+            hitCounter.increment();
+        }
+        return Optional.of(data);
+    }
+
+    @Override
+    public void close() {
+        downloadExecutor.shutdownNow();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        hitCounter = Counter.builder("cog.mirror.reads")
+                .description("range reads served from the local mirror")
+                .register(registry);
+        downloadCounter = Counter.builder("cog.mirror.downloads")
+                .description("assets downloaded into the local mirror")
+                .register(registry);
+        failureCounter = Counter.builder("cog.mirror.download.failures")
+                .description("assets which could not be downloaded into the local mirror")
+                .register(registry);
+        Gauge.builder("cog.mirror.bytes", totalBytes, AtomicLong::get)
+                .description("disk space used by the local mirror")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("cog.mirror.assets", files, Map::size)
+                .description("number of mirrored assets")
+                .register(registry);
+    }
+
+    private void download(String assetPath, URI signedUri) {
+        var host = signedUri.getHost();
+        if (!circuitBreaker.allowRequest(host)) {
+            LOGGER.debug("circuit breaker is open for host {}, not mirroring asset {}", host, assetPath);
+            // the count is kept, so the asset is mirrored on the next access once the host is healthy
+            return;
+        }
+        var target = directory.resolve(fileName(assetPath));
+        var part = directory.resolve(fileName(assetPath) + PART_SUFFIX);
+        LOGGER.info("asset {} became hot, downloading it into the local mirror", assetPath);
+
+        var request = new Request.Builder()
+                .url(signedUri.toString())
+                .get()
+                .build();
+        long size;
+        try (var response = execute(request, host)) {
+            var body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("unexpected status " + response.code());
+            }
+            // mapped files are limited to 2 GB, larger assets are never mirrored
+            long limit = Math.min(maxBytes, Integer.MAX_VALUE);
+            if (body.contentLength() > limit) {
+                throw new IOException("the asset has " + body.contentLength() + " bytes, at most " + limit + " fit");
+            }
+            size = copy(body.byteStream(), part, limit);
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(sidecar(target), assetPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.warn("could not mirror asset {}, it is not downloaded again for a while", assetPath, e);
+            accessCounts.invalidate(assetPath);
+            failedDownloads.put(assetPath, Boolean.TRUE);
+            if (failureCounter != null) {
+                failureCounter.increment();
+            }
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ex) {
+                LOGGER.debug("could not delete partial download {}", part, ex);
+            }
+            return;
+        }
+
+        files.put(assetPath, new MirroredFile(target, size, System.currentTimeMillis()));
+        totalBytes.addAndGet(size);
+        if (downloadCounter != null) {
+            downloadCounter.increment();
+        }
+        enforceBudget();
+    }
+
+    /*
+    sends the request and reports the outcome to the circuit breaker, the response has to be closed.
+     */
+    private Response execute(Request request, String host) throws IOException {
+        Response response;
+        try {
+            response = httpClient.newCall(request).execute();
+        } catch (IOException e) {
+            circuitBreaker.onFailure(host);
+            throw e;
+        }
+        if (CogCircuitBreaker.isHostFailure(response.code())) {
+            circuitBreaker.onFailure(host);
+        } else {
+            circuitBreaker.onSuccess(host);
+        }
+        return response;
+    }
+
+    /*
+    copies the content into the file, a content without known length is stopped at the limit.
+     */
+    private static long copy(InputStream in, Path file, long limit) throws IOException {
+        try (var out = Files.newOutputStream(file)) {
+            var buffer = new byte[64 * 1024];
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                size += read;
+                if (size > limit) {
+                    throw new IOException("the asset has more than " + limit + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+            return size;
+        }
+    }
+
+    private synchronized void enforceBudget() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        var byLastAccess = files.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .toList();
+        for (var entry : byLastAccess) {
+            if (totalBytes.get() <= maxBytes) {
+                break;
+            }
+            evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void evict(String assetPath, MirroredFile file) {
+        if (!files.remove(assetPath, file)) {
+            return;
+        }
+        totalBytes.addAndGet(-file.size);
+        LOGGER.debug("evicting asset {} from the local mirror", assetPath);
+        try {
+            // an existing mapping stays valid until it is garbage collected
+            Files.deleteIfExists(file.path);
+            Files.deleteIfExists(sidecar(file.path));
+        } catch (IOException e) {
+            LOGGER.warn("could not delete mirrored file {}", file.path, e);
+        }
+    }
+
+    private void restore() throws IOException {
+        try (Stream<Path> content = Files.list(directory)) {
+            for (var path : content.toList()) {
+                var name = path.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(FILE_SUFFIX)) {
+                    restoreFile(path);
+                }
+            }
+        }
+        LOGGER.info("restored {} mirrored assets ({} bytes) from {}", files.size(), totalBytes.get(), directory);
+        enforceBudget();
+    }
+
+    private void restoreFile(Path path) throws IOException {
+        var pathFile = sidecar(path);
+        if (!Files.exists(pathFile)) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        var assetPath = Files.readString(pathFile, StandardCharsets.UTF_8);
+        var size = Files.size(path);
+        var lastAccess = Files.getLastModifiedTime(path).toMillis();
+        files.put(assetPath, new MirroredFile(path, size, lastAccess));
+        totalBytes.addAndGet(size);
+    }
+
+    private static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + PATH_SUFFIX);
+    }
+
+    private static String fileName(String assetPath) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256")
+                    .digest(assetPath.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest) + FILE_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static final class MirroredFile {
+
+        private final Path path;
+        private final long size;
+        private volatile long lastAccess;
+        private volatile long lastTouch;
+        private volatile MappedByteBuffer buffer;
+
+        private MirroredFile(Path path, long size, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.lastTouch = lastAccess;
+        }
+
+        private MappedByteBuffer map() {
+            var mapped = buffer;
+            if (mapped == null) {
+                synchronized (this) {
+                    if (buffer == null) {
+                        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                        } catch (IOException e) {
+                            LOGGER.warn("could not map mirrored file {}", path, e);
+                            return null;
+                        }
+                    }
+                    mapped = buffer;
+                }
+            }
+            return mapped;
+        }
+
+        private void touch() {
+            var now = System.currentTimeMillis();
+            lastAccess = now;
+            if (now - lastTouch > TOUCH_INTERVAL_MILLIS) {
+                lastTouch = now;
+                try {
+                    // persists the access time for the eviction order after a restart
+                    Files.setLastModifiedTime(path, FileTime.fromMillis(now));
+                } catch (IOException e) {
+                    LOGGER.debug("could not update access time of {}", path, e);
+                }
+            }
+        }
+    }
+}
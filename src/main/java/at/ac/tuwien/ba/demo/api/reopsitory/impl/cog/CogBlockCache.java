@@ -0,0 +1,100 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a process wide, size bounded cache for byte ranges of cloud optimized geotiffs.
+ * entries are keyed by the asset path (without the SAS query string) and the byte offset of the range,
+ * so the same tile is shared between all signed urls of an asset.
+ * eviction is done by caffeine (W-TinyLFU).
+ */
+public class CogBlockCache {
+
+    private final Cache<BlockKey, byte[]> cache;
+
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public CogBlockCache(long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((BlockKey key, byte[] value) -> value.length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * strips query and fragment from an uri.
+     *
+     * @param uri the (signed) uri of an asset.
+     * @return the path of the asset including scheme and host.
+     */
+    public static String assetPath(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority() + uri.getPath();
+    }
+
+    /**
+     * looks up a byte range.
+     *
+     * @param assetPath the asset path, see {@link #assetPath(URI)}.
+     * @param start the first byte of the range.
+     * @param end the last byte of the range (inclusive).
+     * @return a copy of the requested bytes, which the caller may modify, or null if the range is not cached.
+     */
+    public byte[] get(String assetPath, long start, long end) {
+        var length = (int) (end - start + 1);
+        var block = cache.getIfPresent(new BlockKey(assetPath, start));
+        if (block == null || block.length < length) {
+            return null;
+        }
+        bytesSaved.add(length);
+        return Arrays.copyOf(block, length);
+    }
+
+    /**
+     * stores a byte range, the passed array must not be modified afterwards.
+     *
+     * @param assetPath the asset path, see {@link #assetPath(URI)}.
+     * @param start the first byte of the range.
+     * @param data the content of the range.
+     */
+    public void put(String assetPath, long start, byte[] data) {
+        if (data == null || data.length == 0) {
+            return;
+        }
+        cache.asMap().merge(
+                new BlockKey(assetPath, start),
+                data,
+                (oldData, newData) -> oldData.length >= newData.length ? oldData : newData
+        );
+    }
+
+    /**
+     * registers hit/miss, eviction and size metrics.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "cogBlocks");
+        FunctionCounter.builder("cog.block.cache.bytes.saved", bytesSaved, LongAdder::sum)
+                .description("bytes served from memory instead of being fetched again")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("cog.block.cache.bytes", cache,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("bytes currently held by the block cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private record BlockKey(String assetPath, long offset) {
+    }
+}
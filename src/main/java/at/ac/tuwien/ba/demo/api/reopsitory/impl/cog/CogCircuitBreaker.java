@@ -0,0 +1,139 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a circuit breaker per host.
+ * after {@code failureThreshold} consecutive failures requests to the host are rejected for {@code openDuration},
+ * afterwards a single trial request decides whether the host is used again.
+ */
+public class CogCircuitBreaker {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public CogCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * @param host the host of the request.
+     * @return whether a request to the host may be sent, the outcome has to be reported afterwards.
+     */
+    public boolean allowRequest(String host) {
+        var allowed = state(host).allowRequest(System.nanoTime());
+        if (!allowed) {
+            rejected.increment();
+        }
+        return allowed;
+    }
+
+    /**
+     * @param host the host of the request.
+     * @return whether the host is healthy, additional (hedged) requests should only be sent to healthy hosts.
+     */
+    public boolean isClosed(String host) {
+        return state(host).isClosed();
+    }
+
+    public void onSuccess(String host) {
+        state(host).onSuccess();
+    }
+
+    public void onFailure(String host) {
+        state(host).onFailure(System.nanoTime());
+    }
+
+    /**
+     * reports a request which was cancelled before it was answered, it does not affect the state of the host.
+     *
+     * @param host the host of the request.
+     */
+    public void onCancelled(String host) {
+        state(host).onCancelled();
+    }
+
+    /**
+     * registers the number of rejected requests and open circuits.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cog.fetch.circuit.rejected", rejected, LongAdder::sum)
+                .description("requests rejected because the circuit of the host was open")
+                .register(registry);
+        Gauge.builder("cog.fetch.circuit.open", hosts,
+                        h -> h.values().stream().filter(state -> !state.isClosed()).count())
+                .description("hosts which are currently not used because of failures")
+                .register(registry);
+    }
+
+    /**
+     * @param code the http status of a response.
+     * @return whether the status reports an overloaded or failing host, which counts as a failure.
+     */
+    public static boolean isHostFailure(int code) {
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR || code == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    private HostState state(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostState());
+    }
+
+    private final class HostState {
+
+        private int failures;
+        private long openUntil;
+        private boolean open;
+        private boolean trialInFlight;
+
+        synchronized boolean allowRequest(long now) {
+            if (!open) {
+                return true;
+            }
+            if (now - openUntil < 0 || trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized boolean isClosed() {
+            return !open;
+        }
+
+        synchronized void onSuccess() {
+            failures = 0;
+            open = false;
+            trialInFlight = false;
+        }
+
+        synchronized void onCancelled() {
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure(long now) {
+            failures++;
+            if (trialInFlight || failures >= failureThreshold) {
+                open = true;
+                openUntil = now + openNanos;
+                trialInFlight = false;
+            }
+        }
+    }
+}
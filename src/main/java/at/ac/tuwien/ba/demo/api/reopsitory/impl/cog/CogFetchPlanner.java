@@ -0,0 +1,107 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * plans the http requests for a set of byte ranges.
+ * ranges which are at most {@code maxGap} bytes apart are merged into a single request,
+ * so neighbouring tiles of a window are fetched with one round trip.
+ */
+public class CogFetchPlanner {
+
+    private final long maxGap;
+    private final long maxRequestSize;
+
+    /**
+     * @param maxGap the maximum number of unused bytes between two ranges which are merged.
+     * @param maxRequestSize the maximum size of a merged request, single ranges may exceed it.
+     */
+    public CogFetchPlanner(long maxGap, long maxRequestSize) {
+        this.maxGap = maxGap;
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    /**
+     * merges the given ranges.
+     *
+     * @param ranges the requested ranges as {@code {start, end}}, the end is inclusive.
+     * @return the requests to execute, each knowing which of the given ranges it contains.
+     */
+    public List<MergedRange> plan(long[]... ranges) {
+        var order = new Integer[ranges.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> ranges[i][0]));
+
+        List<MergedRange> plan = new ArrayList<>();
+        MergedRange current = null;
+        for (int index : order) {
+            var range = ranges[index];
+            if (current != null
+                    && range[0] - current.end - 1 <= maxGap
+                    && Math.max(current.end, range[1]) - current.start + 1 <= maxRequestSize
+            ) {
+                current.add(index, range);
+            } else {
+                current = new MergedRange(index, range);
+                plan.add(current);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * a single http range request covering one or more requested ranges.
+     */
+    public static final class MergedRange {
+
+        private final long start;
+        private long end;
+        private final List<Integer> members = new ArrayList<>();
+
+        private MergedRange(int index, long[] range) {
+            this.start = range[0];
+            this.end = range[1];
+            this.members.add(index);
+        }
+
+        private void add(int index, long[] range) {
+            this.end = Math.max(this.end, range[1]);
+            this.members.add(index);
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public List<Integer> getMembers() {
+            return members;
+        }
+
+        /**
+         * copies the content of the contained ranges out of the response of this request.
+         *
+         * @param data the response body of this request.
+         * @param ranges the originally requested ranges.
+         * @param target the result array, indexed like {@code ranges}.
+         */
+        public void slice(byte[] data, long[][] ranges, byte[][] target) {
+            for (int index : members) {
+                var range = ranges[index];
+                int from = (int) (range[0] - start);
+                int to = (int) Math.min(range[1] - start + 1, data.length);
+                target[index] = from == 0 && to == data.length
+                        ? data
+                        : Arrays.copyOfRange(data, from, Math.max(from, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * caches the parsed headers of cloud optimized geotiffs and learns how long the headers of an asset profile are.
+ * an asset profile groups assets with the same structure, e.g. the B04 band of sentinel-2-l2a,
+ * so the first request for a new asset of a known profile already fetches the whole header.
+ * reopening a cached asset does not need any request for the header.
+ */
+public class CogHeaderCache {
+
+    // the learned lengths are rounded up, so small differences between assets do not need a second round trip
+    private static final int LENGTH_GRANULARITY = 4096;
+
+    private final Cache<String, CachedHeader> headers;
+
+    private final Cache<String, String> profiles;
+
+    private final Map<String, Integer> profileLengths = new ConcurrentHashMap<>();
+
+    private final LongAdder extraRequests = new LongAdder();
+
+    /**
+     * @param maxAssets the maximum number of assets whose header is kept.
+     */
+    public CogHeaderCache(long maxAssets) {
+        this.headers = Caffeine.newBuilder()
+                .maximumSize(maxAssets)
+                .recordStats()
+                .build();
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(maxAssets * 10)
+                .build();
+    }
+
+    /**
+     * assigns an asset to a profile, must be called before the asset is opened.
+     *
+     * @param assetPath the asset path, see {@link CogBlockCache#assetPath(java.net.URI)}.
+     * @param profile the profile of the asset, e.g. {@code sentinel-2-l2a/B04}.
+     */
+    public void registerProfile(String assetPath, String profile) {
+        if (profile != null) {
+            profiles.put(assetPath, profile);
+        }
+    }
+
+    /**
+     * @param assetPath the asset path, see {@link CogBlockCache#assetPath(java.net.URI)}.
+     * @return the parsed header or null if the header of the asset is not cached.
+     */
+    public CachedHeader getHeader(String assetPath) {
+        return headers.getIfPresent(assetPath);
+    }
+
+    /**
+     * @param assetPath the asset path, see {@link CogBlockCache#assetPath(java.net.URI)}.
+     * @return the header length learned for the profile of the asset or 0 if it is unknown.
+     */
+    public int getSuggestedLength(String assetPath) {
+        var profile = profiles.getIfPresent(assetPath);
+        if (profile == null) {
+            return 0;
+        }
+        return profileLengths.getOrDefault(profile, 0);
+    }
+
+    /**
+     * stores the header of an asset and updates the learned length of its profile.
+     *
+     * @param assetPath the asset path, see {@link CogBlockCache#assetPath(java.net.URI)}.
+     * @param header the parsed header.
+     * @param requests the number of requests needed to fetch the header.
+     */
+    public void put(String assetPath, CachedHeader header, int requests) {
+        headers.put(assetPath, header);
+        extraRequests.add(Math.max(0, requests - 1L));
+
+        var profile = profiles.getIfPresent(assetPath);
+        if (profile != null && header.layout().complete()) {
+            long required = header.layout().requiredLength();
+            int rounded = (int) Math.min(Integer.MAX_VALUE,
+                    (required + LENGTH_GRANULARITY - 1) / LENGTH_GRANULARITY * LENGTH_GRANULARITY);
+            profileLengths.merge(profile, rounded, Math::max);
+        }
+    }
+
+    /**
+     * registers hit/miss metrics and the number of additional header requests.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, headers, "cogHeaders");
+        FunctionCounter.builder("cog.header.extra.requests", extraRequests, LongAdder::sum)
+                .description("requests needed because the prefetched header did not contain all IFDs")
+                .register(registry);
+    }
+
+    /**
+     * the header of an asset.
+     *
+     * @param bytes the first bytes of the asset, containing at least all IFDs if the layout is complete.
+     * @param layout the parsed IFDs.
+     */
+    public record CachedHeader(byte[] bytes, TiffHeaderParser.TiffHeader layout) {
+    }
+}
@@ -0,0 +1,174 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * decides when a range request is hedged, i.e. sent a second time because the first one is slow.
+ * the deadline is a percentile of the recently observed latencies of requests of similar size,
+ * so only the slowest requests (the tail) are duplicated.
+ */
+public class CogHedging implements AutoCloseable {
+
+    // requests below these sizes (bytes) share a latency window
+    private static final long[] SIZE_BUCKETS = {64 * 1024L, 1024 * 1024L};
+
+    private static final int WINDOW_SIZE = 1024;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final ScheduledExecutorService scheduler;
+
+    private final LatencyWindow[] windows = new LatencyWindow[SIZE_BUCKETS.length + 1];
+
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    /**
+     * @param percentile the latency percentile (0..1) after which a request is hedged.
+     * @param minDelay the minimum time before a request is hedged.
+     * @param minSamples the number of observed latencies needed before requests are hedged.
+     * @param scheduler the scheduler starting the hedged requests, it is shut down by {@link #close()}.
+     */
+    public CogHedging(double percentile, Duration minDelay, int minSamples, ScheduledExecutorService scheduler) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.minSamples = minSamples;
+        this.scheduler = scheduler;
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new LatencyWindow();
+        }
+    }
+
+    /**
+     * @param size the size of the requested range in bytes.
+     * @return the delay after which the request should be hedged or -1 if there are not enough samples yet.
+     */
+    public long getDelayNanos(long size) {
+        long latency = windows[bucket(size)].percentile();
+        return latency < 0 ? -1 : Math.max(latency, minDelayNanos);
+    }
+
+    public void recordLatency(long size, long nanos) {
+        windows[bucket(size)].record(nanos);
+    }
+
+    /**
+     * estimates how much longer a request will take which is still pending after the given time,
+     * i.e. the mean remaining latency of the recent requests of similar size which took longer.
+     *
+     * @param size the size of the requested range in bytes.
+     * @param elapsedNanos the time the request is pending.
+     * @return the estimated remaining latency, 0 if no recent request took that long.
+     */
+    public long estimateRemainingNanos(long size, long elapsedNanos) {
+        return windows[bucket(size)].meanRemaining(elapsedNanos);
+    }
+
+    public ScheduledFuture<?> schedule(Runnable hedge, long delayNanos) {
+        return scheduler.schedule(hedge, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHedge() {
+        hedged.increment();
+    }
+
+    public void recordWin() {
+        hedgeWins.increment();
+    }
+
+    /**
+     * @param nanos the (estimated) time between the answer of the hedged request and the answer of the original
+     *              request.
+     */
+    public void recordSaved(long nanos) {
+        savedNanos.add(nanos);
+    }
+
+    /**
+     * registers the number of hedged requests, how often they won and the latency saved.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cog.fetch.hedged", hedged, LongAdder::sum)
+                .description("range requests sent a second time because the first one was slow")
+                .register(registry);
+        FunctionCounter.builder("cog.fetch.hedge.wins", hedgeWins, LongAdder::sum)
+                .description("hedged range requests which answered before the original request")
+                .register(registry);
+        FunctionCounter.builder("cog.fetch.hedge.saved", savedNanos, adder -> adder.sum() / 1e9)
+                .description("latency saved by hedged range requests")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static int bucket(long size) {
+        int bucket = 0;
+        while (bucket < SIZE_BUCKETS.length && size >= SIZE_BUCKETS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /*
+    a ring buffer of the latest latencies, the percentile is recomputed every few samples.
+     */
+    private final class LatencyWindow {
+
+        private static final int RECOMPUTE_INTERVAL = 32;
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private long count;
+        private volatile long cachedPercentile = -1;
+        private volatile long[] cachedSorted = new long[0];
+
+        synchronized void record(long nanos) {
+            samples[(int) (count % WINDOW_SIZE)] = nanos;
+            count++;
+            if (count >= minSamples && (count <= RECOMPUTE_INTERVAL || count % RECOMPUTE_INTERVAL == 0)) {
+                var sorted = Arrays.copyOf(samples, (int) Math.min(count, WINDOW_SIZE));
+                Arrays.sort(sorted);
+                cachedPercentile = sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+                cachedSorted = sorted;
+            }
+        }
+
+        long percentile() {
+            return cachedPercentile;
+        }
+
+        long meanRemaining(long elapsedNanos) {
+            var sorted = cachedSorted;
+            int first = Arrays.binarySearch(sorted, elapsedNanos + 1);
+            if (first < 0) {
+                first = -first - 1;
+            }
+            while (first > 0 && sorted[first - 1] > elapsedNanos) {
+                first--;
+            }
+            if (first == sorted.length) {
+                return 0;
+            }
+            long remaining = 0;
+            for (int i = first; i < sorted.length; i++) {
+                remaining += sorted[i] - elapsedNanos;
+            }
+            return remaining / (sorted.length - first);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * fetches byte ranges of a remote file.
+ * the ranges are merged by the {@link CogFetchPlanner} and the resulting requests are sent in parallel
+ * over a shared {@link OkHttpClient}, which keeps the connections alive between requests.
+ * slow requests are hedged by the {@link CogHedging}, hosts failing repeatedly are skipped by the
+ * {@link CogCircuitBreaker}.
+ * hedged requests are sent over a client with its own dispatcher, so they are not queued behind the slow requests
+ * they are meant to bypass when the requests to a host reach the limit of the shared client.
+ */
+public class CogRangeFetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final OkHttpClient httpClient;
+    private final OkHttpClient hedgeClient;
+    private final CogFetchPlanner planner;
+    private final CogHedging hedging;
+    private final CogCircuitBreaker circuitBreaker;
+
+    /**
+     * @param httpClient the client sending the requests.
+     * @param hedgeClient the client sending the hedged requests, it should not share the dispatcher of
+     *                    {@code httpClient}, but may share its connection pool.
+     * @param planner merges the requested ranges.
+     * @param hedging decides when slow requests are hedged, null disables hedging.
+     * @param circuitBreaker rejects requests to failing hosts.
+     */
+    public CogRangeFetcher(
+            OkHttpClient httpClient,
+            OkHttpClient hedgeClient,
+            CogFetchPlanner planner,
+            CogHedging hedging,
+            CogCircuitBreaker circuitBreaker
+    ) {
+        this.httpClient = httpClient;
+        this.hedgeClient = hedgeClient;
+        this.planner = planner;
+        this.hedging = hedging;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * fetches the given byte ranges.
+     *
+     * @param uri the (signed) uri of the file.
+     * @param ranges the requested ranges as {@code {start, end}}, the end is inclusive.
+     * @return the content of the ranges, indexed like {@code ranges}.
+     * @throws IOException if one of the requests failed.
+     */
+    public byte[][] read(URI uri, long[]... ranges) throws IOException {
+        var plan = planner.plan(ranges);
+        LOGGER.debug("fetching {} ranges with {} requests from {}", ranges.length, plan.size(), uri.getPath());
+
+        List<CompletableFuture<byte[]>> responses = plan.stream()
+                .map(request -> fetchHedged(uri, request.getStart(), request.getEnd()))
+                .toList();
+
+        var result = new byte[ranges.length][];
+        try {
+            for (int i = 0; i < plan.size(); i++) {
+                plan.get(i).slice(responses.get(i).get(), ranges, result);
+            }
+        } catch (InterruptedException e) {
+            responses.forEach(response -> response.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while fetching " + uri.getPath());
+        } catch (ExecutionException e) {
+            responses.forEach(response -> response.cancel(true));
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("could not fetch ranges of " + uri.getPath(), e.getCause());
+        }
+        return result;
+    }
+
+    /*
+    sends the request a second time if it is not answered within the hedge delay and uses the first answer.
+    the original request is cancelled if the hedge wins, the latency saved is estimated from the tracked latencies.
+    the result fails only if all sent requests failed.
+     */
+    private CompletableFuture<byte[]> fetchHedged(URI uri, long start, long end) {
+        long size = end - start + 1;
+        long begin = System.nanoTime();
+        var primary = timed(fetch(httpClient, uri, start, end), size, begin);
+
+        long delay = hedging == null ? -1 : hedging.getDelayNanos(size);
+        if (delay < 0) {
+            return primary;
+        }
+
+        var result = new CompletableFuture<byte[]>();
+        var pending = new AtomicInteger(1);
+        primary.whenComplete((data, throwable) -> completeAttempt(result, pending, data, throwable));
+
+        var scheduledHedge = hedging.schedule(() -> {
+            if (result.isDone() || !circuitBreaker.isClosed(uri.getHost())) {
+                return;
+            }
+            pending.incrementAndGet();
+            hedging.recordHedge();
+            LOGGER.debug("hedging range {}-{} of {} after {} ms", start, end, uri.getPath(), delay / 1_000_000);
+
+            var hedge = timed(fetch(hedgeClient, uri, start, end), size, System.nanoTime());
+            result.whenComplete((data, throwable) -> hedge.cancel(true));
+            hedge.whenComplete((data, throwable) -> {
+                if (throwable == null && !primary.isDone() && result.complete(data)) {
+                    long elapsed = System.nanoTime() - begin;
+                    primary.cancel(true);
+                    hedging.recordWin();
+                    // the original request took at least this long, without it the window would lose its tail
+                    hedging.recordLatency(size, elapsed);
+                    hedging.recordSaved(hedging.estimateRemainingNanos(size, elapsed));
+                } else {
+                    completeAttempt(result, pending, data, throwable);
+                }
+            });
+        }, delay);
+
+        result.whenComplete((data, throwable) -> {
+            scheduledHedge.cancel(false);
+            if (result.isCancelled()) {
+                primary.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<byte[]> timed(CompletableFuture<byte[]> request, long size, long begin) {
+        if (hedging != null) {
+            request.thenRun(() -> hedging.recordLatency(size, System.nanoTime() - begin));
+        }
+        return request;
+    }
+
+    private static void completeAttempt(
+            CompletableFuture<byte[]> result,
+            AtomicInteger pending,
+            byte[] data,
+            Throwable throwable
+    ) {
+        if (throwable == null) {
+            result.complete(data);
+        } else if (pending.decrementAndGet() == 0) {
+            result.completeExceptionally(throwable);
+        }
+    }
+
+    /**
+     * fetches a single byte range asynchronously.
+     *
+     * @param uri the (signed) uri of the file.
+     * @param start the first byte of the range.
+     * @param end the last byte of the range (inclusive).
+     * @return a future completing with the content of the range.
+     */
+    public CompletableFuture<byte[]> fetch(URI uri, long start, long end) {
+        return fetch(httpClient, uri, start, end);
+    }
+
+    private CompletableFuture<byte[]> fetch(OkHttpClient client, URI uri, long start, long end) {
+        var host = uri.getHost();
+        if (!circuitBreaker.allowRequest(host)) {
+            return CompletableFuture.failedFuture(
+                    new IOException("circuit breaker is open for host " + host + ", not fetching " + uri.getPath())
+            );
+        }
+
+        var request = new Request.Builder()
+                .url(uri.toString())
+                .header("Range", "bytes=" + start + "-" + end)
+                .get()
+                .build();
+
+        var httpCall = client.newCall(request);
+        var future = new CompletableFuture<byte[]>();
+        future.whenComplete((data, throwable) -> {
+            if (future.isCancelled()) {
+                httpCall.cancel();
+            }
+        });
+
+        httpCall.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (call.isCanceled()) {
+                    circuitBreaker.onCancelled(host);
+                } else {
+                    circuitBreaker.onFailure(host);
+                }
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    var body = response.body();
+                    if (body == null) {
+                        circuitBreaker.onFailure(host);
+                        throw new IOException("empty response for " + uri.getPath());
+                    }
+                    if (CogCircuitBreaker.isHostFailure(response.code())) {
+                        circuitBreaker.onFailure(host);
+                    } else {
+                        circuitBreaker.onSuccess(host);
+                    }
+                    if (response.code() == HttpURLConnection.HTTP_PARTIAL) {
+                        future.complete(body.bytes());
+                    } else if (response.code() == HttpURLConnection.HTTP_OK) {
+                        // the server ignored the range header, only the range is read from the stream of the file
+                        var source = body.source();
+                        source.skip(start);
+                        long size = end - start + 1;
+                        future.complete(source.request(size) ? source.readByteArray(size) : source.readByteArray());
+                    } else {
+                        throw new IOException("unexpected status " + response.code() + " for " + uri.getPath());
+                    }
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+}
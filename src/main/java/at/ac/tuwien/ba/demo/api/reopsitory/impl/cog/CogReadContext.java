@@ -0,0 +1,54 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import java.util.Optional;
+
+/**
+ * holds the process wide components used by the range readers.
+ * imageio-ext instantiates range readers reflectively by class name,
+ * therefore they can not be injected by spring and look up their collaborators here.
+ */
+public final class CogReadContext {
+
+    private static volatile CogBlockCache blockCache;
+
+    private static volatile CogAssetMirror assetMirror;
+
+    private static volatile CogRangeFetcher rangeFetcher;
+
+    private static volatile CogHeaderCache headerCache;
+
+    private CogReadContext() {
+    }
+
+    public static Optional<CogBlockCache> getBlockCache() {
+        return Optional.ofNullable(blockCache);
+    }
+
+    public static void setBlockCache(CogBlockCache cache) {
+        blockCache = cache;
+    }
+
+    public static Optional<CogAssetMirror> getAssetMirror() {
+        return Optional.ofNullable(assetMirror);
+    }
+
+    public static void setAssetMirror(CogAssetMirror mirror) {
+        assetMirror = mirror;
+    }
+
+    public static Optional<CogRangeFetcher> getRangeFetcher() {
+        return Optional.ofNullable(rangeFetcher);
+    }
+
+    public static void setRangeFetcher(CogRangeFetcher fetcher) {
+        rangeFetcher = fetcher;
+    }
+
+    public static Optional<CogHeaderCache> getHeaderCache() {
+        return Optional.ofNullable(headerCache);
+    }
+
+    public static void setHeaderCache(CogHeaderCache cache) {
+        headerCache = cache;
+    }
+}
@@ -0,0 +1,178 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * parses the image file directories (IFDs) at the beginning of a (Big)TIFF file.
+ * a cloud optimized geotiff stores all IFDs and their tag data in front of the image data,
+ * so the parsed layout tells how many bytes have to be fetched before any tile can be read.
+ */
+public final class TiffHeaderParser {
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_TILE_LENGTH = 323;
+
+    // a broken file must not lead to an endless chain of IFDs
+    private static final int MAX_IFDS = 64;
+
+    private TiffHeaderParser() {
+    }
+
+    /**
+     * parses the given prefix of a tiff file.
+     *
+     * @param data the first bytes of the file.
+     * @return the layout of the header, if it is not complete {@link TiffHeader#requiredLength()}
+     *         is a lower bound of the header length.
+     * @throws IllegalArgumentException if the data is not a tiff file.
+     */
+    public static TiffHeader parse(byte[] data) {
+        if (data.length < 16) {
+            return new TiffHeader(false, 16, List.of());
+        }
+        var buffer = ByteBuffer.wrap(data);
+        if (data[0] == 'I' && data[1] == 'I') {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (data[0] == 'M' && data[1] == 'M') {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            throw new IllegalArgumentException("not a tiff file, unknown byte order");
+        }
+
+        int version = buffer.getShort(2) & 0xFFFF;
+        boolean bigTiff;
+        long ifdOffset;
+        if (version == 42) {
+            bigTiff = false;
+            ifdOffset = buffer.getInt(4) & 0xFFFFFFFFL;
+        } else if (version == 43) {
+            bigTiff = true;
+            ifdOffset = buffer.getLong(8);
+        } else {
+            throw new IllegalArgumentException("not a tiff file, unknown version " + version);
+        }
+
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        int offsetSize = bigTiff ? 8 : 4;
+
+        long required = bigTiff ? 16 : 8;
+        List<Ifd> ifds = new ArrayList<>();
+        while (ifdOffset != 0 && ifds.size() < MAX_IFDS) {
+            if (ifdOffset + countSize > data.length) {
+                return new TiffHeader(false, ifdOffset + countSize, ifds);
+            }
+            long entryCount = bigTiff ? buffer.getLong((int) ifdOffset) : buffer.getShort((int) ifdOffset) & 0xFFFF;
+            long ifdEnd = ifdOffset + countSize + entryCount * entrySize + offsetSize;
+            required = Math.max(required, ifdEnd);
+            if (ifdEnd > data.length) {
+                return new TiffHeader(false, required, ifds);
+            }
+
+            var ifd = new Ifd(ifdOffset);
+            for (int i = 0; i < entryCount; i++) {
+                int entry = (int) (ifdOffset + countSize + (long) i * entrySize);
+                int tag = buffer.getShort(entry) & 0xFFFF;
+                int type = buffer.getShort(entry + 2) & 0xFFFF;
+                long count = bigTiff ? buffer.getLong(entry + 4) : buffer.getInt(entry + 4) & 0xFFFFFFFFL;
+                int valuePos = entry + (bigTiff ? 12 : 8);
+
+                long valueSize = count * typeSize(type);
+                if (valueSize > offsetSize) {
+                    long valueOffset = bigTiff ? buffer.getLong(valuePos) : buffer.getInt(valuePos) & 0xFFFFFFFFL;
+                    required = Math.max(required, valueOffset + valueSize);
+                } else if (count == 1) {
+                    ifd.setInlineValue(tag, readInline(buffer, valuePos, type));
+                }
+            }
+            ifds.add(ifd);
+
+            int nextPos = (int) (ifdEnd - offsetSize);
+            ifdOffset = bigTiff ? buffer.getLong(nextPos) : buffer.getInt(nextPos) & 0xFFFFFFFFL;
+        }
+
+        return new TiffHeader(required <= data.length, required, ifds);
+    }
+
+    private static long readInline(ByteBuffer buffer, int position, int type) {
+        return switch (type) {
+            case 1, 6, 7 -> buffer.get(position) & 0xFF;
+            case 3, 8 -> buffer.getShort(position) & 0xFFFF;
+            case 4, 9, 13 -> buffer.getInt(position) & 0xFFFFFFFFL;
+            case 16, 17, 18 -> buffer.getLong(position);
+            default -> 0L;
+        };
+    }
+
+    private static int typeSize(int type) {
+        return switch (type) {
+            case 3, 8 -> 2;
+            case 4, 9, 11, 13 -> 4;
+            case 5, 10, 12, 16, 17, 18 -> 8;
+            default -> 1;
+        };
+    }
+
+    /**
+     * the parsed header of a tiff file.
+     *
+     * @param complete whether all IFDs and their tag data were part of the parsed bytes.
+     * @param requiredLength the number of bytes holding all IFDs and their tag data.
+     * @param ifds the parsed image file directories, the first one is the full resolution image.
+     */
+    public record TiffHeader(boolean complete, long requiredLength, List<Ifd> ifds) {
+    }
+
+    /**
+     * the size and tiling of an image (full resolution or overview) stored in the tiff.
+     */
+    public static final class Ifd {
+
+        private final long offset;
+        private long width;
+        private long height;
+        private long tileWidth;
+        private long tileHeight;
+
+        private Ifd(long offset) {
+            this.offset = offset;
+        }
+
+        private void setInlineValue(int tag, long value) {
+            switch (tag) {
+                case TAG_IMAGE_WIDTH -> width = value;
+                case TAG_IMAGE_LENGTH -> height = value;
+                case TAG_TILE_WIDTH -> tileWidth = value;
+                case TAG_TILE_LENGTH -> tileHeight = value;
+                default -> {
+                    // other tags are not needed
+                }
+            }
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getWidth() {
+            return width;
+        }
+
+        public long getHeight() {
+            return height;
+        }
+
+        public long getTileWidth() {
+            return tileWidth;
+        }
+
+        public long getTileHeight() {
+            return tileHeight;
+        }
+    }
+}
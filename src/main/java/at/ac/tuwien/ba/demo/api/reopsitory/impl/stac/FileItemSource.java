@@ -0,0 +1,68 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github11904212.java.stac.client.core.Item;
+import io.github11904212.java.stac.client.search.ItemCollection;
+import mil.nga.sf.geojson.GeometryCollection;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * reads items from a file containing a STAC ItemCollection (e.g. a saved search response).
+ * it stands in for the planetary computer in tests and offline setups.
+ */
+public class FileItemSource implements ItemSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Path file;
+    private final GeoJsonToJtsConverter geoJsonToJtsConverter;
+
+    public FileItemSource(Path file, GeoJsonToJtsConverter geoJsonToJtsConverter) {
+        this.file = file;
+        this.geoJsonToJtsConverter = geoJsonToJtsConverter;
+    }
+
+    @Override
+    public List<Item> getItems(
+            String collection,
+            GeometryCollection region,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            int limit
+    ) throws IOException {
+        // the file is read on every call, so it can be replaced while the application is running
+        var items = MAPPER.readValue(file.toFile(), ItemCollection.class).getItems();
+        if (items == null) {
+            return List.of();
+        }
+
+        var regionGeometry = geoJsonToJtsConverter.convertGeometryCollection(region);
+        var from = dateTimeFrom.toInstant();
+        var to = dateTimeTo.toInstant();
+
+        return items.stream()
+                .filter(item -> item.getCollection().filter(collection::equals).isPresent())
+                .filter(item -> item.getGeometry() != null
+                        && geoJsonToJtsConverter.convertGeometry(item.getGeometry()).intersects(regionGeometry))
+                .map(item -> LocalItemCatalog.readDateTime(item).map(dateTime -> new DatedItem(item, dateTime)))
+                .flatMap(Optional::stream)
+                .filter(dated -> !dated.dateTime().isBefore(from) && !dated.dateTime().isAfter(to))
+                .sorted(Comparator.comparing(DatedItem::dateTime).reversed())
+                .limit(limit)
+                .map(DatedItem::item)
+                .toList();
+    }
+
+    private record DatedItem(Item item, Instant dateTime) {
+    }
+}
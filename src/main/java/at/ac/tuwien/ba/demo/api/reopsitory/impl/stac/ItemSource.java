@@ -0,0 +1,34 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import io.github11904212.java.stac.client.core.Item;
+import mil.nga.sf.geojson.GeometryCollection;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * a source of STAC items used to fill the {@link LocalItemCatalog} and by the {@link ParallelItemSearch}.
+ */
+public interface ItemSource {
+
+    /**
+     * get the items of a collection which are contained in the time interval and intersect the region.
+     *
+     * @param collection the collection of interest.
+     * @param region the area which should be intersected by the items.
+     * @param dateTimeFrom the start of the time interval (inclusive).
+     * @param dateTimeTo the end of the time interval (inclusive).
+     * @param limit the maximum of returned items.
+     * @return the matching items, the newest first.
+     * @throws IOException if the items could not be read.
+     * @throws InterruptedException if the thread got interrupted.
+     */
+    List<Item> getItems(
+            String collection,
+            GeometryCollection region,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            int limit
+    ) throws IOException, InterruptedException;
+}
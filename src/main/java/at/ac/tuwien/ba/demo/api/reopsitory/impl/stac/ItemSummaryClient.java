@@ -0,0 +1,114 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github11904212.java.stac.client.search.dto.QueryParameter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * searches items of the STAC api but only reads their id, collection, datetime and cloud cover.
+ * the fields extension asks the api to leave out the assets, links and geometry of the items.
+ * the response is parsed as a stream and unknown properties are skipped,
+ * so even if the api ignores the fields extension the full items are never built.
+ */
+public class ItemSummaryClient {
+
+    private static final String CLOUD_COVER = "eo:cloud_cover";
+
+    private static final List<String> INCLUDED_FIELDS = List.of(
+            "id", "collection", "properties.datetime", "properties." + CLOUD_COVER
+    );
+    private static final List<String> EXCLUDED_FIELDS = List.of("assets", "links", "geometry", "bbox");
+
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final URI searchUri;
+    private final Duration timeout;
+
+    /**
+     * @param httpClient the client sending the requests.
+     * @param objectMapper the mapper of the application, a copy leaving out null fields is used.
+     * @param searchUri the item search endpoint of the STAC api,
+     *                  e.g. {@code https://planetarycomputer.microsoft.com/api/stac/v1/search}.
+     * @param timeout the maximum duration of a search.
+     */
+    public ItemSummaryClient(HttpClient httpClient, ObjectMapper objectMapper, URI searchUri, Duration timeout) {
+        this.httpClient = httpClient;
+        this.mapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.searchUri = searchUri;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param query the search query.
+     * @param maxCloudCover if not null only items whose scene cloud cover is below this percentage are returned,
+     *                      the bound is part of the query (query extension), so the other items are not transferred.
+     * @return the summaries of the found items, in the order returned by the api.
+     * @throws IOException if the search failed.
+     * @throws InterruptedException if the thread got interrupted.
+     */
+    public List<ItemSummary> search(QueryParameter query, Double maxCloudCover) throws IOException, InterruptedException {
+        ObjectNode body = mapper.valueToTree(query);
+        var fields = mapper.createObjectNode();
+        INCLUDED_FIELDS.forEach(fields.putArray("include")::add);
+        EXCLUDED_FIELDS.forEach(fields.putArray("exclude")::add);
+        body.set("fields", fields);
+        if (maxCloudCover != null) {
+            var queryExtension = mapper.createObjectNode();
+            queryExtension.putObject(CLOUD_COVER).put("lt", maxCloudCover);
+            body.set("query", queryExtension);
+        }
+
+        var request = HttpRequest.newBuilder(searchUri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/geo+json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                .build();
+
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (var stream = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException(String.format("search at %s failed with status %d", searchUri, response.statusCode()));
+            }
+            var features = mapper.readValue(stream, SearchResponse.class).features();
+            if (features == null) {
+                return List.of();
+            }
+            return features.stream()
+                    .map(feature -> new ItemSummary(
+                            feature.id(),
+                            feature.collection(),
+                            feature.properties() == null ? null : feature.properties().datetime(),
+                            feature.properties() == null ? null : feature.properties().cloudCover()
+                    ))
+                    .toList();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record SearchResponse(List<Feature> features) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Feature(String id, String collection, Properties properties) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Properties(String datetime, @JsonProperty(CLOUD_COVER) Double cloudCover) {
+    }
+}
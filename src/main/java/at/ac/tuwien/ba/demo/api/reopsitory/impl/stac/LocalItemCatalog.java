@@ -0,0 +1,388 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
+import io.github11904212.java.stac.client.core.Item;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import mil.nga.sf.geojson.GeometryCollection;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * an in-memory copy of the items of the monitored collections and regions.
+ * the footprints are indexed by a STR-tree and the acquisition times by a sorted map,
+ * so searches within the synced collections, regions and time span are answered without a remote call.
+ * the catalog is synced periodically, each sync only fetches the items newer than the newest known item.
+ * after each sync items older than the history or outside the regions are dropped, so the catalog does not grow
+ * beyond the monitored time span.
+ * the catalog is not persisted, after a restart it is filled again by a full sync.
+ */
+public class LocalItemCatalog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // the limit of a single search for items sharing a timestamp grows up to this factor of the page limit
+    private static final int MAX_INSTANT_LIMIT_FACTOR = 16;
+
+    private final ItemSource source;
+    private final GeoJsonToJtsConverter geoJsonToJtsConverter;
+    private final Set<String> collections;
+    private final List<GeometryCollection> regions;
+    private final PreparedGeometry coverage;
+    private final Duration history;
+    private final Duration syncOverlap;
+    private final Duration maxStaleness;
+    private final int pageLimit;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, CatalogEntry> entries = new ConcurrentHashMap<>();
+    // the newest item per collection and region, keyed by "collection#regionIndex"
+    private final Map<String, Instant> highWaterMarks = new ConcurrentHashMap<>();
+
+    private volatile CatalogIndex index = new CatalogIndex(new STRtree(), new TreeMap<>());
+    private volatile Instant lastSync;
+    // the start of the time span held by the catalog, it moves forward with each sync
+    private volatile Instant retainedFrom;
+
+    private final LongAdder localSearches = new LongAdder();
+    private final LongAdder remoteSearches = new LongAdder();
+
+    /**
+     * @param source the source the items are synced from.
+     * @param geoJsonToJtsConverter converts footprints and regions.
+     * @param collections the synced collections.
+     * @param regions the synced regions.
+     * @param history how far back in time the first sync reaches, older items are dropped.
+     * @param syncOverlap each sync fetches again the items this much older than the newest known item,
+     *                    so items which are published late are not missed.
+     * @param maxStaleness searches ending at most this much after the last sync are answered locally.
+     * @param pageLimit the maximum number of items requested with a single search.
+     * @param scheduler runs the periodic sync, it is shut down by {@link #close()}.
+     */
+    public LocalItemCatalog(
+            ItemSource source,
+            GeoJsonToJtsConverter geoJsonToJtsConverter,
+            List<String> collections,
+            List<GeometryCollection> regions,
+            Duration history,
+            Duration syncOverlap,
+            Duration maxStaleness,
+            int pageLimit,
+            ScheduledExecutorService scheduler
+    ) {
+        this.source = source;
+        this.geoJsonToJtsConverter = geoJsonToJtsConverter;
+        this.collections = Set.copyOf(collections);
+        this.regions = List.copyOf(regions);
+        this.coverage = PreparedGeometryFactory.prepare(
+                geoJsonToJtsConverter.convertGeometryCollection(new GeometryCollection(
+                        regions.stream().flatMap(region -> region.getGeometries().stream()).toList()
+                )).union()
+        );
+        this.history = history;
+        this.syncOverlap = syncOverlap;
+        this.maxStaleness = maxStaleness;
+        this.pageLimit = pageLimit;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * starts the periodic sync, the first sync starts immediately.
+     *
+     * @param interval the time between the end of a sync and the start of the next one.
+     */
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(this::syncSafely, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * searches the catalog if it holds all items matching the query.
+     *
+     * @param collections the collections of interest.
+     * @param dateTimeFrom a datetime marking the start of the time interval.
+     * @param dateTimeTo a datetime marking the end of the time interval.
+     * @param areaOfInterest the area which should be intersected by the items.
+     * @param limit the maximum of returned items.
+     * @return the matching items (newest first) or empty if the query is not covered by the catalog.
+     */
+    public Optional<List<Item>> search(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            int limit
+    ) {
+        var aoi = geoJsonToJtsConverter.convertGeometryCollection(areaOfInterest);
+        if (!covers(collections, dateTimeFrom, dateTimeTo, aoi)) {
+            remoteSearches.increment();
+            return Optional.empty();
+        }
+        localSearches.increment();
+
+        var currentIndex = this.index;
+        var preparedAoi = PreparedGeometryFactory.prepare(aoi);
+
+        // spatial candidates from the tree, the time index yields them ordered and allows to stop at the limit
+        Set<CatalogEntry> spatialCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (var candidate : currentIndex.tree().query(aoi.getEnvelopeInternal())) {
+            spatialCandidates.add((CatalogEntry) candidate);
+        }
+
+        List<Item> result = new ArrayList<>();
+        var window = currentIndex.byTime()
+                .subMap(dateTimeFrom.toInstant(), true, dateTimeTo.toInstant(), true)
+                .descendingMap();
+        for (var entriesAtTime : window.values()) {
+            for (var entry : entriesAtTime) {
+                if (result.size() >= limit) {
+                    return Optional.of(result);
+                }
+                if (spatialCandidates.contains(entry)
+                        && collections.contains(entry.collection())
+                        && preparedAoi.intersects(entry.footprint())
+                ) {
+                    result.add(entry.item());
+                }
+            }
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * fetches the items published since the last sync and rebuilds the index.
+     *
+     * @throws IOException if the items could not be fetched.
+     * @throws InterruptedException if the thread got interrupted.
+     */
+    public synchronized void sync() throws IOException, InterruptedException {
+        var syncStart = Instant.now();
+        var retainFrom = syncStart.minus(history);
+        int fetched = 0;
+        for (var collection : collections) {
+            for (int i = 0; i < regions.size(); i++) {
+                fetched += syncRegion(collection, i, retainFrom, syncStart);
+            }
+        }
+        int dropped = prune(retainFrom);
+        this.index = buildIndex();
+        this.retainedFrom = retainFrom;
+        this.lastSync = syncStart;
+        LOGGER.info("synced local catalog, fetched {} items, dropped {} items, {} items in total",
+                fetched, dropped, entries.size());
+    }
+
+    /**
+     * registers the number of local and remote searches and the size of the catalog.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stac.catalog.searches", localSearches, LongAdder::sum)
+                .description("searches answered by the local catalog")
+                .tag("result", "local")
+                .register(registry);
+        FunctionCounter.builder("stac.catalog.searches", remoteSearches, LongAdder::sum)
+                .description("searches not covered by the local catalog")
+                .tag("result", "remote")
+                .register(registry);
+        Gauge.builder("stac.catalog.items", entries, Map::size)
+                .description("items held by the local catalog")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @param item a STAC item.
+     * @return the acquisition time of the item or empty if it has none or it can not be parsed.
+     */
+    static Optional<Instant> readDateTime(Item item) {
+        try {
+            return item.getDateTime().map(dateTime -> Instant.from(DateTimeFormatter.ISO_DATE_TIME.parse(dateTime)));
+        } catch (DateTimeParseException e) {
+            LOGGER.debug("item {} has an invalid datetime", item.getId());
+            return Optional.empty();
+        }
+    }
+
+    private boolean covers(
+            List<String> requestedCollections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            Geometry aoi
+    ) {
+        var synced = this.lastSync;
+        var retained = this.retainedFrom;
+        return synced != null
+                && this.collections.containsAll(requestedCollections)
+                && !dateTimeFrom.toInstant().isBefore(retained)
+                && !dateTimeTo.toInstant().isAfter(synced.plus(maxStaleness))
+                && coverage.covers(aoi);
+    }
+
+    private int syncRegion(String collection, int regionIndex, Instant retainFrom, Instant syncStart)
+            throws IOException, InterruptedException {
+        var key = collection + "#" + regionIndex;
+        var region = regions.get(regionIndex);
+        var highWaterMark = highWaterMarks.get(key);
+        var from = ZonedDateTime.ofInstant(
+                highWaterMark == null || highWaterMark.minus(syncOverlap).isBefore(retainFrom)
+                        ? retainFrom
+                        : highWaterMark.minus(syncOverlap),
+                ZoneOffset.UTC
+        );
+        var to = ZonedDateTime.ofInstant(syncStart, ZoneOffset.UTC);
+
+        var sync = new RegionSync(collection);
+        while (!to.isBefore(from)) {
+            var page = source.getItems(collection, region, from, to, pageLimit);
+            sync.add(page);
+
+            // a full page means there are more items, continue at the oldest one of this page
+            if (page.size() < pageLimit || sync.oldestOfPage == null) {
+                break;
+            }
+            if (sync.oldestOfPage.isBefore(to.toInstant())) {
+                to = ZonedDateTime.ofInstant(sync.oldestOfPage, ZoneOffset.UTC);
+                continue;
+            }
+            // more than a page of items share the end of the interval, they can not be paged by time
+            syncInstant(sync, region, to);
+            to = to.minusNanos(1);
+        }
+
+        // only a complete sync of the region advances it, a failed one is repeated from the same point
+        if (sync.newest != null) {
+            highWaterMarks.merge(key, sync.newest, (a, b) -> a.isAfter(b) ? a : b);
+        }
+        return sync.fetched;
+    }
+
+    /*
+    fetches all items of a single timestamp with a growing limit.
+     */
+    private void syncInstant(RegionSync sync, GeometryCollection region, ZonedDateTime instant)
+            throws IOException, InterruptedException {
+        int limit = pageLimit;
+        while (true) {
+            int previous = sync.pageSize;
+            limit *= 2;
+            var page = source.getItems(sync.collection, region, instant, instant, limit);
+            sync.add(page);
+            if (page.size() < limit && page.size() > previous) {
+                return;
+            }
+            if (page.size() <= previous || limit >= pageLimit * MAX_INSTANT_LIMIT_FACTOR) {
+                // the source caps the limit
+                LOGGER.warn("more than {} items of {} share the timestamp {}, some of them may be missing",
+                        page.size(), sync.collection, instant);
+                return;
+            }
+        }
+    }
+
+    /*
+    drops the items acquired before the retained time span and the items not intersecting any region.
+     */
+    private int prune(Instant retainFrom) {
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.dateTime().isBefore(retainFrom)
+                || !coverage.intersects(entry.footprint()));
+        return before - entries.size();
+    }
+
+    private CatalogIndex buildIndex() {
+        var tree = new STRtree();
+        NavigableMap<Instant, List<CatalogEntry>> byTime = new TreeMap<>();
+        for (var entry : entries.values()) {
+            tree.insert(entry.footprint().getEnvelopeInternal(), entry);
+            byTime.computeIfAbsent(entry.dateTime(), t -> new ArrayList<>()).add(entry);
+        }
+        tree.build();
+        return new CatalogIndex(tree, Collections.unmodifiableNavigableMap(byTime));
+    }
+
+    private void syncSafely() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("could not sync the local catalog, searches are answered remotely until the next sync", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    the progress of the sync of a collection within a region.
+     */
+    private final class RegionSync {
+
+        private final String collection;
+        private Instant newest;
+        private Instant oldestOfPage;
+        private int pageSize;
+        private int fetched;
+
+        private RegionSync(String collection) {
+            this.collection = collection;
+        }
+
+        void add(List<Item> page) {
+            oldestOfPage = null;
+            for (var item : page) {
+                var dateTime = readDateTime(item);
+                if (dateTime.isEmpty() || item.getGeometry() == null) {
+                    continue;
+                }
+                entries.put(item.getId(), new CatalogEntry(
+                        item,
+                        collection,
+                        dateTime.get(),
+                        geoJsonToJtsConverter.convertGeometry(item.getGeometry())
+                ));
+                newest = newest == null || dateTime.get().isAfter(newest) ? dateTime.get() : newest;
+                oldestOfPage = oldestOfPage == null || dateTime.get().isBefore(oldestOfPage)
+                        ? dateTime.get()
+                        : oldestOfPage;
+            }
+            pageSize = page.size();
+            fetched += page.size();
+        }
+    }
+
+    private record CatalogEntry(Item item, String collection, Instant dateTime, Geometry footprint) {
+    }
+
+    private record CatalogIndex(STRtree tree, NavigableMap<Instant, List<CatalogEntry>> byTime) {
+    }
+}
@@ -0,0 +1,172 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import io.github11904212.java.stac.client.core.Item;
+import mil.nga.sf.geojson.GeometryCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * searches items of long time intervals.
+ * the interval is split into slices which are searched concurrently, a slice returning a full page
+ * is split again until all of its items fit into a single page.
+ * the items are passed on slice by slice, the newest first, so only the slices in flight are held in memory.
+ */
+public class ParallelItemSearch implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // slices are inclusive on both ends and start and end on whole milliseconds, the precision of stac datetimes,
+    // so neighbouring slices are separated by this gap without skipping a datetime
+    private static final Duration SLICE_GAP = Duration.ofMillis(1);
+
+    private final ItemSource source;
+    private final Duration sliceDuration;
+    private final Duration minSliceDuration;
+    private final int pageLimit;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * @param source the source of the items.
+     * @param sliceDuration the initial length of the slices.
+     * @param minSliceDuration slices are not split below this length, even if their page is full.
+     * @param pageLimit the maximum number of items requested per slice.
+     * @param parallelism the number of slices searched concurrently.
+     * @param executor runs the searches, it is shut down by {@link #close()}.
+     */
+    public ParallelItemSearch(
+            ItemSource source,
+            Duration sliceDuration,
+            Duration minSliceDuration,
+            int pageLimit,
+            int parallelism,
+            ExecutorService executor
+    ) {
+        this.source = source;
+        this.sliceDuration = sliceDuration;
+        this.minSliceDuration = minSliceDuration;
+        this.pageLimit = pageLimit;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    /**
+     * searches all items which are contained in the time interval and intersect the area of interest.
+     *
+     * @param collections the collections of interest.
+     * @param dateTimeFrom a datetime marking the start of the time interval.
+     * @param dateTimeTo a datetime marking the end of the time interval.
+     * @param areaOfInterest the area which should be intersected by the items.
+     * @param consumer receives the items, the newest slice first.
+     * @throws IOException if a slice could not be searched.
+     * @throws InterruptedException if the thread got interrupted.
+     */
+    public void search(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection areaOfInterest,
+            Consumer<Item> consumer
+    ) throws IOException, InterruptedException {
+        Deque<Slice> pending = new ArrayDeque<>();
+        // the datetimes of the items within the interval lie within these whole milliseconds
+        var from = dateTimeFrom.truncatedTo(ChronoUnit.MILLIS);
+        if (from.isBefore(dateTimeFrom)) {
+            from = from.plus(SLICE_GAP);
+        }
+        var sliceEnd = dateTimeTo.truncatedTo(ChronoUnit.MILLIS);
+        while (!sliceEnd.isBefore(from)) {
+            var sliceStart = sliceEnd.minus(sliceDuration).plus(SLICE_GAP).truncatedTo(ChronoUnit.MILLIS);
+            if (sliceStart.isBefore(from)) {
+                sliceStart = from;
+            }
+            for (var collection : collections) {
+                pending.add(new Slice(collection, sliceStart, sliceEnd));
+            }
+            sliceEnd = sliceStart.minus(SLICE_GAP);
+        }
+
+        Deque<SliceResult> inFlight = new ArrayDeque<>();
+        try {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                while (inFlight.size() < parallelism && !pending.isEmpty()) {
+                    inFlight.add(submit(pending.poll(), areaOfInterest));
+                }
+
+                var next = inFlight.poll();
+                var items = await(next);
+                if (items.size() >= pageLimit && next.slice().canSplit(minSliceDuration)) {
+                    // the newer half is passed on first, both take the place of the full slice
+                    var halves = next.slice().split();
+                    inFlight.addFirst(submit(halves[1], areaOfInterest));
+                    inFlight.addFirst(submit(halves[0], areaOfInterest));
+                    continue;
+                }
+                if (items.size() >= pageLimit) {
+                    LOGGER.warn("slice {} has more than {} items, the result is incomplete", next.slice(), pageLimit);
+                }
+                items.forEach(consumer);
+            }
+        } finally {
+            inFlight.forEach(result -> result.future().cancel(true));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private SliceResult submit(Slice slice, GeometryCollection areaOfInterest) {
+        return new SliceResult(slice, executor.submit(() -> source.getItems(
+                slice.collection(), areaOfInterest, slice.from(), slice.to(), pageLimit
+        )));
+    }
+
+    private static List<Item> await(SliceResult result) throws IOException, InterruptedException {
+        try {
+            return result.future().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("could not search slice " + result.slice(), e.getCause());
+        }
+    }
+
+    private record Slice(String collection, ZonedDateTime from, ZonedDateTime to) {
+
+        boolean canSplit(Duration minDuration) {
+            var duration = Duration.between(from, to);
+            return duration.compareTo(minDuration.multipliedBy(2)) >= 0
+                    && duration.compareTo(SLICE_GAP.multipliedBy(2)) >= 0;
+        }
+
+        /*
+        the newer half first, the halves are split on a whole millisecond so no datetime falls between them.
+         */
+        Slice[] split() {
+            var middle = from.plus(Duration.between(from, to).dividedBy(2)).truncatedTo(ChronoUnit.MILLIS);
+            return new Slice[]{
+                    new Slice(collection, middle, to),
+                    new Slice(collection, from, middle.minus(SLICE_GAP))
+            };
+        }
+    }
+
+    private record SliceResult(Slice slice, Future<List<Item>> future) {
+    }
+}
@@ -0,0 +1,45 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import io.github11904212.java.stac.client.StacClient;
+import io.github11904212.java.stac.client.core.Item;
+import io.github11904212.java.stac.client.search.dto.QueryParameter;
+import mil.nga.sf.geojson.GeometryCollection;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * reads items from the STAC api of the planetary computer.
+ */
+public class RemoteItemSource implements ItemSource {
+
+    private final StacClient stacClient;
+
+    public RemoteItemSource(StacClient stacClient) {
+        this.stacClient = stacClient;
+    }
+
+    @Override
+    public List<Item> getItems(
+            String collection,
+            GeometryCollection region,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            int limit
+    ) throws IOException, InterruptedException {
+        var query = new QueryParameter();
+        query.setCollections(List.of(collection));
+        query.setDatetime(String.format("%s/%s",
+                dateTimeFrom.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                dateTimeTo.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME))
+        );
+        query.setIntersects(region);
+        query.setLimit(limit);
+
+        var items = stacClient.search(query).getItems();
+        return items == null ? Collections.emptyList() : items;
+    }
+}
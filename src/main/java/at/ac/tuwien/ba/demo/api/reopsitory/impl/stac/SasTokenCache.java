@@ -0,0 +1,284 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import at.ac.tuwien.ba.demo.api.util.SingleFlight;
+import io.github11904212.java.stac.client.core.Item;
+import io.github11904212.pcc.PlanetaryComputerClient;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * caches the SAS tokens of the planetary computer per storage account and container.
+ * all assets stored in the same container are signed with the same token, so an asset href is signed
+ * by appending a cached token instead of asking the planetary computer.
+ * tokens are refreshed in the background shortly before they expire, as long as they are used.
+ * concurrent misses of the same container are signed by a single request to the planetary computer.
+ */
+public class SasTokenCache implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // used if the expiry of a token can not be read from its "se" parameter
+    private static final Duration DEFAULT_VALIDITY = Duration.ofMinutes(30);
+
+    private final PlanetaryComputerClient planetaryComputer;
+    private final Duration minRemaining;
+    private final Duration refreshAhead;
+    private final Duration idleTimeout;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, SasToken> tokens = new ConcurrentHashMap<>();
+    private final SingleFlight<String, SignedHref> signing = new SingleFlight<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param planetaryComputer the client signing items.
+     * @param minRemaining a token is not handed out if it expires within this duration.
+     * @param refreshAhead a used token is refreshed in the background if it expires within this duration.
+     * @param idleTimeout tokens which were not used within this duration are not refreshed but dropped.
+     * @param scheduler runs the background refresh, it is shut down by {@link #close()}.
+     */
+    public SasTokenCache(
+            PlanetaryComputerClient planetaryComputer,
+            Duration minRemaining,
+            Duration refreshAhead,
+            Duration idleTimeout,
+            ScheduledExecutorService scheduler
+    ) {
+        this.planetaryComputer = planetaryComputer;
+        this.minRemaining = minRemaining;
+        this.refreshAhead = refreshAhead;
+        this.idleTimeout = idleTimeout;
+        this.scheduler = scheduler;
+        scheduler.scheduleWithFixedDelay(this::refreshExpiring, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * signs the href of an asset.
+     *
+     * @param item the unsigned item holding the asset.
+     * @param assetKey the key of the asset.
+     * @param href the unsigned href of the asset.
+     * @return the signed href.
+     * @throws IOException if the item had to be signed by the planetary computer and this failed.
+     */
+    public String sign(Item item, String assetKey, String href) throws IOException {
+        var container = container(href);
+        if (container == null) {
+            misses.increment();
+            return signRemote(item, assetKey).href();
+        }
+
+        var token = tokens.get(container);
+        if (token != null && token.isValidAt(Instant.now().plus(minRemaining))) {
+            hits.increment();
+            token.touch();
+            return appendToken(href, token.query());
+        }
+
+        misses.increment();
+        SignedHref signed;
+        try {
+            signed = signing.execute(container, () -> {
+                var remote = signRemote(item, assetKey);
+                if (remote.token() != null) {
+                    tokens.put(container, remote.token());
+                }
+                return remote;
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while signing " + href);
+        }
+        // a coalesced caller shares the token, the signed href may belong to the asset of another caller
+        return signed.token() == null ? href : appendToken(href, signed.token().query());
+    }
+
+    /**
+     * registers hit/miss counters, the number of background refreshes and the number of cached tokens.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stac.sas.tokens.requests", hits, LongAdder::sum)
+                .description("asset hrefs signed with a cached token")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("stac.sas.tokens.requests", misses, LongAdder::sum)
+                .description("asset hrefs signed by the planetary computer")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("stac.sas.tokens.refreshes", refreshes, LongAdder::sum)
+                .description("tokens refreshed in the background before they expired")
+                .register(registry);
+        Gauge.builder("stac.sas.tokens", tokens, Map::size)
+                .description("cached SAS tokens")
+                .register(registry);
+        signing.bindTo(registry, "stac.sas.tokens.signs");
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /*
+    package-private for tests, runs every minute otherwise.
+     */
+    void refreshExpiring() {
+        var now = Instant.now();
+        tokens.forEach((container, token) -> {
+            if (token.lastUsed().plus(idleTimeout).isBefore(now)) {
+                tokens.remove(container, token);
+            } else if (!token.isValidAt(now.plus(refreshAhead))) {
+                try {
+                    var signed = signRemote(token.item(), token.assetKey());
+                    if (signed.token() != null) {
+                        signed.token().setLastUsed(token.lastUsed());
+                        tokens.put(container, signed.token());
+                        refreshes.increment();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("could not refresh the SAS token of {}", container, e);
+                }
+            }
+        });
+    }
+
+    private SignedHref signRemote(Item item, String assetKey) throws IOException {
+        var signedItem = planetaryComputer.sign(item);
+        var href = signedItem.getAsset(assetKey)
+                .orElseThrow(() -> new IOException("the signed item has no asset " + assetKey))
+                .getHref();
+
+        var query = URI.create(href).getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return new SignedHref(href, null);
+        }
+        return new SignedHref(href, new SasToken(query, readExpiry(query), item, assetKey));
+    }
+
+    /*
+    the storage account (host) and container (first path segment) of a blob href.
+     */
+    private static String container(String href) {
+        try {
+            var uri = URI.create(href);
+            var path = uri.getPath();
+            if (uri.getHost() == null || path == null || path.length() < 2) {
+                return null;
+            }
+            int end = path.indexOf('/', 1);
+            return uri.getHost() + (end < 0 ? path : path.substring(0, end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Instant readExpiry(String query) {
+        for (var parameter : query.split("&")) {
+            if (parameter.startsWith("se=")) {
+                try {
+                    return Instant.parse(URLDecoder.decode(parameter.substring(3), StandardCharsets.UTF_8));
+                } catch (DateTimeParseException e) {
+                    LOGGER.debug("could not parse the expiry of a SAS token: {}", parameter);
+                }
+            }
+        }
+        return Instant.now().plus(DEFAULT_VALIDITY);
+    }
+
+    /*
+    appends the token to the query of the href. parameters of the href are kept,
+    unless the token has them too, so an already signed href gets the cached token instead of its old one.
+     */
+    private static String appendToken(String href, String query) {
+        int queryStart = href.indexOf('?');
+        if (queryStart < 0) {
+            return href + "?" + query;
+        }
+
+        var tokenParameters = Arrays.stream(query.split("&"))
+                .map(SasTokenCache::parameterName)
+                .collect(Collectors.toSet());
+        var kept = Arrays.stream(href.substring(queryStart + 1).split("&"))
+                .filter(parameter -> !parameter.isEmpty())
+                .filter(parameter -> !tokenParameters.contains(parameterName(parameter)))
+                .collect(Collectors.joining("&"));
+        return href.substring(0, queryStart + 1) + (kept.isEmpty() ? query : kept + "&" + query);
+    }
+
+    private static String parameterName(String parameter) {
+        int end = parameter.indexOf('=');
+        return end < 0 ? parameter : parameter.substring(0, end);
+    }
+
+    private record SignedHref(String href, SasToken token) {
+    }
+
+    private static final class SasToken {
+
+        private final String query;
+        private final Instant expiry;
+        private final Item item;
+        private final String assetKey;
+        private volatile Instant lastUsed = Instant.now();
+
+        private SasToken(String query, Instant expiry, Item item, String assetKey) {
+            this.query = query;
+            this.expiry = expiry;
+            this.item = item;
+            this.assetKey = assetKey;
+        }
+
+        boolean isValidAt(Instant instant) {
+            return expiry.isAfter(instant);
+        }
+
+        void touch() {
+            lastUsed = Instant.now();
+        }
+
+        void setLastUsed(Instant lastUsed) {
+            this.lastUsed = lastUsed;
+        }
+
+        String query() {
+            return query;
+        }
+
+        Item item() {
+            return item;
+        }
+
+        String assetKey() {
+            return assetKey;
+        }
+
+        Instant lastUsed() {
+            return lastUsed;
+        }
+    }
+}
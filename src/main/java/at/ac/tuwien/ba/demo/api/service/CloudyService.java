@@ -1,10 +1,13 @@
 package at.ac.tuwien.ba.demo.api.service;
 
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
+import at.ac.tuwien.ba.demo.api.util.raster.SclHistogram;
 import io.github11904212.java.stac.client.core.Item;
 import org.locationtech.jts.geom.Geometry;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 
 public interface CloudyService {
@@ -18,6 +21,24 @@ public interface CloudyService {
      */
     boolean isItemCloudy(Item item, Geometry aoi) throws ServiceException;
 
+    /**
+     * counts the scene classes of the pixels within the area of interest.
+     *
+     * @param item the {@link Item} to check.
+     * @param aoi the area of interest
+     * @return the {@link SclHistogram} of the pixels within the area of interest.
+     */
+    SclHistogram getSclHistogram(Item item, Geometry aoi) throws ServiceException;
+
+    /**
+     * calculates the share of the area of interest which is not cloud free.
+     *
+     * @param item the {@link Item} to check.
+     * @param aoi the area of interest
+     * @return the cloud cover in percent, pixels without data are not taken into account.
+     */
+    double getCloudPercent(Item item, Geometry aoi) throws ServiceException;
+
     /**
      * filters a given list and returns a list of cloud free items.
      *
@@ -26,4 +47,24 @@ public interface CloudyService {
      * @return a list of all cloud free items.
      */
     List<Item> filterCloudyItems(List<Item> items, Geometry aoi) throws ServiceException;
+
+    /**
+     * filters a given list and returns the first cloud free candidates.
+     * the items are checked concurrently, the remaining checks are cancelled once the limit is reached.
+     *
+     * @param candidates the candidates to check, the result keeps their order.
+     * @param itemOf the {@link Item} to check for a candidate, or empty if the candidate is known to be cloud free.
+     * @param aoi the area of interest
+     * @param limit the maximum number of returned candidates.
+     * @param maxCloudPercent the cloud cover in percent a candidate may have, 0 if no cloudy pixel is tolerated.
+     * @param <T> the type of the candidates.
+     * @return the first cloud free candidates.
+     */
+    <T> List<T> filterCloudyCandidates(
+            List<T> candidates,
+            Function<T, Optional<Item>> itemOf,
+            Geometry aoi,
+            int limit,
+            double maxCloudPercent
+    ) throws ServiceException;
 }
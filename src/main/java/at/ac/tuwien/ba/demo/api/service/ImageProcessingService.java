@@ -1,6 +1,9 @@
 package at.ac.tuwien.ba.demo.api.service;
 
+import at.ac.tuwien.ba.demo.api.util.raster.AoiMask;
+import at.ac.tuwien.ba.demo.api.util.raster.NdviStatistics;
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
@@ -19,6 +22,40 @@ public interface ImageProcessingService {
      */
     GridCoverage2D cropToAoi(GridCoverage2D coverage2D, Geometry geometryAoi) throws FactoryException, TransformException;
 
+    /**
+     * computes which pixels of a {@link GridCoverage2D} belong to an area of interest,
+     * using the same rule as {@link #cropToAoi}, but without copying the coverage.
+     * @param coverage2D the {@link GridCoverage2D} defining the pixel grid.
+     * @param geometryAoi the area of interest as {@link Geometry}, crs (SRID) will be used if set
+     *                    otherwise WGS84 will be assumed.
+     * @return the {@link AoiMask} in grid coordinates of the coverage.
+     * @throws FactoryException if given crs is unknown.
+     * @throws TransformException if the transformation to the coverage crs failed.
+     */
+    AoiMask createAoiMask(GridCoverage2D coverage2D, Geometry geometryAoi) throws FactoryException, TransformException;
+
+    /**
+     * computes which pixels of a {@link GridCoverage2D} lie entirely within an area of interest,
+     * pixels touched by the boundary of the area also cover ground outside of it and are left out.
+     * @param coverage2D the {@link GridCoverage2D} defining the pixel grid.
+     * @param geometryAoi the area of interest as {@link Geometry}, crs (SRID) will be used if set
+     *                    otherwise WGS84 will be assumed.
+     * @return the {@link AoiMask} in grid coordinates of the coverage, empty if no pixel lies within the area.
+     * @throws FactoryException if given crs is unknown.
+     * @throws TransformException if the transformation to the coverage crs failed.
+     */
+    AoiMask createInteriorAoiMask(GridCoverage2D coverage2D, Geometry geometryAoi)
+            throws FactoryException, TransformException;
+
+    /**
+     * returns the envelope of an area of interest.
+     * @param geometryAoi the area of interest as {@link Geometry}, crs (SRID) will be used if set
+     *                    otherwise WGS84 will be assumed.
+     * @return the {@link ReferencedEnvelope} of the area in its crs.
+     * @throws FactoryException if given crs is unknown.
+     */
+    ReferencedEnvelope getEnvelope(Geometry geometryAoi) throws FactoryException;
+
     /**
      * calculates a ndvi image from a nir and red image
      * @param nir the {@link GridCoverage2D} of the near infrared image
@@ -27,6 +64,30 @@ public interface ImageProcessingService {
      */
     GridCoverage2D calcCoverageNdvi(GridCoverage2D nir, GridCoverage2D red);
 
+    /**
+     * checks whether the pixels of two coverages cover the same ground, so they can be combined pixel by pixel.
+     * @param first a {@link GridCoverage2D}.
+     * @param second another {@link GridCoverage2D}.
+     * @return true if both share the crs, the pixel bounds and the transform from the grid to the crs.
+     */
+    boolean isSameGrid(GridCoverage2D first, GridCoverage2D second);
+
+    /**
+     * calculates the ndvi statistics of an area of interest from a nir and red image in one pass,
+     * the masked pixels are read from the images in their native grid, no intermediate image is created.
+     * @param nir the {@link GridCoverage2D} of the near infrared image, it does not need to be cropped.
+     * @param red the {@link GridCoverage2D} of the red image, in the same grid as the near infrared image.
+     * @param geometryAoi the area of interest as {@link Geometry}, crs (SRID) will be used if set
+     *                    otherwise WGS84 will be assumed.
+     * @return the {@link NdviStatistics} of the pixels within the area.
+     * @throws IllegalArgumentException if the images are not in the same grid, see {@link #isSameGrid},
+     *                                  or have more than one band.
+     * @throws FactoryException if given crs is unknown.
+     * @throws TransformException if the transformation to the coverage crs failed.
+     */
+    NdviStatistics calcNdviStatistics(GridCoverage2D nir, GridCoverage2D red, Geometry geometryAoi)
+            throws FactoryException, TransformException;
+
     /**
      * transforms a given {@link GridCoverage2D} into another crs.
      *
@@ -2,6 +2,7 @@ package at.ac.tuwien.ba.demo.api.service;
 
 import at.ac.tuwien.ba.demo.api.exception.NotFoundException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
+import at.ac.tuwien.ba.demo.api.util.raster.NdviStatistics;
 import io.github11904212.java.stac.client.core.Item;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.locationtech.jts.geom.Geometry;
@@ -19,6 +20,18 @@ public interface ImageService {
      */
     GridCoverage2D getTciImage(Item item, Geometry aoi) throws ServiceException, NotFoundException;
 
+    /**
+     * returns the true color image of given area of the item in a reduced resolution.
+     *
+     * @param item an unsigned item.
+     * @param aoi the area of interest.
+     * @param resolution the requested pixel size in meters, coarser resolutions are read from the overviews.
+     * @return the image as {@link GridCoverage2D}
+     * @throws ServiceException if the item is not supported or could not be signed
+     * @throws NotFoundException if the item is not part of a supported collection
+     */
+    GridCoverage2D getTciImage(Item item, Geometry aoi, double resolution) throws ServiceException, NotFoundException;
+
     /**
      * returns the ndvi image of given area of the item.
      *
@@ -30,5 +43,29 @@ public interface ImageService {
      */
     GridCoverage2D getNdviImage(Item item, Geometry aoi) throws NotFoundException, ServiceException;
 
+    /**
+     * returns the ndvi image of given area of the item in a reduced resolution.
+     *
+     * @param item an unsigned item.
+     * @param aoi the area of interest.
+     * @param resolution the requested pixel size in meters, coarser resolutions are read from the overviews.
+     * @return the image as {@link GridCoverage2D}
+     * @throws ServiceException if the item is not supported or could not be signed
+     * @throws NotFoundException if the item is not part of a supported collection
+     */
+    GridCoverage2D getNdviImage(Item item, Geometry aoi, double resolution) throws NotFoundException, ServiceException;
+
+    /**
+     * returns the ndvi statistics of given area of the item, computed in the native grid of the item
+     * without creating an ndvi image.
+     *
+     * @param item an unsigned item.
+     * @param aoi the area of interest.
+     * @return the {@link NdviStatistics} of the pixels within the area.
+     * @throws ServiceException if the item is not supported or could not be signed
+     * @throws NotFoundException if the item is not part of a supported collection
+     */
+    NdviStatistics getNdviStatistics(Item item, Geometry aoi) throws NotFoundException, ServiceException;
+
 
 }
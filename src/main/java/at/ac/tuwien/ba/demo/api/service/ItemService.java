@@ -3,11 +3,13 @@ package at.ac.tuwien.ba.demo.api.service;
 import at.ac.tuwien.ba.demo.api.exception.NotFoundException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
 import at.ac.tuwien.ba.demo.api.exception.ValidationException;
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
 import io.github11904212.java.stac.client.core.Item;
 import mil.nga.sf.geojson.GeometryCollection;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ItemService {
 
@@ -31,6 +33,61 @@ public interface ItemService {
     ) throws ValidationException, NotFoundException, ServiceException;
 
 
+    /**
+     * like {@link #getItemsInInterval} but only the summaries of the items are returned.
+     * cloudy items are filtered in two stages. first by the cloud cover of the whole scene,
+     * items at least as cloudy as {@code cloudySceneCover} are not even searched
+     * and, if given, items at most as cloudy as {@code clearSceneCover} are cloud free.
+     * only the items in between are checked pixel by pixel within the area of interest.
+     * the scene cloud cover does not count cloud shadows and the other classes which are not cloud free,
+     * so a {@code clearSceneCover} may accept items whose pixels within the area would be rejected.
+     *
+     * @param collections the collections of interest.
+     * @param dateTimeFrom a datetime marking the start of the time interval.
+     * @param dateTimeTo a datetime marking the end of the time interval.
+     * @param aresOfInterest the area which should be intersected by the items.
+     * @param limit the maximum of returned items.
+     * @param filterCloudy trigger filtering based cloudiness.
+     * @param cloudySceneCover the scene cloud cover in percent from which an item is cloudy.
+     * @param clearSceneCover the scene cloud cover in percent up to which an item is cloud free,
+     *                        null if every item is checked pixel by pixel.
+     * @param maxCloudPercent the cloud cover within the area of interest in percent an item may have,
+     *                        0 if no cloudy pixel is tolerated.
+     * @return the summaries of the items that meet the conditions.
+     */
+    List<ItemSummary> getItemSummariesInInterval(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection aresOfInterest,
+            int limit,
+            boolean filterCloudy,
+            double cloudySceneCover,
+            Double clearSceneCover,
+            double maxCloudPercent
+    ) throws ValidationException, ServiceException;
+
+
+    /**
+     * passes all items with are contained in the time interval and intersect the area of interest to a consumer.
+     * in contrast to {@link #getItemsInInterval} the number of items is not limited.
+     *
+     * @param collections the collections of interest.
+     * @param dateTimeFrom a datetime marking the start of the time interval.
+     * @param dateTimeTo a datetime marking the end of the time interval.
+     * @param aresOfInterest the area which should be intersected by the items.
+     * @param consumer receives the items while they are searched.
+     * @throws ServiceException in case the items could not be searched.
+     */
+    void streamItemsInInterval(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection aresOfInterest,
+            Consumer<Item> consumer
+    ) throws ServiceException;
+
+
     /**
      * get an item by id.
      *
@@ -57,4 +114,14 @@ public interface ItemService {
      * @throws ServiceException in case the item could not be signed.
      */
     Item signItem(Item item) throws ServiceException;
+
+    /**
+     * signs the href of a single asset of an item, usually without calling the planetary computer.
+     *
+     * @param item the unsigned {@link Item}
+     * @param assetKey the key of the asset.
+     * @return the signed href of the asset.
+     * @throws ServiceException in case the asset could not be signed.
+     */
+    String signAssetHref(Item item, String assetKey) throws ServiceException;
 }
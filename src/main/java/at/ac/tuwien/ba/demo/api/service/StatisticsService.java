@@ -1,6 +1,7 @@
 package at.ac.tuwien.ba.demo.api.service;
 
 import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.NdviStatsDto;
+import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.SclStatsDto;
 import at.ac.tuwien.ba.demo.api.exception.NotFoundException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
 import io.github11904212.java.stac.client.core.Item;
@@ -29,4 +30,14 @@ public interface StatisticsService {
      *         are excluded from the resulting list.
      */
     List<NdviStatsDto> calsNdviStatistics(List<Item> itemList, Geometry areaOfInterest);
+
+    /**
+     * counts the scene classes (SCL) of a given list of {@link Item}s within the area of interest.
+     *
+     * @param itemList the given list of items.
+     * @param areaOfInterest the area for which the calculation shall be performed.
+     * @return a list of {@link SclStatsDto} containing the class histogram and cloud cover.
+     *         items for which no statistic could be calculated are excluded from the resulting list.
+     */
+    List<SclStatsDto> calcSclStatistics(List<Item> itemList, Geometry areaOfInterest);
 }
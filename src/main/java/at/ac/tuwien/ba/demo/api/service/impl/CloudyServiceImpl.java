@@ -1,33 +1,55 @@
 package at.ac.tuwien.ba.demo.api.service.impl;
 
+import at.ac.tuwien.ba.demo.api.config.CloudProperties;
 import at.ac.tuwien.ba.demo.api.exception.RepositoryException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
 import at.ac.tuwien.ba.demo.api.reopsitory.PcCogRepository;
 import at.ac.tuwien.ba.demo.api.reopsitory.PcStacRepository;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cloud.CloudVerdictStore;
 import at.ac.tuwien.ba.demo.api.service.CloudyService;
 import at.ac.tuwien.ba.demo.api.service.ImageProcessingService;
+import at.ac.tuwien.ba.demo.api.util.AoiHash;
 import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
 import at.ac.tuwien.ba.demo.api.util.SupportedCollections;
+import at.ac.tuwien.ba.demo.api.util.raster.AoiMask;
+import at.ac.tuwien.ba.demo.api.util.raster.RasterTiles;
+import at.ac.tuwien.ba.demo.api.util.raster.SclHistogram;
 import io.github11904212.java.stac.client.core.Item;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 @Service
 public class CloudyServiceImpl implements CloudyService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int VERDICT_VERSION = 2;
     private final GeoJsonToJtsConverter geoJsonToJtsConverter;
 
     private final PcStacRepository stacRepository;
@@ -36,30 +58,177 @@ public class CloudyServiceImpl implements CloudyService {
 
     private final ImageProcessingService processingService;
 
+    // the shared pool running the checks, see CloudConfig
+    private final ExecutorService checkExecutor;
+    private final int parallelism;
+
+    private final boolean progressive;
+    private final double overviewResolution;
+
+    // null if the verdicts are not stored
+    private final CloudVerdictStore verdictStore;
+
+    private final Counter overviewChecks;
+    private final Counter fullResolutionChecks;
+
     @Autowired
     public CloudyServiceImpl(
             GeoJsonToJtsConverter geoJsonToJtsConverter,
             PcStacRepository stacRepository,
-            PcCogRepository cogRepository, ImageProcessingService processingService) {
+            PcCogRepository cogRepository, ImageProcessingService processingService,
+            CloudProperties properties,
+            @Qualifier("cloudCheckExecutor") ExecutorService checkExecutor,
+            ObjectProvider<CloudVerdictStore> verdictStore,
+            MeterRegistry meterRegistry) {
         this.geoJsonToJtsConverter = geoJsonToJtsConverter;
         this.stacRepository = stacRepository;
         this.cogRepository = cogRepository;
         this.processingService = processingService;
+        this.checkExecutor = checkExecutor;
+        this.parallelism = properties.getCheck().getParallelism();
+        this.progressive = properties.getProgressive().isEnabled();
+        this.overviewResolution = properties.getProgressive().getOverviewResolution();
+        this.verdictStore = verdictStore.getIfAvailable();
+        this.overviewChecks = Counter.builder("cloud.checks")
+                .description("cloud checks decided by the overview")
+                .tag("stage", "overview")
+                .register(meterRegistry);
+        this.fullResolutionChecks = Counter.builder("cloud.checks")
+                .description("cloud checks which read the full resolution image")
+                .tag("stage", "full")
+                .register(meterRegistry);
     }
 
     @Override
     public boolean isItemCloudy(Item item, Geometry aoi) throws ServiceException {
         LOGGER.info("check if item:{} is cloudy at aoi:{}", item, aoi);
 
-        SupportedCollections collectionInfo;
+        var collectionInfo = getCollectionInfo(item);
+        var aoiHash = verdictStore == null ? null : AoiHash.of(aoi);
+        if (aoiHash != null) {
+            var verdict = verdictStore.get(item.getId(), aoiHash, verdictDefinition(collectionInfo));
+            if (verdict.isPresent()) {
+                return verdict.get().cloudy();
+            }
+        }
+
+        var check = checkItemCloudy(item, collectionInfo, aoi);
+        // only verdicts of the full resolution image are stored, they do not depend on the check mode
+        if (aoiHash != null && check.fullResolution()) {
+            verdictStore.putCloudy(item.getId(), aoiHash, verdictDefinition(collectionInfo), check.cloudy());
+        }
+        return check.cloudy();
+    }
+
+    private CloudCheck checkItemCloudy(Item item, SupportedCollections collectionInfo, Geometry aoi)
+            throws ServiceException {
+        var cloudHref = signCloudBand(item, collectionInfo, aoi);
+
+        try {
+            var cloudUrl = new URL(cloudHref);
+            var aoiEnvelope = processingService.getEnvelope(aoi);
+            if (progressive) {
+                // the overview can only prove clouds, a cloud smaller than an overview pixel is not visible in it.
+                // so a clear overview is confirmed by the full resolution image of the whole area
+                var overview = cogRepository.fetchCoverage(
+                        cloudUrl,
+                        collectionInfo.getAssetProfile(collectionInfo.getCloudBand()),
+                        aoiEnvelope,
+                        overviewResolution
+                );
+                if (containsCloudClass(overview, processingService.createInteriorAoiMask(overview, aoi), collectionInfo)) {
+                    overviewChecks.increment();
+                    return new CloudCheck(true, false);
+                }
+            }
+            fullResolutionChecks.increment();
+            var cloudImage = fetchCloudImage(
+                    cloudUrl, collectionInfo, aoiEnvelope, PcCogRepository.NATIVE_RESOLUTION, aoi
+            );
+            return new CloudCheck(containsCloudyPixel(cloudImage, collectionInfo), true);
+        } catch (IOException | FactoryException | TransformException e) {
+            LOGGER.error("could not fetch tiff {} of item {}", collectionInfo.getCloudBand(), item.getId(), e);
+            throw new ServiceException("could not fetch image.");
+        }
+    }
+
+    @Override
+    public SclHistogram getSclHistogram(Item item, Geometry aoi) throws ServiceException {
+        LOGGER.debug("count scene classes of item:{} at aoi:{}", item.getId(), aoi);
+
+        var collectionInfo = getCollectionInfo(item);
+        var aoiHash = verdictStore == null ? null : AoiHash.of(aoi);
+        if (aoiHash != null) {
+            var stored = verdictStore.get(item.getId(), aoiHash, verdictDefinition(collectionInfo))
+                    .flatMap(CloudVerdictStore.CloudVerdict::histogram);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+        }
+
+        var histogram = countSceneClasses(item, collectionInfo, aoi);
+        if (aoiHash != null) {
+            boolean cloudy = histogram.cloudPercent(
+                    collectionInfo.getCloudFreeLookup(),
+                    collectionInfo.getNoDataPixel()
+            ) > 0;
+            verdictStore.putHistogram(item.getId(), aoiHash, verdictDefinition(collectionInfo), cloudy, histogram);
+        }
+        return histogram;
+    }
+
+    private SclHistogram countSceneClasses(Item item, SupportedCollections collectionInfo, Geometry aoi)
+            throws ServiceException {
+        var cloudHref = signCloudBand(item, collectionInfo, aoi);
+
+        try {
+            // the pixels outside the area are skipped by the mask, so the coverage does not need to be cropped
+            var coverage = cogRepository.fetchCoverage(
+                    new URL(cloudHref),
+                    collectionInfo.getAssetProfile(collectionInfo.getCloudBand()),
+                    processingService.getEnvelope(aoi),
+                    PcCogRepository.NATIVE_RESOLUTION
+            );
+            var mask = processingService.createAoiMask(coverage, aoi);
+            if (mask.getCount() == 0) {
+                return SclHistogram.of(new long[SclHistogram.CLASSES]);
+            }
+            return SclHistogram.of(coverage.getRenderedImage(), mask);
+        } catch (IOException | FactoryException | TransformException e) {
+            LOGGER.error("could not fetch tiff {} of item {}", collectionInfo.getCloudBand(), item.getId(), e);
+            throw new ServiceException("could not fetch image.");
+        }
+    }
+
+    @Override
+    public double getCloudPercent(Item item, Geometry aoi) throws ServiceException {
+        var collectionInfo = getCollectionInfo(item);
+        return getSclHistogram(item, aoi).cloudPercent(
+                collectionInfo.getCloudFreeLookup(),
+                collectionInfo.getNoDataPixel()
+        );
+    }
+
+    /*
+    stored verdicts are only reused while the classes deciding them are the same,
+    the version is increased whenever the way a verdict is computed changes.
+     */
+    private static String verdictDefinition(SupportedCollections collectionInfo) {
+        return VERDICT_VERSION + ":" + collectionInfo.getCollectionId()
+                + ":" + new TreeSet<>(collectionInfo.getCloudFreePixels())
+                + ":" + collectionInfo.getNoDataPixel();
+    }
+
+    private SupportedCollections getCollectionInfo(Item item) throws ServiceException {
         var collectionId = item.getCollection();
         if (collectionId.isPresent()
                 && SupportedCollections.map.containsKey(collectionId.get())){
-            collectionInfo = SupportedCollections.map.get(collectionId.get());
-        } else {
-            throw new ServiceException("unsupported collection: " + item.getCollection());
+            return SupportedCollections.map.get(collectionId.get());
         }
+        throw new ServiceException("unsupported collection: " + item.getCollection());
+    }
 
+    private String signCloudBand(Item item, SupportedCollections collectionInfo, Geometry aoi) throws ServiceException {
         if (item.getGeometry() != null) {
             var bboxGeom = this.geoJsonToJtsConverter.convertGeometry(
                     item.getGeometry()
@@ -70,72 +239,153 @@ public class CloudyServiceImpl implements CloudyService {
             }
         }
 
-        Item signedItem;
         try {
-            signedItem = stacRepository.signItem(item);
+            return stacRepository.signAssetHref(item, collectionInfo.getCloudBand());
         } catch (RepositoryException e) {
-            throw new ServiceException(e);
-        }
-
-        var asset = signedItem.getAsset(collectionInfo.getCloudBand());
-        if (asset.isEmpty()) {
-            LOGGER.error("predefined asset{} could not be found, check if api has changed"
-                    , collectionInfo.getCollectionId()
+            LOGGER.error("predefined asset {} could not be signed, check if api has changed",
+                    collectionInfo.getCloudBand(), e
             );
             throw new ServiceException("could not find a suitable cloud image");
         }
+    }
 
-        GridCoverage2D couldImage;
-        try {
-            couldImage = processingService.cropToAoi(
-                    cogRepository.fetchCoverageFromUrl(new URL(asset.get().getHref())),
-                    aoi
-            );
-        } catch (IOException | FactoryException | TransformException e) {
-            LOGGER.error("could not fetch tiff: {}", asset.get().getHref(), e);
-            throw new ServiceException("could not fetch image.");
-        }
-
-
-        var raster = couldImage.getRenderedImage().getData();
-
-        int numBands = raster.getNumBands();
-        int height = raster.getHeight();
-        int width = raster.getWidth();
+    private GridCoverage2D fetchCloudImage(
+            URL cloudUrl,
+            SupportedCollections collectionInfo,
+            ReferencedEnvelope envelope,
+            double resolution,
+            Geometry aoi
+    ) throws IOException, FactoryException, TransformException {
+        return processingService.cropToAoi(
+                cogRepository.fetchCoverage(
+                        cloudUrl,
+                        collectionInfo.getAssetProfile(collectionInfo.getCloudBand()),
+                        envelope,
+                        resolution
+                ),
+                aoi
+        );
+    }
 
-        int[] pixelRow = new int[width * numBands];
-        for (int i = 0; i < height; i++) {
-            // read next row
-            raster.getPixels(raster.getMinX(), raster.getMinY() + i, width, 1, pixelRow);
+    private static boolean containsCloudyPixel(GridCoverage2D cloudImage, SupportedCollections collectionInfo) {
+        // the image is read tile by tile, so the check stops at the first tile holding a cloudy pixel
+        var cloudFree = collectionInfo.getCloudFreeLookup();
+        return !RasterTiles.forEach(cloudImage.getRenderedImage(), (tile, area) -> {
+            int[] pixelRow = new int[area.width * tile.getNumBands()];
+            for (int y = area.y; y < area.y + area.height; y++) {
+                tile.getPixels(area.x, y, area.width, 1, pixelRow);
 
-            for (int val : pixelRow) {
-                if (!collectionInfo.getCloudFreePixels().contains(val)) {
-                    return true;
+                for (int val : pixelRow) {
+                    if (val < 0 || val >= cloudFree.length || !cloudFree[val]) {
+                        return false;
+                    }
                 }
             }
-        }
+            return true;
+        });
+    }
 
-        return false;
+    /*
+    an overview pixel of a cloud class decides the item is cloudy, if it lies entirely within the area.
+    pixels touching the border of the area also cover ground outside of it, they are left to the full resolution.
+    the reader decimates without interpolation, so a pixel holds the class of a pixel of the overview within it,
+    which is only a class of the full resolution image if the overview keeps classes (nearest or mode resampling).
+     */
+    private static boolean containsCloudClass(
+            GridCoverage2D overview,
+            AoiMask interior,
+            SupportedCollections collectionInfo
+    ) {
+        if (interior.getCount() == 0) {
+            return false;
+        }
+        var cloud = collectionInfo.getCloudLookup();
+        var bounds = interior.getBounds();
+        return !RasterTiles.forEach(overview.getRenderedImage(), bounds, (tile, area) -> {
+            int[] pixelRow = new int[area.width * tile.getNumBands()];
+            var found = new boolean[1];
+            interior.forEachRun(area, (x, y, length) -> {
+                if (found[0]) {
+                    return;
+                }
+                tile.getPixels(x, y, length, 1, pixelRow);
+                for (int i = 0; i < length * tile.getNumBands(); i++) {
+                    int val = pixelRow[i];
+                    if (val >= 0 && val < cloud.length && cloud[val]) {
+                        found[0] = true;
+                        return;
+                    }
+                }
+            });
+            return !found[0];
+        });
     }
 
     @Override
     public List<Item> filterCloudyItems(List<Item> items, Geometry aoi) throws ServiceException {
-        AtomicBoolean error = new AtomicBoolean(false);
-
-        var cloudFreeItems=  items.stream()
-                .filter(item -> {
-                    try {
-                        return !isItemCloudy(item, aoi);
-                    } catch (ServiceException e) {
-                        error.set(true);
-                        return false;
-                    }
-                }).toList();
+        return filterCloudyCandidates(items, Optional::of, aoi, items.size(), 0);
+    }
+
+    @Override
+    public <T> List<T> filterCloudyCandidates(
+            List<T> candidates,
+            Function<T, Optional<Item>> itemOf,
+            Geometry aoi,
+            int limit,
+            double maxCloudPercent
+    ) throws ServiceException {
+        List<T> cloudFree = new ArrayList<>();
+        Deque<Check<T>> inFlight = new ArrayDeque<>();
+        var remaining = candidates.iterator();
+
+        try {
+            while (cloudFree.size() < limit && (remaining.hasNext() || !inFlight.isEmpty())) {
+                while (inFlight.size() < parallelism && remaining.hasNext()) {
+                    var candidate = remaining.next();
+                    var item = itemOf.apply(candidate);
+                    inFlight.add(new Check<>(
+                            candidate,
+                            item.isEmpty()
+                                    ? CompletableFuture.completedFuture(false)
+                                    : checkExecutor.submit(() -> isCloudierThan(item.get(), aoi, maxCloudPercent))
+                    ));
+                }
 
-        if (error.get()) {
+                // the checks are awaited in order, so the result keeps the order of the candidates
+                var next = inFlight.poll();
+                if (!next.cloudy().get()) {
+                    cloudFree.add(next.candidate());
+                }
+            }
+        } catch (ExecutionException e) {
+            LOGGER.error("error while checking cloudiness", e.getCause());
             throw new ServiceException("error while checking cloudiness of items");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("interrupted while checking cloudiness of items");
+        } finally {
+            inFlight.forEach(check -> check.cloudy().cancel(true));
+        }
+
+        return cloudFree;
+    }
+
+    /*
+    without tolerance a single cloudy pixel decides, which the progressive check finds fastest.
+     */
+    private boolean isCloudierThan(Item item, Geometry aoi, double maxCloudPercent) throws ServiceException {
+        if (maxCloudPercent <= 0) {
+            return isItemCloudy(item, aoi);
         }
+        return getCloudPercent(item, aoi) > maxCloudPercent;
+    }
+
+    private record Check<T>(T candidate, Future<Boolean> cloudy) {
+    }
 
-        return cloudFreeItems;
+    /*
+    the verdict of a check, and whether it was decided by the full resolution image.
+     */
+    private record CloudCheck(boolean cloudy, boolean fullResolution) {
     }
 }
@@ -1,15 +1,20 @@
 package at.ac.tuwien.ba.demo.api.service.impl;
 
 
+import at.ac.tuwien.ba.demo.api.config.RasterProperties;
 import at.ac.tuwien.ba.demo.api.service.ImageProcessingService;
+import at.ac.tuwien.ba.demo.api.util.AoiHash;
+import at.ac.tuwien.ba.demo.api.util.raster.AoiMask;
+import at.ac.tuwien.ba.demo.api.util.raster.AoiMaskCache;
+import at.ac.tuwien.ba.demo.api.util.raster.NdviKernel;
+import at.ac.tuwien.ba.demo.api.util.raster.NdviStatistics;
+import at.ac.tuwien.ba.demo.api.util.raster.RasterTiles;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.coverage.processing.Operations;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -17,20 +22,53 @@ import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.media.jai.RasterFactory;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 @Service
-public class ImageProcessingServiceImpl implements ImageProcessingService {
+public class ImageProcessingServiceImpl implements ImageProcessingService, AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    // the sample value of pixels without data in the reflectance bands, also used for pixels outside a cropped area
+    private static final int REFLECTANCE_NO_DATA = 0;
 
-    public ImageProcessingServiceImpl() {
+    // null if masks are not cached
+    private final AoiMaskCache maskCache;
+
+    // pixel work is cpu bound, large rasters are split into row strips processed on a dedicated pool
+    private final ForkJoinPool pixelPool;
+    private final int stripRows;
+
+    @Autowired
+    public ImageProcessingServiceImpl(ObjectProvider<AoiMaskCache> maskCache, RasterProperties properties) {
+        // the strips are halved until they have at most this many rows, which never ends below 1
+        if (properties.getProcessing().getStripRows() < 1) {
+            throw new IllegalArgumentException("pcc.raster.processing.strip-rows must be at least 1");
+        }
         System.setProperty("org.geotools.referencing.forceXY", "true");
+        this.maskCache = maskCache.getIfAvailable();
+        this.pixelPool = new ForkJoinPool(
+                properties.getProcessing().getParallelism(),
+                pool -> {
+                    var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("raster-" + thread.getPoolIndex());
+                    return thread;
+                },
+                null,
+                false
+        );
+        this.stripRows = properties.getProcessing().getStripRows();
     }
 
     @Override
@@ -38,60 +76,93 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
 
         var geomTargetCRS = transformGeometryToCoverageCrs(geometryAoi, coverage.getCoordinateReferenceSystem());
 
-        return cropToGeometryIntersection(coverage, geomTargetCRS);
+        return cropToGeometryIntersection(coverage, geomTargetCRS, aoiHashOf(geometryAoi));
+
+    }
+
+    @Override
+    public AoiMask createAoiMask(GridCoverage2D coverage, Geometry geometryAoi) throws FactoryException, TransformException {
+        var geomTargetCRS = transformGeometryToCoverageCrs(geometryAoi, coverage.getCoordinateReferenceSystem());
+        return maskOf(coverage, geomTargetCRS, aoiHashOf(geometryAoi));
+    }
+
+    @Override
+    public AoiMask createInteriorAoiMask(GridCoverage2D coverage, Geometry geometryAoi)
+            throws FactoryException, TransformException {
+        var geomTargetCRS = transformGeometryToCoverageCrs(geometryAoi, coverage.getCoordinateReferenceSystem());
+        // only used for overviews, which are small, so the mask is not cached
+        return AoiMask.rasterizeInterior(
+                JTS.transform(geomTargetCRS, coverage.getGridGeometry().getCRSToGrid2D()),
+                RasterTiles.boundsOf(coverage.getRenderedImage())
+        );
+    }
 
+    @Override
+    public ReferencedEnvelope getEnvelope(Geometry geometryAoi) throws FactoryException {
+        return new ReferencedEnvelope(geometryAoi.getEnvelopeInternal(), getGeometryCrs(geometryAoi));
     }
 
     @Override
     public GridCoverage2D calcCoverageNdvi(GridCoverage2D nir, GridCoverage2D red) {
         LOGGER.debug("calculating ndvi image from nir:{} and red:{}", nir, red);
 
-        var rasterNIR = nir.getRenderedImage().getData();
-        var rasterRed = red.getRenderedImage().getData();
+        var imageNIR = nir.getRenderedImage();
+        var imageRed = red.getRenderedImage();
 
         if (
-                rasterNIR.getMinX() != rasterRed.getMinX()
-                        || rasterNIR.getMinY() != rasterRed.getMinY()
-                        || rasterNIR.getNumBands() != rasterRed.getNumBands()
-                        || rasterNIR.getHeight() != rasterRed.getHeight()
-                        || rasterNIR.getWidth() != rasterRed.getWidth()
+                !RasterTiles.boundsOf(imageNIR).equals(RasterTiles.boundsOf(imageRed))
+                        || imageNIR.getSampleModel().getNumBands() != imageRed.getSampleModel().getNumBands()
+                        || imageNIR.getSampleModel().getNumBands() != 1
         ) {
             throw new IllegalArgumentException("given input not computable");
         }
 
-        int numBands = rasterNIR.getNumBands();
-        int height = rasterNIR.getHeight();
-        int width = rasterNIR.getWidth();
-
-        int[] pixelRowNIR = new int[width * numBands];
-        int[] pixelRowRed = new int[width * numBands];
-        float[][] matrixNdvi = new float[height][width];
-        for (int i = 0; i < height; i++) {
-            // read next row from nir and red
-            rasterNIR.getPixels(rasterNIR.getMinX(), rasterNIR.getMinY() + i, width, 1, pixelRowNIR);
-            rasterRed.getPixels(rasterRed.getMinX(), rasterRed.getMinY() + i, width, 1, pixelRowRed);
-
-            // compute ndvi
-            for (int k=0; k<pixelRowNIR.length; k++){
-                float valNIR;
-                float valRed;
-                valNIR = pixelRowNIR[k];
-                valRed = pixelRowRed[k];
-                matrixNdvi[i][k] = ( valNIR - valRed ) / ( valNIR + valRed );
-
-            }
-        }
+        var rasterNdvi = NdviKernel.compute(imageNIR, imageRed, REFLECTANCE_NO_DATA);
 
         var factory = new GridCoverageFactory();
         var envelop = nir.getEnvelope();
 
         return factory.create(
                 "ndvi",
-                matrixNdvi,
+                rasterNdvi,
                 envelop
         );
     }
 
+    @Override
+    public boolean isSameGrid(GridCoverage2D first, GridCoverage2D second) {
+        return RasterTiles.boundsOf(first.getRenderedImage()).equals(RasterTiles.boundsOf(second.getRenderedImage()))
+                && CRS.equalsIgnoreMetadata(first.getCoordinateReferenceSystem(), second.getCoordinateReferenceSystem())
+                && first.getGridGeometry().getGridToCRS2D().equals(second.getGridGeometry().getGridToCRS2D());
+    }
+
+    @Override
+    public NdviStatistics calcNdviStatistics(GridCoverage2D nir, GridCoverage2D red, Geometry geometryAoi)
+            throws FactoryException, TransformException {
+        LOGGER.debug("calculating ndvi statistics from nir:{} and red:{}", nir, red);
+
+        var imageNIR = nir.getRenderedImage();
+        var imageRed = red.getRenderedImage();
+
+        if (
+                !isSameGrid(nir, red)
+                        || imageNIR.getSampleModel().getNumBands() != 1
+                        || imageRed.getSampleModel().getNumBands() != 1
+        ) {
+            throw new IllegalArgumentException("given input not computable");
+        }
+
+        var geomTargetCRS = transformGeometryToCoverageCrs(geometryAoi, nir.getCoordinateReferenceSystem());
+        var mask = maskOf(nir, geomTargetCRS, aoiHashOf(geometryAoi));
+        if (mask.getCount() == 0) {
+            return new NdviStatistics();
+        }
+
+        var bounds = mask.getBounds();
+        var strips = new NdviStrips(imageNIR, imageRed, mask, bounds.y, bounds.y + bounds.height);
+        return bounds.height <= stripRows ? strips.compute() : pixelPool.invoke(strips);
+    }
+
     @Override
     public GridCoverage2D transfromCoverageToCrs(GridCoverage2D coverage2D, String epsgCodeTarget) throws FactoryException {
         LOGGER.debug("transform coverage:{} to target crs:{}", coverage2D, epsgCodeTarget);
@@ -101,13 +172,21 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
     }
 
 
-    private Geometry transformGeometryToCoverageCrs(Geometry geometry, CoordinateReferenceSystem targetCRS) throws FactoryException, TransformException {
-        CoordinateReferenceSystem sourceCRS;
+    @Override
+    public void close() {
+        pixelPool.shutdownNow();
+    }
+
+    private CoordinateReferenceSystem getGeometryCrs(Geometry geometry) throws FactoryException {
         if (geometry.getSRID() != 0) {
-            sourceCRS = CRS.decode("EPSG:" + geometry.getSRID());
+            return CRS.decode("EPSG:" + geometry.getSRID());
         } else {
-            sourceCRS = CRS.decode("EPSG:4326");
+            return CRS.decode("EPSG:4326");
         }
+    }
+
+    private Geometry transformGeometryToCoverageCrs(Geometry geometry, CoordinateReferenceSystem targetCRS) throws FactoryException, TransformException {
+        CoordinateReferenceSystem sourceCRS = getGeometryCrs(geometry);
 
         MathTransform mathTransform = CRS.findMathTransform(sourceCRS, targetCRS);
 
@@ -119,53 +198,50 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
         return  (GridCoverage2D) ops.crop(coverage, envelope);
     }
 
-    private GridCoverage2D cropToGeometryIntersection(GridCoverage2D coverage, Geometry geometry) throws TransformException {
+    /*
+    the mask of the area within the pixel grid of the coverage, taken from the cache if the area was seen before.
+     */
+    private AoiMask maskOf(GridCoverage2D coverage, Geometry geometry, String aoiHash) throws TransformException {
+        var rasterBounds = RasterTiles.boundsOf(coverage.getRenderedImage());
+        AoiMaskCache.MaskComputation computation = () -> AoiMask.rasterize(
+                JTS.transform(geometry, coverage.getGridGeometry().getCRSToGrid2D()),
+                rasterBounds
+        );
+        if (maskCache == null) {
+            return computation.compute();
+        }
+        return maskCache.get(coverage.getGridGeometry(), rasterBounds, aoiHash, computation);
+    }
 
-        ReferencedEnvelope envelope = new ReferencedEnvelope(geometry.getEnvelopeInternal(), coverage.getCoordinateReferenceSystem());
+    private String aoiHashOf(Geometry geometryAoi) {
+        return maskCache == null ? null : AoiHash.of(geometryAoi);
+    }
 
-        var coveragePreCrop = cropToEnvelope(coverage, envelope);
+    private GridCoverage2D cropToGeometryIntersection(GridCoverage2D coverage, Geometry geometry, String aoiHash)
+            throws TransformException {
 
-        var geomGrid = JTS.transform(geometry, coveragePreCrop.getGridGeometry().getCRSToGrid2D());
+        ReferencedEnvelope envelope = new ReferencedEnvelope(geometry.getEnvelopeInternal(), coverage.getCoordinateReferenceSystem());
 
-        var jtsFactory = JTSFactoryFinder.getGeometryFactory();
+        var coveragePreCrop = cropToEnvelope(coverage, envelope);
 
-        var raster = coveragePreCrop.getRenderedImage().getData();
+        var image = coveragePreCrop.getRenderedImage();
+        int numBands = image.getSampleModel().getNumBands();
+        int width = image.getWidth();
+        int height = image.getHeight();
 
-        int numBands = raster.getNumBands();
-        int height = raster.getHeight();
-        int width = raster.getWidth();
-        int offsetX = raster.getMinX();
-        int offsetY = raster.getMinY();
-        float pixelOffset = 0.5f;
+        var mask = maskOf(coveragePreCrop, geometry, aoiHash);
 
+        // pixels outside the area keep the initial 0
         WritableRaster cropRaster = RasterFactory.createBandedRaster(
-                raster.getDataBuffer().getDataType(), width, height, numBands, null
+                image.getSampleModel().getDataType(), width, height, numBands, null
         );
-        double[] pixelRow = new double[width * numBands];
-        for (int relY = 0; relY < height; relY++) {
-
-            raster.getPixels(raster.getMinX(), raster.getMinY() + relY, width, 1, pixelRow);
-
-            for (int relX = 0; relX < width; relX++) {
-                var absX = offsetX + relX;
-                var absY = offsetY + relY;
-                var coordinates = new Coordinate[5];
-                coordinates[0] = new Coordinate(absX - pixelOffset, absY + pixelOffset);
-                coordinates[1] = new Coordinate(absX + pixelOffset, absY + pixelOffset);
-                coordinates[2] = new Coordinate(absX + pixelOffset, absY - pixelOffset);
-                coordinates[3] = new Coordinate(absX - pixelOffset, absY - pixelOffset);
-                coordinates[4] = coordinates[0];
-                var outlinePixel = jtsFactory.createLinearRing(coordinates);
-                boolean keepPixel = geomGrid.intersects(outlinePixel);
-                int pixelPosRaster = (numBands * relX);
-                for (int m = 0; m < numBands; m++){
-                    if (keepPixel) {
-                        cropRaster.setSample(relX, relY, m, pixelRow[pixelPosRaster+m]);
-                    } else {
-                        cropRaster.setSample(relX, relY, m, 0);
-                    }
-
-                }
+        if (mask.getCount() > 0) {
+            var bounds = mask.getBounds();
+            var strips = new CropStrips(image, mask, cropRaster, bounds.y, bounds.y + bounds.height);
+            if (bounds.height <= stripRows) {
+                strips.compute();
+            } else {
+                pixelPool.invoke(strips);
             }
         }
 
@@ -177,4 +253,92 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
                 coveragePreCrop.getEnvelope()
         );
     }
+
+    /*
+    copies the masked pixels of the rows [fromY, toY) of the image into the crop raster, which starts at 0/0.
+    the rows are halved until a strip is small enough, so every strip writes a disjoint part of the crop raster.
+    only the tiles touched by the area are read, the runs of the mask are copied in bulk.
+     */
+    private class CropStrips extends RecursiveAction {
+
+        private final RenderedImage image;
+        private final AoiMask mask;
+        private final WritableRaster cropRaster;
+        private final int fromY;
+        private final int toY;
+
+        CropStrips(RenderedImage image, AoiMask mask, WritableRaster cropRaster, int fromY, int toY) {
+            this.image = image;
+            this.mask = mask;
+            this.cropRaster = cropRaster;
+            this.fromY = fromY;
+            this.toY = toY;
+        }
+
+        @Override
+        protected void compute() {
+            if (toY - fromY > stripRows) {
+                int middle = (fromY + toY) >>> 1;
+                invokeAll(
+                        new CropStrips(image, mask, cropRaster, fromY, middle),
+                        new CropStrips(image, mask, cropRaster, middle, toY)
+                );
+                return;
+            }
+
+            var bounds = mask.getBounds();
+            int offsetX = image.getMinX();
+            int offsetY = image.getMinY();
+            double[] run = new double[bounds.width * image.getSampleModel().getNumBands()];
+            RasterTiles.forEach(image, new Rectangle(bounds.x, fromY, bounds.width, toY - fromY), (tile, area) -> {
+                mask.forEachRun(area, (x, y, length) -> {
+                    tile.getPixels(x, y, length, 1, run);
+                    cropRaster.setPixels(x - offsetX, y - offsetY, length, 1, run);
+                });
+                return true;
+            });
+        }
+    }
+
+    /*
+    accumulates the ndvi statistics of the masked pixels of the rows [fromY, toY), split into strips like CropStrips.
+     */
+    private class NdviStrips extends RecursiveTask<NdviStatistics> {
+
+        private final RenderedImage nir;
+        private final RenderedImage red;
+        private final AoiMask mask;
+        private final int fromY;
+        private final int toY;
+
+        NdviStrips(RenderedImage nir, RenderedImage red, AoiMask mask, int fromY, int toY) {
+            this.nir = nir;
+            this.red = red;
+            this.mask = mask;
+            this.fromY = fromY;
+            this.toY = toY;
+        }
+
+        @Override
+        protected NdviStatistics compute() {
+            if (toY - fromY > stripRows) {
+                int middle = (fromY + toY) >>> 1;
+                var upper = new NdviStrips(nir, red, mask, fromY, middle);
+                upper.fork();
+                var statistics = new NdviStrips(nir, red, mask, middle, toY).compute();
+                statistics.merge(upper.join());
+                return statistics;
+            }
+
+            var bounds = mask.getBounds();
+            var statistics = new NdviStatistics();
+            RasterTiles.forEach(nir, new Rectangle(bounds.x, fromY, bounds.width, toY - fromY), (tile, area) -> {
+                NdviKernel.accumulate(
+                        tile, RasterTiles.regionOf(red, area), mask, area, REFLECTANCE_NO_DATA, statistics
+                );
+                return true;
+            });
+            return statistics;
+        }
+    }
 }
@@ -7,6 +7,7 @@ import at.ac.tuwien.ba.demo.api.service.ImageProcessingService;
 import at.ac.tuwien.ba.demo.api.service.ImageService;
 import at.ac.tuwien.ba.demo.api.service.ItemService;
 import at.ac.tuwien.ba.demo.api.util.SupportedCollections;
+import at.ac.tuwien.ba.demo.api.util.raster.NdviStatistics;
 import io.github11904212.java.stac.client.core.Asset;
 import io.github11904212.java.stac.client.core.Item;
 import org.geotools.coverage.grid.GridCoverage2D;
@@ -45,14 +46,18 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public GridCoverage2D getTciImage(Item item, Geometry aoi) throws ServiceException, NotFoundException {
+        return getTciImage(item, aoi, PcCogRepository.NATIVE_RESOLUTION);
+    }
 
-        var collectionInfo = getCollectionInfo(item);
+    @Override
+    public GridCoverage2D getTciImage(Item item, Geometry aoi, double resolution)
+            throws ServiceException, NotFoundException {
 
-        var signedItem = itemService.signItem(item);
+        var collectionInfo = getCollectionInfo(item);
 
-        var optAsset = signedItem.getAsset(collectionInfo.getTciBand());
+        var optAsset = item.getAsset(collectionInfo.getTciBand());
         if (optAsset.isEmpty()) {
-            var msg = String.format("item %s has no asset %s", signedItem, collectionInfo.getTciBand());
+            var msg = String.format("item %s has no asset %s", item, collectionInfo.getTciBand());
             throw new ServiceException(msg);
         }
 
@@ -60,23 +65,27 @@ public class ImageServiceImpl implements ImageService {
 
         validateAssetType(asset);
 
-        var coverage = getGridCoverage2D(asset, aoi);
+        var coverage = getGridCoverage2D(item, collectionInfo, collectionInfo.getTciBand(), aoi, resolution);
 
         return transformGridCoverage2D(coverage, "EPSG:3857");
     }
 
     @Override
     public GridCoverage2D getNdviImage(Item item, Geometry aoi) throws NotFoundException, ServiceException {
+        return getNdviImage(item, aoi, PcCogRepository.NATIVE_RESOLUTION);
+    }
 
-        var collectionInfo = getCollectionInfo(item);
+    @Override
+    public GridCoverage2D getNdviImage(Item item, Geometry aoi, double resolution)
+            throws NotFoundException, ServiceException {
 
-        var signedItem = itemService.signItem(item);
+        var collectionInfo = getCollectionInfo(item);
 
-        var optAssetRed = signedItem.getAsset(collectionInfo.getRedBand());
-        var optAssetNir = signedItem.getAsset(collectionInfo.getNirBand());
+        var optAssetRed = item.getAsset(collectionInfo.getRedBand());
+        var optAssetNir = item.getAsset(collectionInfo.getNirBand());
         if (optAssetRed.isEmpty() || optAssetNir.isEmpty()) {
             var msg = String.format("item %s has no assets %s, %s",
-                    signedItem, collectionInfo.getRedBand(), collectionInfo.getNirBand()
+                    item, collectionInfo.getRedBand(), collectionInfo.getNirBand()
             );
             throw new ServiceException(msg);
         }
@@ -87,14 +96,54 @@ public class ImageServiceImpl implements ImageService {
         validateAssetType(assetRed);
         validateAssetType(assetNir);
 
-        var coverageRed = getGridCoverage2D(assetRed, aoi);
-        var coverageNir = getGridCoverage2D(assetNir, aoi);
+        var coverageRed = getGridCoverage2D(item, collectionInfo, collectionInfo.getRedBand(), aoi, resolution);
+        var coverageNir = getGridCoverage2D(item, collectionInfo, collectionInfo.getNirBand(), aoi, resolution);
 
         var coverageNdvi = processingService.calcCoverageNdvi(coverageNir, coverageRed);
 
         return transformGridCoverage2D(coverageNdvi, "EPSG:3857");
     }
 
+    @Override
+    public NdviStatistics getNdviStatistics(Item item, Geometry aoi) throws NotFoundException, ServiceException {
+
+        var collectionInfo = getCollectionInfo(item);
+
+        var optAssetRed = item.getAsset(collectionInfo.getRedBand());
+        var optAssetNir = item.getAsset(collectionInfo.getNirBand());
+        if (optAssetRed.isEmpty() || optAssetNir.isEmpty()) {
+            var msg = String.format("item %s has no assets %s, %s",
+                    item, collectionInfo.getRedBand(), collectionInfo.getNirBand()
+            );
+            throw new ServiceException(msg);
+        }
+
+        validateAssetType(optAssetRed.get());
+        validateAssetType(optAssetNir.get());
+
+        // neither cropped nor reprojected, the area is masked while the statistics are accumulated
+        var coverageRed = fetchCoverage(
+                item, collectionInfo, collectionInfo.getRedBand(), aoi, PcCogRepository.NATIVE_RESOLUTION
+        );
+        var coverageNir = fetchCoverage(
+                item, collectionInfo, collectionInfo.getNirBand(), aoi, PcCogRepository.NATIVE_RESOLUTION
+        );
+
+        if (!processingService.isSameGrid(coverageNir, coverageRed)) {
+            var msg = String.format("the bands %s and %s of item:%s do not match",
+                    collectionInfo.getNirBand(), collectionInfo.getRedBand(), item.getId()
+            );
+            throw new ServiceException(msg);
+        }
+
+        try {
+            return processingService.calcNdviStatistics(coverageNir, coverageRed, aoi);
+        } catch (FactoryException | TransformException e) {
+            var msg = String.format("could not calculate ndvi statistics of item:%s", item.getId());
+            throw new ServiceException(msg, e);
+        }
+    }
+
 
     private void validateAssetType(Asset asset) throws ServiceException {
         var type = asset.getType();
@@ -106,13 +155,41 @@ public class ImageServiceImpl implements ImageService {
         }
     }
 
-    private GridCoverage2D getGridCoverage2D(Asset asset, Geometry aoi) throws ServiceException {
+    private GridCoverage2D getGridCoverage2D(
+            Item item,
+            SupportedCollections collectionInfo,
+            String assetKey,
+            Geometry aoi,
+            double resolution
+    ) throws ServiceException {
+        var lazyCov = fetchCoverage(item, collectionInfo, assetKey, aoi, resolution);
         try {
-            var url = new URL(asset.getHref());
-            var lazyCov = this.cogRepository.fetchCoverageFromUrl(url);
             return this.processingService.cropToAoi(lazyCov, aoi);
-        } catch (IOException | FactoryException | TransformException e) {
-            var msg = String.format("could not fetch geotiff from planetary computer href:%s", asset.getHref());
+        } catch (FactoryException | TransformException e) {
+            var msg = String.format("could not crop geotiff of item:%s asset:%s", item.getId(), assetKey);
+            throw new ServiceException(msg, e);
+        }
+    }
+
+    private GridCoverage2D fetchCoverage(
+            Item item,
+            SupportedCollections collectionInfo,
+            String assetKey,
+            Geometry aoi,
+            double resolution
+    ) throws ServiceException {
+        // only the used asset is signed, with a cached token of its storage container
+        var href = itemService.signAssetHref(item, assetKey);
+        try {
+            var url = new URL(href);
+            var envelope = this.processingService.getEnvelope(aoi);
+            return this.cogRepository.fetchCoverage(
+                    url, collectionInfo.getAssetProfile(assetKey), envelope, resolution
+            );
+        } catch (IOException | FactoryException e) {
+            var msg = String.format("could not fetch geotiff from planetary computer item:%s asset:%s",
+                    item.getId(), assetKey
+            );
             throw new ServiceException(msg, e);
         }
     }
@@ -1,9 +1,11 @@
 package at.ac.tuwien.ba.demo.api.service.impl;
 
+import at.ac.tuwien.ba.demo.api.config.CloudProperties;
 import at.ac.tuwien.ba.demo.api.exception.NotFoundException;
 import at.ac.tuwien.ba.demo.api.exception.RepositoryException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
 import at.ac.tuwien.ba.demo.api.exception.ValidationException;
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
 import at.ac.tuwien.ba.demo.api.reopsitory.PcStacRepository;
 import at.ac.tuwien.ba.demo.api.service.CloudyService;
 import at.ac.tuwien.ba.demo.api.service.ItemService;
@@ -17,29 +19,47 @@ import org.springframework.stereotype.Service;
 
 import java.lang.invoke.MethodHandles;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class ItemServiceImpl implements ItemService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    // the maximum page size of the STAC api
+    private static final int MAX_CANDIDATES = 1000;
+
+    private static final double MAX_SCENE_COVER = 100;
+
+    // the number of candidates whose items are loaded with a single request before they are checked
+    private static final int ITEM_BATCH_SIZE = 50;
+
     private final PcStacRepository pcStacRepository;
     private final CloudyService cloudyService;
 
     private final GeoJsonToJtsConverter geoJsonToJtsConverter;
 
+    private final int candidateFactor;
+
     public ItemServiceImpl(
             PcStacRepository pcStacRepository,
             CloudyService cloudyService,
-            GeoJsonToJtsConverter geoJsonToJtsConverter
+            GeoJsonToJtsConverter geoJsonToJtsConverter,
+            CloudProperties cloudProperties
     ) {
         this.pcStacRepository = pcStacRepository;
         this.cloudyService = cloudyService;
         this.geoJsonToJtsConverter = geoJsonToJtsConverter;
+        this.candidateFactor = cloudProperties.getCheck().getCandidateFactor();
     }
 
 
@@ -78,6 +98,65 @@ public class ItemServiceImpl implements ItemService {
         return resultList;
     }
 
+    @Override
+    public List<ItemSummary> getItemSummariesInInterval(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection aresOfInterest,
+            int limit,
+            boolean filterCloudy,
+            double cloudySceneCover,
+            Double clearSceneCover,
+            double maxCloudPercent
+    ) throws ValidationException, ServiceException {
+
+        List<ItemSummary> resultList;
+        try {
+            resultList = this.pcStacRepository.getItemSummariesInIntervalAndAoi(
+                    collections,
+                    dateTimeFrom,
+                    dateTimeTo,
+                    aresOfInterest,
+                    // some candidates turn out cloudy, the checks stop once enough cloud free items are found
+                    filterCloudy ? Math.min(limit * candidateFactor, MAX_CANDIDATES) : limit,
+                    // a threshold of 100 percent skips no item, so it is not sent to the STAC api
+                    filterCloudy && cloudySceneCover < MAX_SCENE_COVER ? cloudySceneCover : null
+            );
+        } catch (RepositoryException e) {
+            throw new ServiceException(e);
+        }
+
+        if (filterCloudy) {
+            resultList = filterCloudySummaries(resultList, aresOfInterest, clearSceneCover, limit, maxCloudPercent);
+        }
+
+        LOGGER.debug("returned {} item summaries", resultList.size());
+
+        return resultList;
+    }
+
+    @Override
+    public void streamItemsInInterval(
+            List<String> collections,
+            ZonedDateTime dateTimeFrom,
+            ZonedDateTime dateTimeTo,
+            GeometryCollection aresOfInterest,
+            Consumer<Item> consumer
+    ) throws ServiceException {
+        try {
+            this.pcStacRepository.streamItemsInIntervalAndAoi(
+                    collections,
+                    dateTimeFrom,
+                    dateTimeTo,
+                    aresOfInterest,
+                    consumer
+            );
+        } catch (RepositoryException e) {
+            throw new ServiceException(e);
+        }
+    }
+
     @Override
     public Item getItemById(String id) throws NotFoundException, ServiceException {
         Optional<Item> optItem;
@@ -127,6 +206,82 @@ public class ItemServiceImpl implements ItemService {
         return signedItem;
     }
 
+    @Override
+    public String signAssetHref(Item item, String assetKey) throws ServiceException {
+        try {
+            return this.pcStacRepository.signAssetHref(item, assetKey);
+        } catch (RepositoryException e) {
+            var msg = String.format("planetary computer could not sign asset %s of %s", assetKey, item);
+            throw new ServiceException(msg, e);
+        }
+    }
+
+    /*
+    if given, the scene cloud cover decides the clear items, only the remaining items are checked pixel by pixel.
+    the items to check are loaded batch by batch, so no more items are loaded once enough cloud free ones are found.
+     */
+    private List<ItemSummary> filterCloudySummaries(
+            List<ItemSummary> summaries,
+            GeometryCollection aresOfInterest,
+            Double clearSceneCover,
+            int limit,
+            double maxCloudPercent
+    ) throws ValidationException, ServiceException {
+        var aoi = convertToJtsGeometry(aresOfInterest);
+
+        List<ItemSummary> cloudFree = new ArrayList<>();
+        for (int start = 0; start < summaries.size() && cloudFree.size() < limit; start += ITEM_BATCH_SIZE) {
+            var batch = summaries.subList(start, Math.min(start + ITEM_BATCH_SIZE, summaries.size()));
+            cloudFree.addAll(filterCloudyBatch(batch, aoi, clearSceneCover, limit - cloudFree.size(), maxCloudPercent));
+        }
+        return cloudFree;
+    }
+
+    private List<ItemSummary> filterCloudyBatch(
+            List<ItemSummary> summaries,
+            Geometry aoi,
+            Double clearSceneCover,
+            int limit,
+            double maxCloudPercent
+    ) throws ServiceException {
+        var ambiguousIds = summaries.stream()
+                .filter(summary -> clearSceneCover == null
+                        || summary.cloudCover() == null
+                        || summary.cloudCover() > clearSceneCover)
+                .map(ItemSummary::id)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        LOGGER.debug("{} of {} items may need a pixel check", ambiguousIds.size(), summaries.size());
+
+        Map<String, Item> ambiguousItems = new HashMap<>();
+        if (!ambiguousIds.isEmpty()) {
+            try {
+                this.pcStacRepository.getItemsById(List.copyOf(ambiguousIds))
+                        .forEach(item -> ambiguousItems.put(item.getId(), item));
+            } catch (RepositoryException e) {
+                throw new ServiceException(e);
+            }
+        }
+
+        // ambiguous items which could not be loaded are dropped as if they were cloudy
+        if (ambiguousItems.size() < ambiguousIds.size()) {
+            var missingIds = ambiguousIds.stream()
+                    .filter(id -> !ambiguousItems.containsKey(id))
+                    .toList();
+            LOGGER.warn("could not load the items {}, they are left out as their cloudiness is unknown", missingIds);
+        }
+        var checkable = summaries.stream()
+                .filter(summary -> !ambiguousIds.contains(summary.id()) || ambiguousItems.containsKey(summary.id()))
+                .toList();
+
+        return this.cloudyService.filterCloudyCandidates(
+                checkable,
+                summary -> Optional.ofNullable(ambiguousItems.get(summary.id())),
+                aoi,
+                limit,
+                maxCloudPercent
+        );
+    }
+
     private Geometry convertToJtsGeometry(GeometryCollection aresOfInterest) throws ValidationException {
         try {
             return this.geoJsonToJtsConverter.convertGeometryCollection(aresOfInterest);
@@ -1,10 +1,14 @@
 package at.ac.tuwien.ba.demo.api.service.impl;
 
 import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.NdviStatsDto;
+import at.ac.tuwien.ba.demo.api.endpoint.v1.dto.out.SclStatsDto;
 import at.ac.tuwien.ba.demo.api.exception.NotFoundException;
 import at.ac.tuwien.ba.demo.api.exception.ServiceException;
+import at.ac.tuwien.ba.demo.api.service.CloudyService;
 import at.ac.tuwien.ba.demo.api.service.ImageService;
 import at.ac.tuwien.ba.demo.api.service.StatisticsService;
+import at.ac.tuwien.ba.demo.api.util.SupportedCollections;
+import at.ac.tuwien.ba.demo.api.util.raster.SclHistogram;
 import io.github11904212.java.stac.client.core.Item;
 import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
@@ -13,7 +17,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 public class StatisticsServiceImpl implements StatisticsService {
@@ -21,58 +28,30 @@ public class StatisticsServiceImpl implements StatisticsService {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private final ImageService imageService;
+    private final CloudyService cloudyService;
 
     @Autowired
     public StatisticsServiceImpl(
-            ImageService imageService
+            ImageService imageService,
+            CloudyService cloudyService
     ) {
         this.imageService = imageService;
+        this.cloudyService = cloudyService;
     }
 
     @Override
     public NdviStatsDto calsNdviStatistics(Item item, Geometry areaOfInterest) throws ServiceException, NotFoundException {
 
-        var ndviImage = imageService.getNdviImage(item, areaOfInterest);
-
-        var raster = ndviImage.getRenderedImage().getData();
-        var height = raster.getHeight();
-        var width = raster.getWidth();
-        int numBands = raster.getNumBands();
-
-        if (numBands != 1) {
-            LOGGER.error("fatal error, ndvi image had mor then one band. item:{}, aoi:{}", item, areaOfInterest);
-            throw new ServiceException("could not process ndvi imag of item: " + item);
-        }
-
-        float[] row = new float[width * numBands];
-
-        float ndviMin = Float.MAX_VALUE;
-        float ndviMax = Float.MIN_VALUE;
-        float ndviAvg = 0f;
-        long sumPixels = 0L;
-
-        for (int i = 0; i < height; i++) {
-            // read next row from raster
-            raster.getPixels(raster.getMinX(), raster.getMinY() + i, width, 1, row);
-
-            for (float pixelVal : row) {
-                if (Float.isFinite(pixelVal)) {
-                    ndviMin = Math.min(pixelVal, ndviMin);
-                    ndviMax = Math.max(pixelVal, ndviMax);
-                    ndviAvg += pixelVal;
-                    sumPixels += 1;
-                }
-            }
-        }
-        if (sumPixels == 0) {
+        // the statistics are accumulated from the masked bands directly, no ndvi image is created
+        var statistics = imageService.getNdviStatistics(item, areaOfInterest);
+        if (statistics.getCount() == 0) {
             throw new ServiceException("cant calculate a statistic for an empty ndvi image");
         }
-        ndviAvg /= sumPixels;
 
         var dto = new NdviStatsDto();
-        dto.setNdviMin(ndviMin);
-        dto.setNdviMax(ndviMax);
-        dto.setNdviAvg(ndviAvg);
+        dto.setNdviMin(statistics.getMin());
+        dto.setNdviMax(statistics.getMax());
+        dto.setNdviAvg(statistics.getAvg());
         dto.setItemId(item.getId());
         dto.setDateTime(item.getDateTime().orElse(""));
 
@@ -95,4 +74,36 @@ public class StatisticsServiceImpl implements StatisticsService {
                 .toList();
     }
 
+    @Override
+    public List<SclStatsDto> calcSclStatistics(List<Item> itemList, Geometry areaOfInterest) {
+        List<SclStatsDto> stats = new ArrayList<>();
+        for (var item : itemList) {
+            try {
+                var histogram = cloudyService.getSclHistogram(item, areaOfInterest);
+                // the collection is known to be supported once the histogram could be computed
+                var collectionInfo = SupportedCollections.map.get(item.getCollection().orElseThrow());
+
+                Map<Integer, Long> classCounts = new TreeMap<>();
+                for (int sclClass = 0; sclClass < SclHistogram.CLASSES; sclClass++) {
+                    if (histogram.getCount(sclClass) > 0) {
+                        classCounts.put(sclClass, histogram.getCount(sclClass));
+                    }
+                }
+
+                var dto = new SclStatsDto();
+                dto.setCloudPercent(histogram.cloudPercent(
+                        collectionInfo.getCloudFreeLookup(),
+                        collectionInfo.getNoDataPixel()
+                ));
+                dto.setClassCounts(classCounts);
+                dto.setItemId(item.getId());
+                dto.setDateTime(item.getDateTime().orElse(""));
+                stats.add(dto);
+            } catch (ServiceException e) {
+                LOGGER.error("error while calculation scl stats", e);
+            }
+        }
+        return stats;
+    }
+
 }
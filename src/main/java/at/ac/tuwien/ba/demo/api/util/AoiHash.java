@@ -0,0 +1,45 @@
+package at.ac.tuwien.ba.demo.api.util;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * a stable hash of an area of interest, equal for areas which differ only in vertex order,
+ * ring orientation or below the rounding precision, e.g. the same field sent by different clients.
+ */
+public final class AoiHash {
+
+    // 1e-7 degrees are about a centimeter, far below the size of a pixel
+    private static final PrecisionModel PRECISION = new PrecisionModel(1e7);
+
+    private AoiHash() {
+    }
+
+    /**
+     * @param geometry the area of interest.
+     * @return the hex encoded SHA-256 of the normalized, precision reduced well known binary of the area.
+     */
+    public static String of(Geometry geometry) {
+        var canonical = GeometryPrecisionReducer.reduce(geometry, PRECISION);
+        canonical.normalize();
+        var wkb = new WKBWriter(2, ByteOrderValues.BIG_ENDIAN).write(canonical);
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            // the srid is not part of the 2d wkb, but the same coordinates in another crs are another area
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(geometry.getSRID()).array());
+            digest.update(wkb);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package at.ac.tuwien.ba.demo.api.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * coalesces concurrent calls with the same key.
+ * the first caller executes the call, callers arriving while it is in flight wait for it and share its result
+ * (or its exception). once the call is finished the next caller executes it again, nothing is cached.
+ * if the executing caller gets interrupted, the waiting callers are not, so they execute the call again.
+ *
+ * @param <K> the type of the key identifying equal calls.
+ * @param <V> the type of the result.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * executes the call or waits for an equal call which is already in flight.
+     *
+     * @param key identifies equal calls.
+     * @param call the call to execute, the result must not be modified by the callers.
+     * @return the result of the call.
+     * @throws E the exception thrown by the call.
+     * @throws InterruptedException if the thread got interrupted while executing or waiting.
+     */
+    public <E extends Exception> V execute(K key, Call<V, E> call) throws E, InterruptedException {
+        var future = new CompletableFuture<V>();
+        var existing = inFlight.putIfAbsent(key, future);
+        while (existing != null) {
+            coalesced.increment();
+            var result = this.<E>await(existing);
+            if (result != null) {
+                return result.value();
+            }
+            // the shared call got interrupted, the failed future may not be removed yet
+            inFlight.remove(key, existing);
+            existing = inFlight.putIfAbsent(key, future);
+        }
+
+        executed.increment();
+        try {
+            var result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * registers the number of executed and coalesced calls.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     * @param name the name of the counter.
+     */
+    public void bindTo(MeterRegistry registry, String name) {
+        FunctionCounter.builder(name, executed, LongAdder::sum)
+                .description("calls which were executed")
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder(name, coalesced, LongAdder::sum)
+                .description("calls which shared the result of an equal call in flight")
+                .tag("result", "coalesced")
+                .register(registry);
+    }
+
+    /*
+    the result of the shared call, or null if the executing caller got interrupted.
+     */
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> Shared<V> await(CompletableFuture<V> future) throws E, InterruptedException {
+        try {
+            return new Shared<>(future.get());
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            if (cause instanceof InterruptedException) {
+                // the executing caller got interrupted, not this one
+                return null;
+            }
+            // equal keys are executed by the same call site, so the cause is of type E
+            throw (E) cause;
+        }
+    }
+
+    private record Shared<V>(V value) {
+    }
+
+    /**
+     * a call which may be coalesced.
+     *
+     * @param <V> the type of the result.
+     * @param <E> the type of the checked exception thrown by the call.
+     */
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+        V call() throws E, InterruptedException;
+    }
+}
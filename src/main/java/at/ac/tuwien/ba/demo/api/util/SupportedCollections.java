@@ -1,5 +1,7 @@
 package at.ac.tuwien.ba.demo.api.util;
 
+import at.ac.tuwien.ba.demo.api.util.raster.SclHistogram;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Map;
@@ -15,7 +17,9 @@ public enum SupportedCollections {
             "B04",
             "visual",
             "SCL",
-            Set.of(0, 4, 5, 6, 7)
+            Set.of(0, 4, 5, 6, 7),
+            Set.of(3, 8, 9, 10),
+            0
     );
 
     private final String collectionId;
@@ -24,6 +28,14 @@ public enum SupportedCollections {
     private final String tciBand;
     private final String cloudBand;
     private final Set<Integer> cloudFreePixels;
+    // pixel values which are certainly clouds or cloud shadows
+    private final Set<Integer> cloudPixels;
+    private final int noDataPixel;
+    // the pixel values as lookup tables indexed by the value, see SclHistogram
+    @Getter(AccessLevel.NONE)
+    private final boolean[] cloudFreeLookup;
+    @Getter(AccessLevel.NONE)
+    private final boolean[] cloudLookup;
 
     public static final Map<String, SupportedCollections> map =
             Map.of(SENTINEL_2_L2A.getCollectionId(), SENTINEL_2_L2A);
@@ -34,7 +46,9 @@ public enum SupportedCollections {
             String redBand,
             String tciBand,
             String cloudBand,
-            Set<Integer> cloudFreePixels
+            Set<Integer> cloudFreePixels,
+            Set<Integer> cloudPixels,
+            int noDataPixel
     ){
 
         this.collectionId = collectionId;
@@ -43,6 +57,42 @@ public enum SupportedCollections {
         this.tciBand = tciBand;
         this.cloudBand = cloudBand;
         this.cloudFreePixels = cloudFreePixels;
+        this.cloudPixels = cloudPixels;
+        this.noDataPixel = noDataPixel;
+        this.cloudFreeLookup = lookupOf(cloudFreePixels);
+        this.cloudLookup = lookupOf(cloudPixels);
+    }
+
+    /**
+     * @return the cloud free pixel values as lookup table indexed by the value,
+     *         a copy which the caller may keep for a whole image.
+     */
+    public boolean[] getCloudFreeLookup() {
+        return cloudFreeLookup.clone();
+    }
+
+    /**
+     * @return the pixel values which are certainly clouds as lookup table indexed by the value,
+     *         a copy which the caller may keep for a whole image.
+     */
+    public boolean[] getCloudLookup() {
+        return cloudLookup.clone();
+    }
+
+    private static boolean[] lookupOf(Set<Integer> pixels) {
+        var lookup = new boolean[SclHistogram.CLASSES];
+        for (int value : pixels) {
+            lookup[value] = true;
+        }
+        return lookup;
+    }
+
+    /**
+     * @param assetKey the key of an asset of this collection, e.g. {@code B04}.
+     * @return the profile shared by this asset of all items of the collection.
+     */
+    public String getAssetProfile(String assetKey) {
+        return collectionId + "/" + assetKey;
     }
 
 }
@@ -0,0 +1,352 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * the pixels of a raster grid which belong to an area of interest, stored as one bit per pixel.
+ * a pixel belongs to the area if its square touches the area, the same rule as used for cropping.
+ * the mask only spans the bounding box of the area within the raster, so it is small for small areas.
+ */
+public final class AoiMask {
+
+    private final Rectangle bounds;
+    private final int wordsPerRow;
+    private final long[] bits;
+    private final int count;
+
+    private AoiMask(Rectangle bounds, long[] bits) {
+        this.bounds = bounds;
+        this.wordsPerRow = wordsPerRow(bounds.width);
+        this.bits = bits;
+        int setBits = 0;
+        for (long word : bits) {
+            setBits += Long.bitCount(word);
+        }
+        this.count = setBits;
+    }
+
+    /**
+     * computes the mask of an area with a scanline rasterizer.
+     * the pixels touched by the boundary of the area are found by walking each edge row by row,
+     * the pixels in between are filled from the crossings of the edges with the row centers.
+     *
+     * @param geometryGrid the area in grid coordinates, pixel centers lie on integer coordinates.
+     * @param rasterBounds the bounds of the raster in grid coordinates.
+     * @return the mask spanning the part of the raster touched by the area.
+     */
+    public static AoiMask rasterize(Geometry geometryGrid, Rectangle rasterBounds) {
+        var bounds = touchedBounds(geometryGrid.getEnvelopeInternal(), rasterBounds);
+        var bits = new long[wordsPerRow(bounds.width) * bounds.height];
+        if (bounds.isEmpty()) {
+            return new AoiMask(bounds, bits);
+        }
+
+        rasterizeGeometry(geometryGrid, bounds, bits);
+        return new AoiMask(bounds, bits);
+    }
+
+    /**
+     * computes the mask of the pixels lying entirely within an area, their squares do not touch its boundary.
+     * these are the pixels of the interior of the area which are not touched by any ring,
+     * lines and points have no such pixels.
+     *
+     * @param geometryGrid the area in grid coordinates, pixel centers lie on integer coordinates.
+     * @param rasterBounds the bounds of the raster in grid coordinates.
+     * @return the mask of the pixels within the area, it spans the part of the raster touched by the area.
+     */
+    public static AoiMask rasterizeInterior(Geometry geometryGrid, Rectangle rasterBounds) {
+        var bounds = touchedBounds(geometryGrid.getEnvelopeInternal(), rasterBounds);
+        var bits = new long[wordsPerRow(bounds.width) * bounds.height];
+        if (bounds.isEmpty()) {
+            return new AoiMask(bounds, bits);
+        }
+
+        rasterizeInteriorOf(geometryGrid, bounds, bits);
+        return new AoiMask(bounds, bits);
+    }
+
+    /**
+     * @return the bounds of the mask in grid coordinates, empty if the area does not touch the raster.
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * @return the number of pixels within the area.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param x the column in grid coordinates.
+     * @param y the row in grid coordinates.
+     * @return whether the pixel belongs to the area.
+     */
+    public boolean contains(int x, int y) {
+        int relX = x - bounds.x;
+        int relY = y - bounds.y;
+        if (relX < 0 || relY < 0 || relX >= bounds.width || relY >= bounds.height) {
+            return false;
+        }
+        return (bits[relY * wordsPerRow + (relX >>> 6)] & (1L << relX)) != 0;
+    }
+
+    /**
+     * passes the horizontal runs of pixels within the area, row by row from left to right.
+     *
+     * @param consumer receives each run.
+     */
+    public void forEachRun(RunConsumer consumer) {
+        forEachRun(bounds, consumer);
+    }
+
+    /**
+     * passes the horizontal runs of pixels within the area and a region, row by row from left to right.
+     *
+     * @param region the region in grid coordinates, runs are cut at its borders.
+     * @param consumer receives each run.
+     */
+    public void forEachRun(Rectangle region, RunConsumer consumer) {
+        int fromRelX = Math.max(0, region.x - bounds.x);
+        int toRelX = Math.min(bounds.width, region.x + region.width - bounds.x);
+        int fromRelY = Math.max(0, region.y - bounds.y);
+        int toRelY = Math.min(bounds.height, region.y + region.height - bounds.y);
+        for (int relY = fromRelY; relY < toRelY; relY++) {
+            int rowStart = relY * wordsPerRow;
+            int relX = fromRelX;
+            while (relX < toRelX) {
+                int start = nextBit(rowStart, relX, true);
+                if (start >= toRelX) {
+                    break;
+                }
+                int end = Math.min(toRelX, nextBit(rowStart, start, false));
+                consumer.accept(bounds.x + start, bounds.y + relY, end - start);
+                relX = end;
+            }
+        }
+    }
+
+    /*
+    the first column at or after relX whose bit is set (or clear), past the row if there is none.
+     */
+    private int nextBit(int rowStart, int relX, boolean set) {
+        int wordIndex = relX >>> 6;
+        long word = set ? bits[rowStart + wordIndex] : ~bits[rowStart + wordIndex];
+        word &= -1L << relX;
+        while (word == 0) {
+            wordIndex++;
+            if (wordIndex >= wordsPerRow) {
+                return wordsPerRow << 6;
+            }
+            word = set ? bits[rowStart + wordIndex] : ~bits[rowStart + wordIndex];
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private static void rasterizeGeometry(Geometry geometry, Rectangle bounds, long[] bits) {
+        if (geometry instanceof GeometryCollection collection) {
+            // each part on its own, parts of a collection may overlap which breaks the even-odd fill
+            for (int i = 0; i < collection.getNumGeometries(); i++) {
+                rasterizeGeometry(collection.getGeometryN(i), bounds, bits);
+            }
+        } else if (geometry instanceof Polygon polygon) {
+            List<Coordinate[]> rings = new ArrayList<>();
+            rings.add(polygon.getExteriorRing().getCoordinates());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                rings.add(polygon.getInteriorRingN(i).getCoordinates());
+            }
+            fillInterior(rings, bounds, bits);
+            rings.forEach(ring -> traceEdges(ring, bounds, bits));
+        } else if (geometry instanceof LineString lineString) {
+            traceEdges(lineString.getCoordinates(), bounds, bits);
+        } else if (geometry instanceof Point point && !point.isEmpty()) {
+            var coordinate = point.getCoordinate();
+            traceEdge(coordinate.x, coordinate.y, coordinate.x, coordinate.y, bounds, bits);
+        }
+    }
+
+    /*
+    like rasterizeGeometry, but a polygon only adds the pixels filled by its interior and not touched by its rings.
+    a pixel on the shared border of two parts of a collection is touched by both, so it is left out.
+     */
+    private static void rasterizeInteriorOf(Geometry geometry, Rectangle bounds, long[] bits) {
+        if (geometry instanceof GeometryCollection collection) {
+            for (int i = 0; i < collection.getNumGeometries(); i++) {
+                rasterizeInteriorOf(collection.getGeometryN(i), bounds, bits);
+            }
+        } else if (geometry instanceof Polygon polygon) {
+            List<Coordinate[]> rings = new ArrayList<>();
+            rings.add(polygon.getExteriorRing().getCoordinates());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                rings.add(polygon.getInteriorRingN(i).getCoordinates());
+            }
+            var interior = new long[bits.length];
+            var boundary = new long[bits.length];
+            fillInterior(rings, bounds, interior);
+            rings.forEach(ring -> traceEdges(ring, bounds, boundary));
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= interior[i] & ~boundary[i];
+            }
+        }
+    }
+
+    /*
+    the pixels whose center lies within the polygon, even-odd over all rings.
+    an edge crosses a row if the row center lies in [minY, maxY) of the edge, so vertices are counted once.
+     */
+    private static void fillInterior(List<Coordinate[]> rings, Rectangle bounds, long[] bits) {
+        List<double[]> edges = new ArrayList<>();
+        for (var ring : rings) {
+            for (int i = 1; i < ring.length; i++) {
+                var from = ring[i - 1];
+                var to = ring[i];
+                if (from.y != to.y) {
+                    edges.add(from.y < to.y
+                            ? new double[]{from.x, from.y, to.x, to.y}
+                            : new double[]{to.x, to.y, from.x, from.y});
+                }
+            }
+        }
+        edges.sort(Comparator.comparingDouble(edge -> edge[1]));
+
+        int wordsPerRow = wordsPerRow(bounds.width);
+        List<double[]> active = new ArrayList<>();
+        double[] crossings = new double[edges.size()];
+        int nextEdge = 0;
+        for (int relY = 0; relY < bounds.height; relY++) {
+            double y = bounds.y + relY;
+            while (nextEdge < edges.size() && edges.get(nextEdge)[1] <= y) {
+                active.add(edges.get(nextEdge++));
+            }
+            active.removeIf(edge -> edge[3] <= y);
+
+            int count = 0;
+            for (var edge : active) {
+                crossings[count++] = edge[0] + (y - edge[1]) * (edge[2] - edge[0]) / (edge[3] - edge[1]);
+            }
+            Arrays.sort(crossings, 0, count);
+            for (int i = 0; i + 1 < count; i += 2) {
+                int fromX = Math.max(bounds.x, (int) Math.ceil(crossings[i]));
+                int toX = Math.min(bounds.x + bounds.width - 1, (int) Math.floor(crossings[i + 1]));
+                setRange(bits, relY * wordsPerRow, fromX - bounds.x, toX - bounds.x);
+            }
+        }
+    }
+
+    private static void traceEdges(Coordinate[] coordinates, Rectangle bounds, long[] bits) {
+        for (int i = 1; i < coordinates.length; i++) {
+            traceEdge(coordinates[i - 1].x, coordinates[i - 1].y, coordinates[i].x, coordinates[i].y, bounds, bits);
+        }
+        if (coordinates.length == 1) {
+            traceEdge(coordinates[0].x, coordinates[0].y, coordinates[0].x, coordinates[0].y, bounds, bits);
+        }
+    }
+
+    /*
+    the pixels whose closed squares touch the edge, the edge is clipped to the band [y - 0.5, y + 0.5] of each row.
+     */
+    private static void traceEdge(double x0, double y0, double x1, double y1, Rectangle bounds, long[] bits) {
+        int wordsPerRow = wordsPerRow(bounds.width);
+        double minY = Math.min(y0, y1);
+        double maxY = Math.max(y0, y1);
+        int fromY = Math.max(bounds.y, (int) Math.ceil(minY - 0.5));
+        int toY = Math.min(bounds.y + bounds.height - 1, (int) Math.floor(maxY + 0.5));
+
+        for (int y = fromY; y <= toY; y++) {
+            double minX;
+            double maxX;
+            if (y0 == y1) {
+                minX = Math.min(x0, x1);
+                maxX = Math.max(x0, x1);
+            } else {
+                double t0 = ((Math.max(minY, y - 0.5)) - y0) / (y1 - y0);
+                double t1 = ((Math.min(maxY, y + 0.5)) - y0) / (y1 - y0);
+                double xa = x0 + t0 * (x1 - x0);
+                double xb = x0 + t1 * (x1 - x0);
+                minX = Math.min(xa, xb);
+                maxX = Math.max(xa, xb);
+            }
+            int fromX = Math.max(bounds.x, (int) Math.ceil(minX - 0.5));
+            int toX = Math.min(bounds.x + bounds.width - 1, (int) Math.floor(maxX + 0.5));
+            setRange(bits, (y - bounds.y) * wordsPerRow, fromX - bounds.x, toX - bounds.x);
+        }
+    }
+
+    /*
+    sets the bits fromRelX..toRelX (inclusive) of a row, word by word.
+     */
+    private static void setRange(long[] bits, int rowStart, int fromRelX, int toRelX) {
+        if (fromRelX > toRelX) {
+            return;
+        }
+        int fromWord = fromRelX >>> 6;
+        int toWord = toRelX >>> 6;
+        long fromMask = -1L << fromRelX;
+        long toMask = -1L >>> (63 - (toRelX & 63));
+        if (fromWord == toWord) {
+            bits[rowStart + fromWord] |= fromMask & toMask;
+            return;
+        }
+        bits[rowStart + fromWord] |= fromMask;
+        for (int word = fromWord + 1; word < toWord; word++) {
+            bits[rowStart + word] = -1L;
+        }
+        bits[rowStart + toWord] |= toMask;
+    }
+
+    /**
+     * @return the number of words holding the bits of the mask.
+     */
+    int getWords() {
+        return bits.length;
+    }
+
+    private static int wordsPerRow(int width) {
+        return (width + 63) >>> 6;
+    }
+
+    /*
+    the pixels whose squares [x - 0.5, x + 0.5] touch the envelope, limited to the raster.
+     */
+    private static Rectangle touchedBounds(Envelope envelope, Rectangle rasterBounds) {
+        if (envelope.isNull()) {
+            return new Rectangle(rasterBounds.x, rasterBounds.y, 0, 0);
+        }
+        int minX = Math.max(rasterBounds.x, (int) Math.ceil(envelope.getMinX() - 0.5));
+        int minY = Math.max(rasterBounds.y, (int) Math.ceil(envelope.getMinY() - 0.5));
+        int maxX = Math.min(rasterBounds.x + rasterBounds.width - 1, (int) Math.floor(envelope.getMaxX() + 0.5));
+        int maxY = Math.min(rasterBounds.y + rasterBounds.height - 1, (int) Math.floor(envelope.getMaxY() + 0.5));
+        if (minX > maxX || minY > maxY) {
+            return new Rectangle(rasterBounds.x, rasterBounds.y, 0, 0);
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * receives a horizontal run of pixels within the area.
+     */
+    @FunctionalInterface
+    public interface RunConsumer {
+
+        /**
+         * @param x the first column of the run in grid coordinates.
+         * @param y the row in grid coordinates.
+         * @param length the number of pixels of the run.
+         */
+        void accept(int x, int y, int length);
+    }
+}
@@ -0,0 +1,123 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.Optional;
+
+/**
+ * a process wide, size bounded cache for {@link AoiMask}s.
+ * masks are keyed by the pixel grid (crs, grid to crs transform and raster bounds) and the hash of the area,
+ * so the bands of an item sharing a resolution and items of the same tile grid reuse one mask.
+ * eviction is done by caffeine (W-TinyLFU).
+ */
+public class AoiMaskCache {
+
+    // the bounds, counters and references of a mask besides its bits
+    private static final int MASK_OVERHEAD = 64;
+
+    private final Cache<MaskKey, AoiMask> cache;
+
+    // the key of a crs without identifier is its wkt, which is formatted once per crs instance
+    private final Cache<CoordinateReferenceSystem, String> crsKeys = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    public AoiMaskCache(long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((MaskKey key, AoiMask mask) -> MASK_OVERHEAD + mask.getWords() * Long.BYTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * returns the cached mask of an area or computes and caches it.
+     *
+     * @param grid the grid geometry of the raster.
+     * @param rasterBounds the bounds of the raster in grid coordinates.
+     * @param aoiHash the hash of the area, see {@link at.ac.tuwien.ba.demo.api.util.AoiHash}.
+     * @param computation computes the mask if it is not cached.
+     * @return the mask of the area.
+     * @throws TransformException if the mask could not be computed.
+     */
+    public AoiMask get(
+            GridGeometry2D grid,
+            Rectangle rasterBounds,
+            String aoiHash,
+            MaskComputation computation
+    ) throws TransformException {
+        var key = keyOf(grid, rasterBounds, aoiHash);
+        if (key.isEmpty()) {
+            return computation.compute();
+        }
+
+        var mask = cache.getIfPresent(key.get());
+        if (mask == null) {
+            // concurrent misses compute the same mask, which is cheaper than blocking on a checked computation
+            mask = computation.compute();
+            cache.put(key.get(), mask);
+        }
+        return mask;
+    }
+
+    /**
+     * registers hit/miss, eviction and size metrics.
+     *
+     * @param registry the {@link MeterRegistry} to bind to.
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "aoiMasks");
+    }
+
+    /*
+    only affine grids have a cheap and exact key, which covers all cloud optimized geotiffs.
+     */
+    private Optional<MaskKey> keyOf(GridGeometry2D grid, Rectangle rasterBounds, String aoiHash) {
+        if (!(grid.getGridToCRS2D() instanceof AffineTransform gridToCrs)
+                || grid.getCoordinateReferenceSystem2D() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new MaskKey(
+                crsKeyOf(grid.getCoordinateReferenceSystem2D()),
+                new AffineTransform(gridToCrs),
+                new Rectangle(rasterBounds),
+                aoiHash
+        ));
+    }
+
+    /*
+    the declared identifier (e.g. EPSG:32633) of the crs, the crs of cloud optimized geotiffs usually has one.
+     */
+    private String crsKeyOf(CoordinateReferenceSystem crs) {
+        var identifiers = crs.getIdentifiers();
+        if (!identifiers.isEmpty()) {
+            var identifier = identifiers.iterator().next();
+            return identifier.getCodeSpace() + ":" + identifier.getCode();
+        }
+        return crsKeys.get(crs, CoordinateReferenceSystem::toWKT);
+    }
+
+    /**
+     * computes a mask which is not cached.
+     */
+    @FunctionalInterface
+    public interface MaskComputation {
+
+        /**
+         * @return the computed mask.
+         * @throws TransformException if the area could not be transformed to the grid.
+         */
+        AoiMask compute() throws TransformException;
+    }
+
+    private record MaskKey(String crs, AffineTransform gridToCrs, Rectangle rasterBounds, String aoiHash) {
+    }
+}
@@ -0,0 +1,182 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import javax.media.jai.RasterFactory;
+import java.awt.Rectangle;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * computes the normalized difference vegetation index (nir - red) / (nir + red) of two single band rasters.
+ * the bands are processed tile by tile, unsigned short tiles, as read from the sentinel-2 geotiffs,
+ * are read directly from their data banks, other tiles row by row.
+ * the rows are processed by branch free loops over flat arrays, which the jit compiles to vector instructions.
+ * pixels where either band is no data or both are 0 are NaN.
+ */
+public final class NdviKernel {
+
+    private NdviKernel() {
+    }
+
+    /**
+     * @param nir the near infrared band.
+     * @param red the red band, with the same bounds as the near infrared band.
+     * @param noData the sample value marking pixels without data.
+     * @return a float raster located at 0/0 holding the index of each pixel.
+     */
+    public static WritableRaster compute(Raster nir, Raster red, int noData) {
+        var ndviRaster = createRaster(nir.getWidth(), nir.getHeight());
+        computeArea(nir, red, nir.getBounds(), noData, ndviRaster, nir.getBounds());
+        return ndviRaster;
+    }
+
+    /**
+     * computes the index tile by tile of the near infrared band, so neither band is copied as a whole.
+     *
+     * @param nir the near infrared band.
+     * @param red the red band, with the same bounds as the near infrared band.
+     * @param noData the sample value marking pixels without data.
+     * @return a float raster located at 0/0 holding the index of each pixel.
+     */
+    public static WritableRaster compute(RenderedImage nir, RenderedImage red, int noData) {
+        var bounds = RasterTiles.boundsOf(nir);
+        var ndviRaster = createRaster(bounds.width, bounds.height);
+        RasterTiles.forEach(nir, (nirTile, area) -> {
+            computeArea(nirTile, RasterTiles.regionOf(red, area), area, noData, ndviRaster, bounds);
+            return true;
+        });
+        return ndviRaster;
+    }
+
+    /**
+     * adds the index of the masked pixels of an area to statistics, without creating an index raster.
+     *
+     * @param nir the near infrared band, containing the area.
+     * @param red the red band in the same grid, containing the area.
+     * @param mask the pixels to add.
+     * @param area the part of the bands to process.
+     * @param noData the sample value marking pixels without data.
+     * @param statistics receives the index of each masked pixel.
+     */
+    public static void accumulate(
+            Raster nir,
+            Raster red,
+            AoiMask mask,
+            Rectangle area,
+            int noData,
+            NdviStatistics statistics
+    ) {
+        int[] nirRun = new int[area.width];
+        int[] redRun = new int[area.width];
+        float[] ndviRun = new float[area.width];
+        mask.forEachRun(area, (x, y, length) -> {
+            nir.getSamples(x, y, length, 1, 0, nirRun);
+            red.getSamples(x, y, length, 1, 0, redRun);
+            computeRow(nirRun, redRun, ndviRun, 0, length, noData);
+            statistics.add(ndviRun, 0, length);
+        });
+    }
+
+    private static WritableRaster createRaster(int width, int height) {
+        return RasterFactory.createBandedRaster(DataBuffer.TYPE_FLOAT, width, height, 1, null);
+    }
+
+    /*
+    computes the pixels of an area, the ndvi raster covers the given bounds starting at 0/0.
+     */
+    private static void computeArea(
+            Raster nir,
+            Raster red,
+            Rectangle area,
+            int noData,
+            WritableRaster ndviRaster,
+            Rectangle bounds
+    ) {
+        // a fresh banded raster is a single flat bank, row after row without padding
+        var ndvi = ((DataBufferFloat) ndviRaster.getDataBuffer()).getData();
+        int ndviOffset = (area.y - bounds.y) * bounds.width + (area.x - bounds.x);
+
+        var nirBank = UShortBank.of(nir);
+        var redBank = UShortBank.of(red);
+        if (nirBank != null && redBank != null) {
+            for (int y = area.y; y < area.y + area.height; y++) {
+                computeRow(
+                        nirBank.data(), nirBank.offset(nir, area.x, y),
+                        redBank.data(), redBank.offset(red, area.x, y),
+                        ndvi, ndviOffset, area.width, noData
+                );
+                ndviOffset += bounds.width;
+            }
+            return;
+        }
+
+        int[] nirRow = new int[area.width];
+        int[] redRow = new int[area.width];
+        for (int y = area.y; y < area.y + area.height; y++) {
+            nir.getSamples(area.x, y, area.width, 1, 0, nirRow);
+            red.getSamples(area.x, y, area.width, 1, 0, redRow);
+            computeRow(nirRow, redRow, ndvi, ndviOffset, area.width, noData);
+            ndviOffset += bounds.width;
+        }
+    }
+
+    static void computeRow(
+            short[] nir, int nirOffset,
+            short[] red, int redOffset,
+            float[] ndvi, int ndviOffset,
+            int length,
+            int noData
+    ) {
+        for (int i = 0; i < length; i++) {
+            int n = nir[nirOffset + i] & 0xFFFF;
+            int r = red[redOffset + i] & 0xFFFF;
+            ndvi[ndviOffset + i] = index(n, r, noData);
+        }
+    }
+
+    static void computeRow(int[] nir, int[] red, float[] ndvi, int ndviOffset, int length, int noData) {
+        for (int i = 0; i < length; i++) {
+            ndvi[ndviOffset + i] = index(nir[i], red[i], noData);
+        }
+    }
+
+    private static float index(int nir, int red, int noData) {
+        int sum = nir + red;
+        // selects instead of branches, so the loops stay vectorizable
+        return nir == noData || red == noData || sum == 0
+                ? Float.NaN
+                : (float) (nir - red) / sum;
+    }
+
+    /*
+    the bank of a single band unsigned short raster whose pixels are adjacent within a row.
+     */
+    private record UShortBank(short[] data, int bankOffset, ComponentSampleModel sampleModel) {
+
+        static UShortBank of(Raster raster) {
+            if (raster.getNumBands() != 1
+                    || !(raster.getDataBuffer() instanceof DataBufferUShort dataBuffer)
+                    || !(raster.getSampleModel() instanceof ComponentSampleModel sampleModel)
+                    || sampleModel.getPixelStride() != 1
+            ) {
+                return null;
+            }
+            int bank = sampleModel.getBankIndices()[0];
+            return new UShortBank(dataBuffer.getData(bank), dataBuffer.getOffsets()[bank], sampleModel);
+        }
+
+        /*
+        the index of the sample of a pixel, x and y in pixel coordinates of the raster.
+         */
+        int offset(Raster raster, int x, int y) {
+            return bankOffset + sampleModel.getOffset(
+                    x - raster.getSampleModelTranslateX(),
+                    y - raster.getSampleModelTranslateY()
+            );
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+/**
+ * accumulates the minimum, maximum and mean of ndvi values, values which are not finite are skipped.
+ */
+public final class NdviStatistics {
+
+    private float min = Float.POSITIVE_INFINITY;
+    private float max = Float.NEGATIVE_INFINITY;
+    private double sum;
+    private long count;
+
+    /**
+     * @param value an ndvi value.
+     */
+    public void add(float value) {
+        if (Float.isFinite(value)) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+        }
+    }
+
+    /**
+     * @param values ndvi values.
+     * @param offset the index of the first value.
+     * @param length the number of values.
+     */
+    public void add(float[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            add(values[i]);
+        }
+    }
+
+    /**
+     * adds the values accumulated by another instance, e.g. of another part of the image.
+     *
+     * @param other the statistics to add.
+     */
+    public void merge(NdviStatistics other) {
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        count += other.count;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    /**
+     * @return the mean of the values, NaN if no value was added.
+     */
+    public float getAvg() {
+        return count == 0 ? Float.NaN : (float) (sum / count);
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
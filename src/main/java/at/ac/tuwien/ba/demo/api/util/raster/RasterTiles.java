@@ -0,0 +1,103 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+
+/**
+ * visits the pixels of a {@link RenderedImage} tile by tile instead of copying them into one raster.
+ * tiles are requested with {@link RenderedImage#getTile}, so JAI operations compute them on demand
+ * and keep them in the tile cache, and the memory needed stays bounded by the size of a tile.
+ */
+public final class RasterTiles {
+
+    private RasterTiles() {
+    }
+
+    /**
+     * @param image an image.
+     * @return the bounds of the image in pixel coordinates.
+     */
+    public static Rectangle boundsOf(RenderedImage image) {
+        return new Rectangle(image.getMinX(), image.getMinY(), image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * visits all tiles of an image, row by row.
+     *
+     * @param image the image to visit.
+     * @param visitor receives each tile.
+     * @return true if all tiles were visited, false if the visitor stopped.
+     */
+    public static boolean forEach(RenderedImage image, TileVisitor visitor) {
+        return forEach(image, boundsOf(image), visitor);
+    }
+
+    /**
+     * visits the tiles of an image intersecting a region, row by row.
+     *
+     * @param image the image to visit.
+     * @param region the pixels of interest in pixel coordinates of the image.
+     * @param visitor receives each tile intersecting the region.
+     * @return true if all tiles were visited, false if the visitor stopped.
+     */
+    public static boolean forEach(RenderedImage image, Rectangle region, TileVisitor visitor) {
+        var area = region.intersection(boundsOf(image));
+        if (area.isEmpty()) {
+            return true;
+        }
+
+        int minTileX = tileIndex(area.x, image.getTileGridXOffset(), image.getTileWidth());
+        int maxTileX = tileIndex(area.x + area.width - 1, image.getTileGridXOffset(), image.getTileWidth());
+        int minTileY = tileIndex(area.y, image.getTileGridYOffset(), image.getTileHeight());
+        int maxTileY = tileIndex(area.y + area.height - 1, image.getTileGridYOffset(), image.getTileHeight());
+
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                var tile = image.getTile(tileX, tileY);
+                var tileArea = tile.getBounds().intersection(area);
+                if (!tileArea.isEmpty() && !visitor.visit(tile, tileArea)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * returns the pixels of a region, e.g. the area of a tile of another image in the same grid.
+     *
+     * @param image the image to read.
+     * @param region the pixels of interest in pixel coordinates of the image.
+     * @return the tile containing the region, or a copy of the region if it spans several tiles.
+     */
+    public static Raster regionOf(RenderedImage image, Rectangle region) {
+        int tileX = tileIndex(region.x, image.getTileGridXOffset(), image.getTileWidth());
+        int tileY = tileIndex(region.y, image.getTileGridYOffset(), image.getTileHeight());
+        if (tileX == tileIndex(region.x + region.width - 1, image.getTileGridXOffset(), image.getTileWidth())
+                && tileY == tileIndex(region.y + region.height - 1, image.getTileGridYOffset(), image.getTileHeight())
+                && boundsOf(image).contains(region)
+        ) {
+            return image.getTile(tileX, tileY);
+        }
+        return image.getData(region);
+    }
+
+    private static int tileIndex(int pixel, int gridOffset, int tileSize) {
+        return Math.floorDiv(pixel - gridOffset, tileSize);
+    }
+
+    /**
+     * receives the tiles of an image.
+     */
+    @FunctionalInterface
+    public interface TileVisitor {
+
+        /**
+         * @param tile the tile, it must not be modified.
+         * @param area the part of the tile to process, within the tile and the visited region.
+         * @return true to continue with the next tile, false to stop.
+         */
+        boolean visit(Raster tile, Rectangle area);
+    }
+}
@@ -0,0 +1,127 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Arrays;
+
+/**
+ * the number of pixels per class of a scene classification (SCL) raster within an area of interest.
+ * the classes are looked up in primitive tables, so counting is a single pass without boxing or allocations.
+ */
+public final class SclHistogram {
+
+    /**
+     * the number of distinct class values, classes are stored as unsigned bytes.
+     */
+    public static final int CLASSES = 256;
+
+    private final long[] counts;
+
+    private SclHistogram(long[] counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * counts the classes of the pixels within the mask.
+     *
+     * @param raster a raster containing at least the bounds of the mask, the first band holds the classes.
+     * @param mask the pixels to count.
+     * @return the histogram of the masked pixels.
+     */
+    public static SclHistogram of(Raster raster, AoiMask mask) {
+        var counts = new long[CLASSES];
+        count(raster, mask.getBounds(), mask, counts);
+        return new SclHistogram(counts);
+    }
+
+    /**
+     * counts the classes of the pixels within the mask, tile by tile.
+     *
+     * @param image an image in the grid of the mask, the first band holds the classes.
+     * @param mask the pixels to count.
+     * @return the histogram of the masked pixels.
+     */
+    public static SclHistogram of(RenderedImage image, AoiMask mask) {
+        var counts = new long[CLASSES];
+        RasterTiles.forEach(image, mask.getBounds(), (tile, area) -> {
+            count(tile, area, mask, counts);
+            return true;
+        });
+        return new SclHistogram(counts);
+    }
+
+    private static void count(Raster raster, Rectangle area, AoiMask mask, long[] counts) {
+        int[] run = new int[area.width];
+        mask.forEachRun(area, (x, y, length) -> {
+            raster.getSamples(x, y, length, 1, 0, run);
+            for (int i = 0; i < length; i++) {
+                counts[run[i] & 0xFF]++;
+            }
+        });
+    }
+
+    /**
+     * @param counts the number of pixels per class, indexed by the class value.
+     * @return a histogram of the given counts.
+     */
+    public static SclHistogram of(long[] counts) {
+        return new SclHistogram(Arrays.copyOf(counts, CLASSES));
+    }
+
+    /**
+     * @param sclClass a class value.
+     * @return the number of pixels of the class.
+     */
+    public long getCount(int sclClass) {
+        return counts[sclClass & 0xFF];
+    }
+
+    /**
+     * @return a copy of the counts indexed by the class value.
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * @return the number of counted pixels.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param classes a lookup table of the classes to count, indexed by the class value.
+     * @return the number of pixels of the given classes.
+     */
+    public long count(boolean[] classes) {
+        long total = 0;
+        for (int i = 0; i < CLASSES; i++) {
+            if (classes[i]) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * the share of pixels which are not clear, pixels without data are not taken into account.
+     *
+     * @param clearClasses a lookup table of the clear classes, indexed by the class value.
+     * @param noDataClass the class of pixels without data.
+     * @return the cloud cover in percent, 0 if no pixel has data.
+     */
+    public double cloudPercent(boolean[] clearClasses, int noDataClass) {
+        long valid = getTotal() - getCount(noDataClass);
+        if (valid <= 0) {
+            return 0;
+        }
+        long clear = count(clearClasses) - (clearClasses[noDataClass & 0xFF] ? getCount(noDataClass) : 0);
+        return 100d * (valid - clear) / valid;
+    }
+}
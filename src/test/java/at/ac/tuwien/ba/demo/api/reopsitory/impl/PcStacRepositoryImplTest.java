@@ -0,0 +1,66 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl;
+
+import at.ac.tuwien.ba.demo.api.config.StacProperties;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.stac.LocalItemCatalog;
+import io.github11904212.java.stac.client.StacClient;
+import io.github11904212.java.stac.client.core.Item;
+import io.github11904212.pcc.PlanetaryComputerClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mil.nga.sf.geojson.GeometryCollection;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PcStacRepositoryImplTest {
+
+    private static final List<String> COLLECTIONS = List.of("sentinel-2-l2a");
+
+    private final StacClient stacClient = mock(StacClient.class);
+    private final LocalItemCatalog localCatalog = mock(LocalItemCatalog.class);
+
+    @Test
+    void reusesTheItemsFoundInTheLocalCatalog() throws Exception {
+        var item = mock(Item.class);
+        when(item.getId()).thenReturn("a");
+        when(localCatalog.search(any(), any(), any(), any(), anyInt())).thenReturn(Optional.of(List.of(item)));
+        var repository = repository();
+
+        var now = ZonedDateTime.now(ZoneOffset.UTC);
+        var found = repository.getItemsInIntervalAndAoi(COLLECTIONS, now.minusDays(10), now,
+                new GeometryCollection(List.of()), 10);
+
+        assertThat(found).containsExactly(item);
+        assertThat(repository.getItemById("a")).contains(item);
+        assertThat(repository.getItemsById(List.of("a"))).containsExactly(item);
+        verify(stacClient, never()).search(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private PcStacRepositoryImpl repository() {
+        var planetaryComputer = mock(PlanetaryComputerClient.class);
+        when(planetaryComputer.getStacClientInstance()).thenReturn(stacClient);
+        ObjectProvider<LocalItemCatalog> catalogProvider = mock(ObjectProvider.class);
+        when(catalogProvider.getIfAvailable()).thenReturn(localCatalog);
+        return new PcStacRepositoryImpl(
+                planetaryComputer,
+                null,
+                null,
+                null,
+                catalogProvider,
+                new StacProperties(),
+                new SimpleMeterRegistry()
+        );
+    }
+}
@@ -0,0 +1,98 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cloud;
+
+import at.ac.tuwien.ba.demo.api.util.raster.SclHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudVerdictStoreTest {
+
+    private static final String DEFINITION = "1:sentinel-2-l2a";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresVerdictsAfterARestart() throws IOException {
+        var counts = new long[SclHistogram.CLASSES];
+        counts[4] = 90;
+        counts[9] = 10;
+
+        try (var store = new CloudVerdictStore(directory, 100)) {
+            store.putCloudy("a", "aoi", DEFINITION, true);
+            store.putHistogram("b", "aoi", DEFINITION, true, SclHistogram.of(counts));
+        }
+
+        try (var store = new CloudVerdictStore(directory, 100)) {
+            assertThat(store.get("a", "aoi", DEFINITION)).hasValueSatisfying(verdict -> {
+                assertThat(verdict.cloudy()).isTrue();
+                assertThat(verdict.histogram()).isEmpty();
+            });
+            assertThat(store.get("b", "aoi", DEFINITION)).hasValueSatisfying(verdict ->
+                    assertThat(verdict.histogram()).hasValueSatisfying(histogram -> {
+                        assertThat(histogram.getCount(4)).isEqualTo(90);
+                        assertThat(histogram.getCount(9)).isEqualTo(10);
+                        assertThat(histogram.getTotal()).isEqualTo(100);
+                    })
+            );
+            assertThat(store.get("a", "other", DEFINITION)).isEmpty();
+        }
+    }
+
+    @Test
+    void keepsCompleteRecordsOfATruncatedLog() throws IOException {
+        try (var store = new CloudVerdictStore(directory, 100)) {
+            store.putCloudy("a", "aoi", DEFINITION, false);
+        }
+        // a record cut off by a crash
+        Files.write(directory.resolve("verdicts.log"), new byte[]{0, 5, 'b'}, StandardOpenOption.APPEND);
+
+        try (var store = new CloudVerdictStore(directory, 100)) {
+            assertThat(store.get("a", "aoi", DEFINITION)).hasValueSatisfying(verdict -> assertThat(verdict.cloudy()).isFalse());
+            store.putCloudy("c", "aoi", DEFINITION, true);
+        }
+
+        try (var store = new CloudVerdictStore(directory, 100)) {
+            assertThat(store.get("a", "aoi", DEFINITION)).isPresent();
+            assertThat(store.get("c", "aoi", DEFINITION)).isPresent();
+        }
+    }
+
+    @Test
+    void missesVerdictsOfAnotherDefinition() throws IOException {
+        try (var store = new CloudVerdictStore(directory, 100)) {
+            store.putCloudy("a", "aoi", DEFINITION, true);
+
+            assertThat(store.get("a", "aoi", "2:sentinel-2-l2a")).isEmpty();
+            assertThat(store.get("a", "aoi", DEFINITION)).isPresent();
+        }
+    }
+
+    @Test
+    void boundsTheVerdictsAndTheLog() throws IOException {
+        try (var store = new CloudVerdictStore(directory, 10)) {
+            for (int i = 0; i < 100; i++) {
+                store.putCloudy("item-" + i, "aoi", DEFINITION, i % 2 == 0);
+            }
+        }
+        var logSize = Files.size(directory.resolve("verdicts.log"));
+
+        try (var store = new CloudVerdictStore(directory, 10)) {
+            long restored = 0;
+            for (int i = 0; i < 100; i++) {
+                if (store.get("item-" + i, "aoi", DEFINITION).isPresent()) {
+                    restored++;
+                }
+            }
+            assertThat(restored).isLessThanOrEqualTo(10);
+        }
+        // at most twice the bound of records, each key is a few dozen bytes
+        assertThat(logSize).isLessThan(20 * 64);
+    }
+}
@@ -0,0 +1,63 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingHttpRangeReaderTest {
+
+    private static final URI URI_SIGNED = URI.create("https://example.com/cogs/B04.tif?sig=secret");
+    private static final String ASSET_PATH = "https://example.com/cogs/B04.tif";
+
+    // the ifd of the tiff ends at byte 66
+    private static final int HEADER_END = 66;
+
+    private final byte[] tiff = TiffHeaderParserTest.tiff();
+
+    @BeforeEach
+    void setUp() {
+        // the header is read in rounds starting at 0, 16 and 50, served by the block cache without a request
+        var blockCache = new CogBlockCache(1024 * 1024);
+        for (int start : new int[]{0, 16, 50}) {
+            blockCache.put(ASSET_PATH, start, Arrays.copyOfRange(tiff, start, tiff.length));
+        }
+        CogReadContext.setBlockCache(blockCache);
+        CogReadContext.setHeaderCache(new CogHeaderCache(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        CogReadContext.setBlockCache(null);
+        CogReadContext.setHeaderCache(null);
+    }
+
+    @Test
+    void extendsTheHeaderUntilAllIfdsAreFetched() {
+        var reader = new CachingHttpRangeReader(URI_SIGNED, 16);
+        assertThat(reader.getHeaderLength()).isEqualTo(16);
+
+        var header = reader.fetchHeader();
+
+        assertThat(header.length).isGreaterThanOrEqualTo(HEADER_END);
+        assertThat(header).isEqualTo(Arrays.copyOf(tiff, header.length));
+        // the header length reports what was fetched, not what was requested
+        assertThat(reader.getHeaderLength()).isEqualTo(header.length);
+    }
+
+    @Test
+    void servesTheHeaderOfAKnownAssetFromTheCache() {
+        var first = new CachingHttpRangeReader(URI_SIGNED, 16).fetchHeader();
+        CogReadContext.setBlockCache(new CogBlockCache(1024));
+
+        var reader = new CachingHttpRangeReader(URI.create(ASSET_PATH + "?sig=other"), 16);
+        var header = reader.fetchHeader();
+
+        assertThat(header).isEqualTo(first);
+        assertThat(reader.getHeaderLength()).isEqualTo(first.length);
+    }
+}
@@ -0,0 +1,188 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CogAssetMirrorTest {
+
+    private static final URI ASSET_A = URI.create("https://example.com/a.tif?sig=1");
+    private static final URI ASSET_B = URI.create("https://example.com/b.tif?sig=1");
+    private static final URI ASSET_C = URI.create("https://example.com/c.tif?sig=1");
+
+    @TempDir
+    Path directory;
+
+    private final FakeServer server = new FakeServer();
+    private final OkHttpClient httpClient = new OkHttpClient.Builder().addInterceptor(server).build();
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        executors.forEach(ExecutorService::shutdownNow);
+        httpClient.dispatcher().executorService().shutdownNow();
+    }
+
+    @Test
+    void mirrorsAnAssetOnceItIsHot() throws Exception {
+        var executor = executor();
+        var mirror = mirror(1000, 3, executor);
+
+        mirror.recordAccess(ASSET_A);
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_A))).isFalse();
+
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_A))).isTrue();
+        assertThat(mirror.read(CogBlockCache.assetPath(ASSET_A), 2, 5)).hasValue(new byte[]{2, 3, 4, 5});
+        assertThat(server.calls).hasValue(1);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedAssetOverTheBudget() throws Exception {
+        var executor = executor();
+        // two assets of 100 bytes fit
+        var mirror = mirror(250, 1, executor);
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+        mirror.recordAccess(ASSET_B);
+        drain(executor);
+
+        Thread.sleep(5);
+        mirror.read(CogBlockCache.assetPath(ASSET_A), 0, 9);
+        mirror.recordAccess(ASSET_C);
+        drain(executor);
+
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_A))).isTrue();
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_B))).isFalse();
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_C))).isTrue();
+        // the file of the evicted asset and its sidecar are deleted
+        try (var content = Files.list(directory)) {
+            assertThat(content).hasSize(4);
+        }
+    }
+
+    @Test
+    void restoresTheMirroredAssetsAfterARestart() throws Exception {
+        var executor = executor();
+        var mirror = mirror(1000, 1, executor);
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+        mirror.close();
+        Files.writeString(directory.resolve("interrupted.cog.part"), "partial");
+
+        var restarted = mirror(1000, 1, executor());
+
+        assertThat(restarted.contains(CogBlockCache.assetPath(ASSET_A))).isTrue();
+        assertThat(restarted.read(CogBlockCache.assetPath(ASSET_A), 98, 99)).hasValue(new byte[]{98, 99});
+        assertThat(Files.exists(directory.resolve("interrupted.cog.part"))).isFalse();
+        assertThat(server.calls).hasValue(1);
+    }
+
+    @Test
+    void skipsAnAssetLargerThanTheBudgetWithoutDownloadingItAgain() throws Exception {
+        var executor = executor();
+        var mirror = mirror(50, 1, executor);
+
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_A))).isFalse();
+        assertThat(server.calls).hasValue(1);
+        try (var content = Files.list(directory)) {
+            assertThat(content).isEmpty();
+        }
+    }
+
+    @Test
+    void backsOffAfterAFailedDownload() throws Exception {
+        var executor = executor();
+        var mirror = mirror(1000, 2, executor);
+        server.code = 503;
+
+        mirror.recordAccess(ASSET_A);
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+        mirror.recordAccess(ASSET_A);
+        mirror.recordAccess(ASSET_A);
+        drain(executor);
+
+        assertThat(mirror.contains(CogBlockCache.assetPath(ASSET_A))).isFalse();
+        assertThat(server.calls).hasValue(1);
+    }
+
+    private CogAssetMirror mirror(long maxBytes, int hotThreshold, ExecutorService executor) throws IOException {
+        return new CogAssetMirror(
+                directory,
+                maxBytes,
+                hotThreshold,
+                Duration.ofHours(1),
+                httpClient,
+                new CogCircuitBreaker(5, Duration.ofMinutes(1)),
+                executor
+        );
+    }
+
+    private ExecutorService executor() {
+        var executor = Executors.newSingleThreadExecutor();
+        executors.add(executor);
+        return executor;
+    }
+
+    /*
+    waits for the downloads scheduled so far, the executor runs them in order.
+     */
+    private static void drain(ExecutorService executor) throws Exception {
+        executor.submit(() -> {
+        }).get();
+    }
+
+    /*
+    serves assets of 100 bytes without a network, the byte at each offset is the offset itself.
+     */
+    private static final class FakeServer implements Interceptor {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile int code = 200;
+
+        @Override
+        public Response intercept(Chain chain) {
+            calls.incrementAndGet();
+            var content = new byte[100];
+            for (int i = 0; i < content.length; i++) {
+                content[i] = (byte) i;
+            }
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message("fake")
+                    .body(ResponseBody.create(MediaType.get("image/tiff"), content))
+                    .build();
+        }
+    }
+}
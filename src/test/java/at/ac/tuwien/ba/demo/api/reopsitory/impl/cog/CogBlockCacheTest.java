@@ -0,0 +1,81 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CogBlockCacheTest {
+
+    private static final String ASSET = CogBlockCache.assetPath(URI.create("https://example.com/scl.tif?sig=1"));
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void servesACachedRange() {
+        var cache = cache();
+        cache.put(ASSET, 100, new byte[]{1, 2, 3, 4});
+
+        assertThat(cache.get(ASSET, 100, 103)).containsExactly(1, 2, 3, 4);
+        // a shorter range starting at the same offset is served from the block too
+        assertThat(cache.get(ASSET, 100, 101)).containsExactly(1, 2);
+        assertThat(gets("hit")).isEqualTo(2);
+        assertThat(bytesSaved()).isEqualTo(6);
+    }
+
+    @Test
+    void missesAnUnknownOrShorterRange() {
+        var cache = cache();
+        cache.put(ASSET, 100, new byte[]{1, 2, 3, 4});
+
+        assertThat(cache.get(ASSET, 0, 3)).isNull();
+        assertThat(cache.get("https://example.com/other.tif", 100, 103)).isNull();
+        assertThat(cache.get(ASSET, 100, 109)).isNull();
+        assertThat(gets("miss")).isEqualTo(2);
+        assertThat(bytesSaved()).isZero();
+    }
+
+    @Test
+    void sharesTheBlocksOfAllSignedUrlsOfAnAsset() {
+        var cache = cache();
+        cache.put(CogBlockCache.assetPath(URI.create("https://example.com/scl.tif?sig=2")), 0, new byte[]{1, 2});
+
+        assertThat(cache.get(ASSET, 0, 1)).containsExactly(1, 2);
+    }
+
+    @Test
+    void returnsACopyOfTheCachedRange() {
+        var cache = cache();
+        cache.put(ASSET, 0, new byte[]{1, 2, 3, 4});
+
+        var block = cache.get(ASSET, 0, 3);
+        block[0] = 42;
+
+        assertThat(cache.get(ASSET, 0, 3)).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void keepsTheLongerRangeOfAnOffset() {
+        var cache = cache();
+        cache.put(ASSET, 0, new byte[]{1, 2, 3, 4});
+        cache.put(ASSET, 0, new byte[]{1, 2});
+
+        assertThat(cache.get(ASSET, 0, 3)).containsExactly(1, 2, 3, 4);
+    }
+
+    private CogBlockCache cache() {
+        var cache = new CogBlockCache(1024);
+        cache.bindTo(registry);
+        return cache;
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("cache", "cogBlocks").tag("result", result).functionCounter().count();
+    }
+
+    private double bytesSaved() {
+        return registry.get("cog.block.cache.bytes.saved").functionCounter().count();
+    }
+}
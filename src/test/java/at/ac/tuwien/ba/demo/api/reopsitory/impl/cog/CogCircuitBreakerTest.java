@@ -0,0 +1,78 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CogCircuitBreakerTest {
+
+    private static final String HOST = "example.com";
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        var circuitBreaker = new CogCircuitBreaker(3, Duration.ofMinutes(1));
+
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+
+        circuitBreaker.onFailure(HOST);
+        assertThat(circuitBreaker.allowRequest(HOST)).isFalse();
+        assertThat(circuitBreaker.isClosed(HOST)).isFalse();
+        // the circuit is kept per host
+        assertThat(circuitBreaker.allowRequest("other.example.com")).isTrue();
+    }
+
+    @Test
+    void resetsTheFailuresOnSuccess() {
+        var circuitBreaker = new CogCircuitBreaker(3, Duration.ofMinutes(1));
+
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onSuccess(HOST);
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+
+        assertThat(circuitBreaker.isClosed(HOST)).isTrue();
+    }
+
+    @Test
+    void closesAfterASuccessfulTrial() {
+        var circuitBreaker = new CogCircuitBreaker(1, Duration.ZERO);
+        circuitBreaker.onFailure(HOST);
+
+        // once the open duration passed a single trial is sent
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+        assertThat(circuitBreaker.allowRequest(HOST)).isFalse();
+
+        circuitBreaker.onSuccess(HOST);
+        assertThat(circuitBreaker.isClosed(HOST)).isTrue();
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+    }
+
+    @Test
+    void reopensAfterAFailedTrial() {
+        var circuitBreaker = new CogCircuitBreaker(2, Duration.ZERO);
+        circuitBreaker.onFailure(HOST);
+        circuitBreaker.onFailure(HOST);
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+
+        circuitBreaker.onFailure(HOST);
+
+        assertThat(circuitBreaker.isClosed(HOST)).isFalse();
+    }
+
+    @Test
+    void allowsAnotherTrialIfTheTrialWasCancelled() {
+        var circuitBreaker = new CogCircuitBreaker(1, Duration.ZERO);
+        circuitBreaker.onFailure(HOST);
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+
+        circuitBreaker.onCancelled(HOST);
+
+        assertThat(circuitBreaker.isClosed(HOST)).isFalse();
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+    }
+}
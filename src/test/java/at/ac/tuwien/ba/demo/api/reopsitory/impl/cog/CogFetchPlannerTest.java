@@ -0,0 +1,54 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CogFetchPlannerTest {
+
+    @Test
+    void mergesRangesWithinGap() {
+        var planner = new CogFetchPlanner(10, 1000);
+
+        var plan = planner.plan(
+                new long[]{100, 199},
+                new long[]{0, 49},
+                new long[]{55, 99},
+                new long[]{500, 599}
+        );
+
+        assertThat(plan).hasSize(2);
+        assertThat(plan.get(0).getStart()).isZero();
+        assertThat(plan.get(0).getEnd()).isEqualTo(199);
+        assertThat(plan.get(0).getMembers()).containsExactly(1, 2, 0);
+        assertThat(plan.get(1).getStart()).isEqualTo(500);
+        assertThat(plan.get(1).getMembers()).containsExactly(3);
+    }
+
+    @Test
+    void respectsMaxRequestSize() {
+        var planner = new CogFetchPlanner(10, 150);
+
+        var plan = planner.plan(
+                new long[]{0, 99},
+                new long[]{100, 199}
+        );
+
+        assertThat(plan).hasSize(2);
+    }
+
+    @Test
+    void slicesMergedResponse() {
+        var planner = new CogFetchPlanner(10, 1000);
+        long[][] ranges = {{0, 3}, {6, 7}};
+        var plan = planner.plan(ranges);
+        var data = new byte[]{0, 1, 2, 3, 4, 5, 6, 7};
+
+        var result = new byte[ranges.length][];
+        plan.get(0).slice(data, ranges, result);
+
+        assertThat(plan).hasSize(1);
+        assertThat(result[0]).isEqualTo(new byte[]{0, 1, 2, 3});
+        assertThat(result[1]).isEqualTo(new byte[]{6, 7});
+    }
+}
@@ -0,0 +1,28 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CogHedgingTest {
+
+    @Test
+    void estimatesTheRemainingLatencyOfTheSlowerRequests() {
+        try (var hedging = new CogHedging(0.9, Duration.ZERO, 10, Executors.newSingleThreadScheduledExecutor())) {
+            // latencies 1..128 ms, the percentile is recomputed every 32 samples
+            for (int i = 1; i <= 128; i++) {
+                hedging.recordLatency(1024, i * 1_000_000L);
+            }
+
+            assertThat(hedging.getDelayNanos(1024)).isEqualTo(116_000_000L);
+            // the requests of 91..128 ms took 19.5 ms longer on average than 90 ms
+            assertThat(hedging.estimateRemainingNanos(1024, 90_000_000L)).isEqualTo(19_500_000L);
+            assertThat(hedging.estimateRemainingNanos(1024, 128_000_000L)).isZero();
+            // another size bucket has no samples yet
+            assertThat(hedging.estimateRemainingNanos(10 * 1024 * 1024, 0)).isZero();
+        }
+    }
+}
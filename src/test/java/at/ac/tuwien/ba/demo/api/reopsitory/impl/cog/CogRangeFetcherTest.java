@@ -0,0 +1,176 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CogRangeFetcherTest {
+
+    private static final URI ASSET = URI.create("https://example.com/scl.tif");
+
+    // the range requests are answered after this time unless the server answers never
+    private static final long NEVER = -1;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<OkHttpClient> clients = new ArrayList<>();
+    private CogHedging hedging;
+
+    @AfterEach
+    void close() {
+        clients.forEach(client -> client.dispatcher().executorService().shutdownNow());
+        if (hedging != null) {
+            hedging.close();
+        }
+    }
+
+    @Test
+    void cancelsTheOriginalRequestIfTheHedgeWins() throws Exception {
+        var primary = new FakeServer(NEVER, 206);
+        var hedge = new FakeServer(0, 206);
+        var circuitBreaker = new CogCircuitBreaker(3, Duration.ofMinutes(1));
+        var fetcher = new CogRangeFetcher(client(primary), client(hedge), planner(), hedging(), circuitBreaker);
+
+        var result = fetcher.read(ASSET, new long[]{0, 9});
+
+        assertThat(result[0]).isEqualTo(content(0, 9));
+        assertThat(primary.cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(hedge.calls).hasValue(1);
+        assertThat(registry.get("cog.fetch.hedge.wins").functionCounter().count()).isEqualTo(1);
+        // the cancelled request is no failure of the host
+        assertThat(circuitBreaker.isClosed(ASSET.getHost())).isTrue();
+    }
+
+    @Test
+    void cancelsTheHedgeIfTheOriginalAnswersFirst() throws Exception {
+        var primary = new FakeServer(200, 206);
+        var hedge = new FakeServer(NEVER, 206);
+        var circuitBreaker = new CogCircuitBreaker(3, Duration.ofMinutes(1));
+        var fetcher = new CogRangeFetcher(client(primary), client(hedge), planner(), hedging(), circuitBreaker);
+
+        var result = fetcher.read(ASSET, new long[]{10, 19});
+
+        assertThat(result[0]).isEqualTo(content(10, 19));
+        assertThat(hedge.cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(registry.get("cog.fetch.hedged").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cog.fetch.hedge.wins").functionCounter().count()).isZero();
+    }
+
+    @Test
+    void opensTheCircuitOfAFailingHost() {
+        var server = new FakeServer(0, 503);
+        var circuitBreaker = new CogCircuitBreaker(2, Duration.ofMinutes(1));
+        var client = client(server);
+        var fetcher = new CogRangeFetcher(client, client, planner(), null, circuitBreaker);
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> fetcher.read(ASSET, new long[]{0, 9}))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("unexpected status 503");
+        }
+
+        assertThat(circuitBreaker.isClosed(ASSET.getHost())).isFalse();
+        assertThatThrownBy(() -> fetcher.read(ASSET, new long[]{0, 9}))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("circuit breaker is open");
+        // the open circuit rejects the request without sending it
+        assertThat(server.calls).hasValue(2);
+    }
+
+    /*
+    hedges after 20 ms, the latency recorded for the size of the test ranges is shorter.
+     */
+    private CogHedging hedging() {
+        hedging = new CogHedging(0.5, Duration.ofMillis(20), 1, Executors.newSingleThreadScheduledExecutor());
+        hedging.recordLatency(10, 1_000_000L);
+        hedging.bindTo(registry);
+        return hedging;
+    }
+
+    private static CogFetchPlanner planner() {
+        return new CogFetchPlanner(16 * 1024, 8 * 1024 * 1024);
+    }
+
+    /*
+    each client has a dispatcher of its own, like the clients of the application.
+     */
+    private OkHttpClient client(FakeServer server) {
+        var client = new OkHttpClient.Builder()
+                .addInterceptor(server)
+                .build();
+        clients.add(client);
+        return client;
+    }
+
+    private static byte[] content(long start, long end) {
+        var content = new byte[(int) (end - start + 1)];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (start + i);
+        }
+        return content;
+    }
+
+    /*
+    answers range requests without a network, the byte at each offset is the offset itself.
+     */
+    private static final class FakeServer implements Interceptor {
+
+        private final long delayMillis;
+        private final int code;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        FakeServer(long delayMillis, int code) {
+            this.delayMillis = delayMillis;
+            this.code = code;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            calls.incrementAndGet();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            while (delayMillis == NEVER || System.nanoTime() - deadline < 0) {
+                if (chain.call().isCanceled()) {
+                    cancelled.countDown();
+                    throw new IOException("Canceled");
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", e);
+                }
+            }
+
+            var range = chain.request().header("Range").substring("bytes=".length()).split("-");
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message("fake")
+                    .body(ResponseBody.create(
+                            MediaType.get("application/octet-stream"),
+                            content(Long.parseLong(range[0]), Long.parseLong(range[1]))
+                    ))
+                    .build();
+        }
+    }
+}
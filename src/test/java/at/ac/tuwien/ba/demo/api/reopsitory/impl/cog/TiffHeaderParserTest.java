@@ -0,0 +1,46 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.cog;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TiffHeaderParserTest {
+
+    // header (8) + ifd with 3 entries (2 + 36 + 4) + 4 tile offsets (16) = 66 bytes
+    static byte[] tiff() {
+        var buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        buffer.putShort((short) 3);
+        // image width, SHORT, inline
+        buffer.putShort((short) 256).putShort((short) 3).putInt(1).putShort((short) 512).putShort((short) 0);
+        // tile width, LONG, inline
+        buffer.putShort((short) 322).putShort((short) 4).putInt(1).putInt(256);
+        // tile offsets, 4 x LONG, stored after the ifd
+        buffer.putShort((short) 324).putShort((short) 4).putInt(4).putInt(50);
+        buffer.putInt(0);
+        return buffer.array();
+    }
+
+    @Test
+    void computesRequiredLengthIncludingTagData() {
+        var header = TiffHeaderParser.parse(tiff());
+
+        assertThat(header.complete()).isTrue();
+        assertThat(header.requiredLength()).isEqualTo(66);
+        assertThat(header.ifds()).hasSize(1);
+        assertThat(header.ifds().get(0).getWidth()).isEqualTo(512);
+        assertThat(header.ifds().get(0).getTileWidth()).isEqualTo(256);
+    }
+
+    @Test
+    void reportsIncompleteHeader() {
+        var header = TiffHeaderParser.parse(Arrays.copyOf(tiff(), 30));
+
+        assertThat(header.complete()).isFalse();
+        assertThat(header.requiredLength()).isEqualTo(50);
+    }
+}
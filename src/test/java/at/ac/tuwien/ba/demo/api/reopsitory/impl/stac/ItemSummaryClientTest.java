@@ -0,0 +1,182 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github11904212.java.stac.client.search.dto.QueryParameter;
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.GeometryCollection;
+import mil.nga.sf.wkt.GeometryReader;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemSummaryClientTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final URI SEARCH_URI = URI.create("https://example.com/api/stac/v1/search");
+
+    private final HttpClient httpClient = mock(HttpClient.class);
+
+    private final ItemSummaryClient client = new ItemSummaryClient(httpClient, MAPPER, SEARCH_URI, Duration.ofSeconds(5));
+
+    @Test
+    void sendsTheQueryWithFieldsAndCloudCoverBound() throws Exception {
+        respond(200, "{\"features\": []}");
+
+        client.search(query(), 20.0);
+
+        var request = sentRequest();
+        assertThat(request.uri()).isEqualTo(SEARCH_URI);
+        assertThat(request.method()).isEqualTo("POST");
+        assertThat(request.timeout()).hasValue(Duration.ofSeconds(5));
+
+        var body = body(request);
+        assertThat(texts(body.get("collections"))).containsExactly("sentinel-2-l2a");
+        // the datetime interval is sent as formatted, like the STAC client does
+        assertThat(body.get("datetime").asText()).isEqualTo("2022-06-01T00:00:00Z/2022-06-30T23:59:59Z");
+        assertThat(body.get("limit").asInt()).isEqualTo(50);
+        assertThat(body.get("intersects").get("type").asText()).isEqualTo("GeometryCollection");
+        assertThat(body.get("intersects").get("geometries").get(0).get("type").asText()).isEqualTo("Polygon");
+        // unset parameters are left out instead of being sent as null
+        assertThat(body.has("ids")).isFalse();
+        assertThat(body.has("bbox")).isFalse();
+
+        assertThat(texts(body.get("fields").get("include")))
+                .containsExactly("id", "collection", "properties.datetime", "properties.eo:cloud_cover");
+        assertThat(texts(body.get("fields").get("exclude"))).containsExactly("assets", "links", "geometry", "bbox");
+        assertThat(body.get("query").get("eo:cloud_cover").get("lt").asDouble()).isEqualTo(20.0);
+    }
+
+    @Test
+    void sendsNoQueryExtensionWithoutCloudCoverBound() throws Exception {
+        respond(200, "{\"features\": []}");
+
+        client.search(query(), null);
+
+        assertThat(body(sentRequest()).has("query")).isFalse();
+    }
+
+    @Test
+    void parsesTheSummariesOfTheFeatures() throws Exception {
+        respond(200, """
+                {
+                  "type": "FeatureCollection",
+                  "features": [
+                    {
+                      "id": "a",
+                      "collection": "sentinel-2-l2a",
+                      "properties": {"datetime": "2022-06-02T10:00:00Z", "eo:cloud_cover": 12.5, "platform": "x"},
+                      "assets": {"B04": {"href": "https://example.com/a.tif"}}
+                    },
+                    {"id": "b", "collection": "sentinel-2-l2a", "properties": {"datetime": "2022-06-01T10:00:00Z"}},
+                    {"id": "c"}
+                  ],
+                  "links": []
+                }""");
+
+        var summaries = client.search(query(), null);
+
+        assertThat(summaries).containsExactly(
+                new ItemSummary("a", "sentinel-2-l2a", "2022-06-02T10:00:00Z", 12.5),
+                new ItemSummary("b", "sentinel-2-l2a", "2022-06-01T10:00:00Z", null),
+                new ItemSummary("c", null, null, null)
+        );
+    }
+
+    @Test
+    void failsOnAnErrorStatus() throws Exception {
+        respond(502, "bad gateway");
+
+        assertThatThrownBy(() -> client.search(query(), null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("502");
+    }
+
+    private static QueryParameter query() throws IOException {
+        var query = new QueryParameter();
+        query.setCollections(List.of("sentinel-2-l2a"));
+        query.setDatetime("2022-06-01T00:00:00Z/2022-06-30T23:59:59Z");
+        query.setIntersects(new GeometryCollection(List.of(FeatureConverter.toGeometry(
+                GeometryReader.readGeometry("POLYGON((16 48, 16.1 48, 16.1 48.1, 16 48.1, 16 48))")
+        ))));
+        query.setLimit(50);
+        return query;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respond(int status, String body) throws Exception {
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.body()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        doReturn(response).when(httpClient).send(any(), any());
+    }
+
+    private HttpRequest sentRequest() throws Exception {
+        var captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).send(captor.capture(), any());
+        return captor.getValue();
+    }
+
+    /*
+    reads the body of a request by subscribing to its publisher.
+     */
+    private static JsonNode body(HttpRequest request) throws Exception {
+        var publisher = request.bodyPublisher().orElseThrow();
+        var content = new ByteArrayOutputStream();
+        var done = new CompletableFuture<Void>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                var bytes = new byte[item.remaining()];
+                item.get(bytes);
+                content.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.get(5, TimeUnit.SECONDS);
+        return MAPPER.readTree(content.toByteArray());
+    }
+
+    private static List<String> texts(JsonNode array) {
+        return MAPPER.convertValue(array, MAPPER.getTypeFactory().constructCollectionType(List.class, String.class));
+    }
+}
@@ -0,0 +1,275 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
+import io.github11904212.java.stac.client.core.Item;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.GeometryCollection;
+import mil.nga.sf.wkt.GeometryReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalItemCatalogTest {
+
+    private static final String COLLECTION = "sentinel-2-l2a";
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private GeoJsonToJtsConverter converter;
+    private LocalItemCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = directory.resolve("items.json");
+        // the converter is a spring component without a public constructor
+        var constructor = GeoJsonToJtsConverter.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        converter = constructor.newInstance();
+    }
+
+    @AfterEach
+    void close() {
+        if (catalog != null) {
+            catalog.close();
+        }
+    }
+
+    @Test
+    void answersCoveredSearchesNewestFirst() throws Exception {
+        writeItems(
+                item("a", 3, 1),
+                item("b", 2, 1),
+                item("c", 1, 1),
+                item("far", 1, 20)
+        );
+        catalog = catalog(new FileItemSource(file, converter), 100);
+        catalog.sync();
+
+        var items = catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(0, 3), 10);
+
+        assertThat(items).hasValueSatisfying(found ->
+                assertThat(found).extracting(Item::getId).containsExactly("c", "b", "a"));
+        assertThat(catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(0, 3), 2))
+                .hasValueSatisfying(found -> assertThat(found).extracting(Item::getId).containsExactly("c", "b"));
+    }
+
+    @Test
+    void leavesUncoveredSearchesToTheRemote() throws Exception {
+        writeItems(item("a", 1, 1));
+        catalog = catalog(new FileItemSource(file, converter), 100);
+
+        // not synced yet
+        assertThat(catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(0, 3), 10)).isEmpty();
+
+        catalog.sync();
+        // outside of the regions, before the history, another collection
+        assertThat(catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(8, 12), 10)).isEmpty();
+        assertThat(catalog.search(List.of(COLLECTION), daysAgo(400), daysAgo(0), polygon(0, 3), 10)).isEmpty();
+        assertThat(catalog.search(List.of("landsat-c2-l2"), daysAgo(10), daysAgo(0), polygon(0, 3), 10)).isEmpty();
+    }
+
+    @Test
+    void pagesThroughItemsSharingATimestamp() throws Exception {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            items.add(item("same-" + i, 2, 1));
+        }
+        items.add(item("older", 3, 1));
+        items.add(item("newer", 1, 1));
+        writeItems(items.toArray(String[]::new));
+        catalog = catalog(new FileItemSource(file, converter), 3);
+        catalog.sync();
+
+        var found = catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(0, 3), 100);
+
+        assertThat(found).hasValueSatisfying(result -> assertThat(result).hasSize(9));
+    }
+
+    @Test
+    void syncsOnlyNewItemsAfterACompleteSync() throws Exception {
+        writeItems(item("a", 5, 1), item("b", 4, 1));
+        var source = new RecordingSource(new FileItemSource(file, converter));
+        catalog = catalog(source, 100);
+        catalog.sync();
+
+        writeItems(item("a", 5, 1), item("b", 4, 1), item("c", 1, 1));
+        source.froms.clear();
+        catalog.sync();
+
+        // the second sync starts at the newest known item minus the overlap
+        assertThat(source.froms).containsExactly(daysAgo(4).minusDays(1));
+        assertThat(catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(0, 3), 10))
+                .hasValueSatisfying(found -> assertThat(found).extracting(Item::getId).containsExactly("c", "b", "a"));
+    }
+
+    @Test
+    void repeatsAFailedSyncFromTheSamePoint() throws Exception {
+        writeItems(item("a", 5, 1), item("b", 4, 1), item("c", 3, 1));
+        var source = new RecordingSource(new FileItemSource(file, converter));
+        catalog = catalog(source, 2);
+
+        // the second page fails
+        source.failAfter = 1;
+        assertThatThrownBy(() -> catalog.sync()).isInstanceOf(IOException.class);
+
+        source.failAfter = -1;
+        source.froms.clear();
+        catalog.sync();
+
+        // the failed sync did not advance the region, the items are fetched from the start of the history again
+        assertThat(source.froms.get(0)).isBefore(daysAgo(300));
+        assertThat(catalog.search(List.of(COLLECTION), daysAgo(10), daysAgo(0), polygon(0, 3), 10))
+                .hasValueSatisfying(found -> assertThat(found).hasSize(3));
+    }
+
+    @Test
+    void dropsItemsOlderThanTheHistory() throws Exception {
+        var acquired = Instant.now().minusMillis(200);
+        writeItems(item("recent", acquired, 1));
+        catalog = catalog(new FileItemSource(file, converter), 100, Duration.ofSeconds(1));
+        var registry = new SimpleMeterRegistry();
+        catalog.bindTo(registry);
+        catalog.sync();
+        assertThat(registry.get("stac.catalog.items").gauge().value()).isEqualTo(1);
+
+        Thread.sleep(1000);
+        catalog.sync();
+
+        assertThat(registry.get("stac.catalog.items").gauge().value()).isZero();
+        // the dropped time span is not covered anymore
+        var from = ZonedDateTime.ofInstant(acquired, ZoneOffset.UTC);
+        assertThat(catalog.search(List.of(COLLECTION), from, ZonedDateTime.now(ZoneOffset.UTC), polygon(0, 3), 10))
+                .isEmpty();
+    }
+
+    @Test
+    void dropsItemsOutsideTheRegions() throws Exception {
+        var source = new RecordingSource(new FileItemSource(file, converter));
+        catalog = catalog(source, 100);
+        writeItems(item("inside", 1, 1), item("outside", 2, 20));
+        // the source does not filter by region
+        source.ignoreRegion = true;
+        var registry = new SimpleMeterRegistry();
+        catalog.bindTo(registry);
+
+        catalog.sync();
+
+        assertThat(registry.get("stac.catalog.items").gauge().value()).isEqualTo(1);
+    }
+
+    private LocalItemCatalog catalog(ItemSource source, int pageLimit) {
+        return catalog(source, pageLimit, Duration.ofDays(365));
+    }
+
+    private LocalItemCatalog catalog(ItemSource source, int pageLimit, Duration history) {
+        return new LocalItemCatalog(
+                source,
+                converter,
+                List.of(COLLECTION),
+                List.of(polygon(0, 10)),
+                history,
+                Duration.ofDays(1),
+                Duration.ofHours(1),
+                pageLimit,
+                Executors.newSingleThreadScheduledExecutor()
+        );
+    }
+
+    private void writeItems(String... items) throws IOException {
+        Files.writeString(file, "{\"type\": \"FeatureCollection\", \"features\": ["
+                + String.join(",", items) + "]}");
+    }
+
+    /*
+    an item acquired the given number of days ago, covering a square with the given lower left corner.
+     */
+    private static String item(String id, int days, int corner) {
+        return item(id, NOW.minus(days, ChronoUnit.DAYS), corner);
+    }
+
+    private static String item(String id, Instant dateTime, int corner) {
+        int upper = corner + 1;
+        return String.format("""
+                        {
+                          "type": "Feature",
+                          "stac_version": "1.0.0",
+                          "id": "%s",
+                          "collection": "%s",
+                          "bbox": [%d, %d, %d, %d],
+                          "geometry": {
+                            "type": "Polygon",
+                            "coordinates": [[[%d, %d], [%d, %d], [%d, %d], [%d, %d], [%d, %d]]]
+                          },
+                          "properties": {"datetime": "%s"},
+                          "links": [],
+                          "assets": {}
+                        }""",
+                id, COLLECTION,
+                corner, corner, upper, upper,
+                corner, corner, upper, corner, upper, upper, corner, upper, corner, corner,
+                dateTime
+        );
+    }
+
+    private static ZonedDateTime daysAgo(int days) {
+        return ZonedDateTime.ofInstant(NOW.minus(days, ChronoUnit.DAYS), ZoneOffset.UTC);
+    }
+
+    private static GeometryCollection polygon(int lower, int upper) {
+        var wkt = String.format("POLYGON((%1$d %1$d, %2$d %1$d, %2$d %2$d, %1$d %2$d, %1$d %1$d))", lower, upper);
+        try {
+            return new GeometryCollection(List.of(FeatureConverter.toGeometry(GeometryReader.readGeometry(wkt))));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(wkt, e);
+        }
+    }
+
+    private static final class RecordingSource implements ItemSource {
+
+        private final ItemSource delegate;
+        private final List<ZonedDateTime> froms = new ArrayList<>();
+        private int calls;
+        private int failAfter = -1;
+        private boolean ignoreRegion;
+
+        private RecordingSource(ItemSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<Item> getItems(
+                String collection,
+                GeometryCollection region,
+                ZonedDateTime dateTimeFrom,
+                ZonedDateTime dateTimeTo,
+                int limit
+        ) throws IOException, InterruptedException {
+            froms.add(dateTimeFrom);
+            if (failAfter >= 0 && calls++ >= failAfter) {
+                throw new IOException("unavailable");
+            }
+            return delegate.getItems(collection, ignoreRegion ? polygon(-90, 90) : region, dateTimeFrom, dateTimeTo, limit);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import io.github11904212.java.stac.client.core.Item;
+import mil.nga.sf.geojson.GeometryCollection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ParallelItemSearchTest {
+
+    private static final ZonedDateTime START = ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private ParallelItemSearch search;
+
+    @AfterEach
+    void close() {
+        search.close();
+    }
+
+    @Test
+    void splitsFullSlicesAndKeepsOrder() throws Exception {
+        // one item per day over 100 days, a page holds 5 items, the initial slices 30 days
+        var source = new DailyItemSource(100);
+        search = new ParallelItemSearch(
+                source, Duration.ofDays(30), Duration.ofHours(1), 5, 3, Executors.newFixedThreadPool(3)
+        );
+
+        List<String> ids = new ArrayList<>();
+        search.search(List.of("c"), START, START.plusDays(99), new GeometryCollection(), item -> ids.add(item.getId()));
+
+        assertThat(ids).hasSize(100).doesNotHaveDuplicates();
+        assertThat(ids).isSortedAccordingTo(Comparator.reverseOrder());
+    }
+
+    @Test
+    void findsAnItemAtTheSplitPoint() throws Exception {
+        // the slice spans 1001 ms, its middle 500.5 ms, the newer half starts at the item at 500 ms
+        ItemSource source = (collection, region, from, to, limit) -> {
+            List<Item> items = new ArrayList<>();
+            for (long millis : new long[]{1000, 500, 0}) {
+                var dateTime = START.plus(Duration.ofMillis(millis));
+                if (!dateTime.isBefore(from) && !dateTime.isAfter(to) && items.size() < limit) {
+                    var item = mock(Item.class);
+                    when(item.getId()).thenReturn("item-" + millis);
+                    items.add(item);
+                }
+            }
+            return items;
+        };
+        search = new ParallelItemSearch(
+                source, Duration.ofDays(1), Duration.ofMillis(1), 2, 2, Executors.newFixedThreadPool(2)
+        );
+
+        List<String> ids = new ArrayList<>();
+        search.search(List.of("c"), START, START.plus(Duration.ofMillis(1001)), new GeometryCollection(),
+                item -> ids.add(item.getId()));
+
+        assertThat(ids).containsExactly("item-1000", "item-500", "item-0");
+    }
+
+    @Test
+    void failsIfASliceFails() {
+        ItemSource source = (collection, region, from, to, limit) -> {
+            throw new IOException("unavailable");
+        };
+        search = new ParallelItemSearch(
+                source, Duration.ofDays(30), Duration.ofHours(1), 5, 3, Executors.newFixedThreadPool(3)
+        );
+
+        assertThatThrownBy(() -> search.search(List.of("c"), START, START.plusDays(99), new GeometryCollection(), item -> {}))
+                .isInstanceOf(IOException.class)
+                .hasMessage("unavailable");
+    }
+
+    private record DailyItemSource(int days) implements ItemSource {
+
+        @Override
+        public List<Item> getItems(
+                String collection,
+                GeometryCollection region,
+                ZonedDateTime dateTimeFrom,
+                ZonedDateTime dateTimeTo,
+                int limit
+        ) {
+            List<Item> items = new ArrayList<>();
+            for (int day = days - 1; day >= 0 && items.size() < limit; day--) {
+                var dateTime = START.plusDays(day);
+                if (!dateTime.isBefore(dateTimeFrom) && !dateTime.isAfter(dateTimeTo)) {
+                    var item = mock(Item.class);
+                    when(item.getId()).thenReturn(String.format("item-%03d", day));
+                    items.add(item);
+                }
+            }
+            return items;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package at.ac.tuwien.ba.demo.api.reopsitory.impl.stac;
+
+import io.github11904212.java.stac.client.core.Asset;
+import io.github11904212.java.stac.client.core.Item;
+import io.github11904212.pcc.PlanetaryComputerClient;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SasTokenCacheTest {
+
+    private static final String CONTAINER = "https://account.blob.core.windows.net/sentinel2-l2";
+    private static final String OTHER_CONTAINER = "https://account.blob.core.windows.net/landsat";
+
+    private final PlanetaryComputerClient planetaryComputer = mock(PlanetaryComputerClient.class);
+
+    @Test
+    void signsTheAssetsOfAContainerWithOneToken() throws Exception {
+        var token = token(Instant.now().plus(1, ChronoUnit.HOURS));
+        signsWith(token);
+        var cache = cache();
+
+        var first = cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif");
+        var second = cache.sign(item(CONTAINER + "/b/B08.tif"), "B08", CONTAINER + "/b/B08.tif");
+
+        assertThat(first).isEqualTo(CONTAINER + "/a/B04.tif?" + token);
+        assertThat(second).isEqualTo(CONTAINER + "/b/B08.tif?" + token);
+        verify(planetaryComputer, times(1)).sign(any());
+    }
+
+    @Test
+    void signsEachContainerOnItsOwn() throws Exception {
+        signsWith(token(Instant.now().plus(1, ChronoUnit.HOURS)));
+        var cache = cache();
+
+        cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif");
+        cache.sign(item(OTHER_CONTAINER + "/a/B04.tif"), "B04", OTHER_CONTAINER + "/a/B04.tif");
+
+        verify(planetaryComputer, times(2)).sign(any());
+    }
+
+    @Test
+    void signsAgainIfTheTokenExpiresTooSoon() throws Exception {
+        // expires within the minimal remaining validity of 5 minutes
+        signsWith(token(Instant.now().plus(2, ChronoUnit.MINUTES)));
+        var cache = cache();
+
+        cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif");
+        cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif");
+
+        verify(planetaryComputer, times(2)).sign(any());
+    }
+
+    @Test
+    void refreshesAUsedTokenBeforeItExpires() throws Exception {
+        var expiring = token(Instant.now().plus(10, ChronoUnit.MINUTES));
+        var refreshed = token(Instant.now().plus(1, ChronoUnit.HOURS));
+        signsWith(expiring, refreshed);
+        var cache = cache();
+        cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif");
+
+        // expires within the refresh ahead of 15 minutes
+        cache.refreshExpiring();
+        var signed = cache.sign(item(CONTAINER + "/b/B04.tif"), "B04", CONTAINER + "/b/B04.tif");
+
+        assertThat(signed).isEqualTo(CONTAINER + "/b/B04.tif?" + refreshed);
+        verify(planetaryComputer, times(2)).sign(any());
+    }
+
+    @Test
+    void keepsTheQueryOfTheHref() throws Exception {
+        var token = token(Instant.now().plus(1, ChronoUnit.HOURS));
+        signsWith(token);
+        var cache = cache();
+        cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif");
+
+        var signed = cache.sign(
+                item(CONTAINER + "/b/B04.tif"),
+                "B04",
+                CONTAINER + "/b/B04.tif?version=2&sig=old"
+        );
+
+        // the old signature is replaced by the one of the token
+        assertThat(signed).isEqualTo(CONTAINER + "/b/B04.tif?version=2&" + token);
+    }
+
+    @Test
+    void signsConcurrentMissesOfAContainerOnce() throws Exception {
+        var token = token(Instant.now().plus(1, ChronoUnit.HOURS));
+        var signing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var calls = new AtomicInteger();
+        when(planetaryComputer.sign(any())).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            signing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return signedItem(invocation.getArgument(0), token);
+        });
+        var cache = cache();
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var first = executor.submit(() -> cache.sign(item(CONTAINER + "/a/B04.tif"), "B04", CONTAINER + "/a/B04.tif"));
+            assertThat(signing.await(5, TimeUnit.SECONDS)).isTrue();
+
+            var waiting = Executors.newSingleThreadExecutor();
+            try {
+                var second = waiting.submit(() -> cache.sign(item(CONTAINER + "/b/B08.tif"), "B08", CONTAINER + "/b/B08.tif"));
+                Thread.sleep(50);
+                release.countDown();
+
+                assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(CONTAINER + "/a/B04.tif?" + token);
+                // the waiting caller gets its own href signed with the shared token
+                assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(CONTAINER + "/b/B08.tif?" + token);
+            } finally {
+                waiting.shutdownNow();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls).hasValue(1);
+    }
+
+    private SasTokenCache cache() {
+        return new SasTokenCache(
+                planetaryComputer,
+                Duration.ofMinutes(5),
+                Duration.ofMinutes(15),
+                Duration.ofHours(1),
+                mock(ScheduledExecutorService.class)
+        );
+    }
+
+    /*
+    the planetary computer signs the assets of the items with the tokens in order, the last one is kept.
+     */
+    private void signsWith(String token, String... next) throws Exception {
+        var stubbing = when(planetaryComputer.sign(any()))
+                .thenAnswer(invocation -> signedItem(invocation.getArgument(0), token));
+        for (var nextToken : next) {
+            stubbing = stubbing.thenAnswer(invocation -> signedItem(invocation.getArgument(0), nextToken));
+        }
+    }
+
+    private static String token(Instant expiry) {
+        return "sv=2021-06-08&se=" + expiry.truncatedTo(ChronoUnit.SECONDS).toString().replace(":", "%3A")
+                + "&sr=c&sp=rl&sig=" + expiry.getEpochSecond();
+    }
+
+    /*
+    an unsigned item with a single asset, the asset key is not checked.
+     */
+    private static Item item(String href) {
+        var asset = mock(Asset.class);
+        when(asset.getHref()).thenReturn(href);
+        var item = mock(Item.class);
+        when(item.getAsset(any())).thenReturn(Optional.of(asset));
+        return item;
+    }
+
+    private static Item signedItem(Item item, String token) {
+        var href = item.getAsset("").orElseThrow().getHref();
+        return item(href + "?" + token);
+    }
+}
@@ -0,0 +1,148 @@
+package at.ac.tuwien.ba.demo.api.service.impl;
+
+import at.ac.tuwien.ba.demo.api.config.CloudProperties;
+import at.ac.tuwien.ba.demo.api.config.RasterProperties;
+import at.ac.tuwien.ba.demo.api.reopsitory.PcCogRepository;
+import at.ac.tuwien.ba.demo.api.reopsitory.PcStacRepository;
+import at.ac.tuwien.ba.demo.api.reopsitory.impl.cloud.CloudVerdictStore;
+import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
+import io.github11904212.java.stac.client.core.Item;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.media.jai.RasterFactory;
+import java.awt.image.DataBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CloudyServiceImplTest {
+
+    private static final int CLEAR = 4;
+    private static final int CLOUD = 9;
+
+    // the images cover twice the extent of the area, which is their lower left quarter
+    private static final ReferencedEnvelope ENVELOPE =
+            new ReferencedEnvelope(0, 2, 0, 2, DefaultGeographicCRS.WGS84);
+
+    private final PcCogRepository cogRepository = mock(PcCogRepository.class);
+    private final CloudVerdictStore verdictStore = mock(CloudVerdictStore.class);
+    private final Item item = mock(Item.class);
+    private final Geometry aoi = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(0, 1, 0, 1));
+
+    private final ExecutorService checkExecutor = Executors.newFixedThreadPool(4);
+    private ImageProcessingServiceImpl processingService;
+    private CloudyServiceImpl cloudyService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        var stacRepository = mock(PcStacRepository.class);
+        when(stacRepository.signAssetHref(any(), anyString())).thenReturn("https://example.com/scl.tif");
+        when(item.getId()).thenReturn("item");
+        when(item.getCollection()).thenReturn(Optional.of("sentinel-2-l2a"));
+        processingService = new ImageProcessingServiceImpl(mock(ObjectProvider.class), new RasterProperties());
+
+        ObjectProvider<CloudVerdictStore> verdictStoreProvider = mock(ObjectProvider.class);
+        when(verdictStoreProvider.getIfAvailable()).thenReturn(verdictStore);
+        cloudyService = new CloudyServiceImpl(
+                mock(GeoJsonToJtsConverter.class),
+                stacRepository,
+                cogRepository,
+                processingService,
+                new CloudProperties(),
+                checkExecutor,
+                verdictStoreProvider,
+                new SimpleMeterRegistry()
+        );
+    }
+
+    @AfterEach
+    void close() {
+        checkExecutor.shutdownNow();
+        processingService.close();
+    }
+
+    @Test
+    void findsACloudSmallerThanAnOverviewPixel() throws Exception {
+        // the overview sampled clear pixels only, a single full resolution pixel within the area is a cloud
+        var cloudy = image(16, CLEAR, 12 * 16 + 3, CLOUD);
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(160.0))).thenReturn(image(8, CLEAR));
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(PcCogRepository.NATIVE_RESOLUTION)))
+                .thenReturn(cloudy);
+
+        assertThat(cloudyService.isItemCloudy(item, aoi)).isTrue();
+    }
+
+    @Test
+    void confirmsAClearOverviewInFullResolution() throws Exception {
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(160.0))).thenReturn(image(8, CLEAR));
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(PcCogRepository.NATIVE_RESOLUTION)))
+                .thenReturn(image(16, CLEAR));
+
+        assertThat(cloudyService.isItemCloudy(item, aoi)).isFalse();
+        verify(cogRepository).fetchCoverage(any(), anyString(), any(), eq(PcCogRepository.NATIVE_RESOLUTION));
+        verify(verdictStore).putCloudy(eq("item"), anyString(), anyString(), eq(false));
+    }
+
+    @Test
+    void decidesACloudWithinTheAreaFromTheOverview() throws Exception {
+        // the overview pixel of row 5 and column 1 spans 0.25..0.5 x 0.5..0.75, it lies entirely within the area
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(160.0)))
+                .thenReturn(image(8, CLEAR, 5 * 8 + 1, CLOUD));
+
+        assertThat(cloudyService.isItemCloudy(item, aoi)).isTrue();
+        verify(cogRepository, never())
+                .fetchCoverage(any(), anyString(), any(), eq(PcCogRepository.NATIVE_RESOLUTION));
+        // a verdict of the overview is not stored
+        verify(verdictStore, never()).putCloudy(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void leavesACloudJustOutsideTheAreaToTheFullResolution() throws Exception {
+        // the overview pixel of row 7 and column 4 spans 1..1.25 x 0..0.25, it touches the area from outside
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(160.0)))
+                .thenReturn(image(8, CLEAR, 7 * 8 + 4, CLOUD));
+        // the full resolution pixel of row 15 and column 9 spans 1.125..1.25 x 0..0.125, outside the area
+        when(cogRepository.fetchCoverage(any(), anyString(), any(), eq(PcCogRepository.NATIVE_RESOLUTION)))
+                .thenReturn(image(16, CLEAR, 15 * 16 + 9, CLOUD));
+
+        assertThat(cloudyService.isItemCloudy(item, aoi)).isFalse();
+        verify(verdictStore).putCloudy(eq("item"), anyString(), anyString(), eq(false));
+    }
+
+    /*
+    a square scl image filled with a class, optionally with one pixel (row major index) of another class.
+     */
+    private static GridCoverage2D image(int size, int fill, int... pixel) {
+        var raster = RasterFactory.createBandedRaster(DataBuffer.TYPE_BYTE, size, size, 1, null);
+        int[] samples = new int[size * size];
+        Arrays.fill(samples, fill);
+        if (pixel.length == 2) {
+            samples[pixel[0]] = pixel[1];
+        }
+        raster.setSamples(0, 0, size, size, 0, samples);
+        return new GridCoverageFactory().create("scl", raster, ENVELOPE);
+    }
+}
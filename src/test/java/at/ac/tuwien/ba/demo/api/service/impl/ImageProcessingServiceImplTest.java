@@ -0,0 +1,142 @@
+package at.ac.tuwien.ba.demo.api.service.impl;
+
+import at.ac.tuwien.ba.demo.api.config.RasterProperties;
+import at.ac.tuwien.ba.demo.api.util.raster.NdviStatistics;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.media.jai.RasterFactory;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+class ImageProcessingServiceImplTest {
+
+    private static final int SIZE = 200;
+
+    private final List<ImageProcessingServiceImpl> services = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        services.forEach(ImageProcessingServiceImpl::close);
+    }
+
+    @Test
+    void cropsInParallelLikeSequentially() throws Exception {
+        var coverage = coverage();
+        // a triangle, so every row of the mask has another run
+        var aoi = JTSFactoryFinder.getGeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(0.1, 0.1), new Coordinate(0.9, 0.2), new Coordinate(0.4, 0.95), new Coordinate(0.1, 0.1)
+        });
+
+        var sequential = service(Integer.MAX_VALUE).cropToAoi(coverage, aoi);
+        var parallel = service(3).cropToAoi(coverage, aoi);
+
+        var expected = sequential.getRenderedImage().getData();
+        var actual = parallel.getRenderedImage().getData();
+        assertThat(actual.getBounds()).isEqualTo(expected.getBounds());
+        var bounds = expected.getBounds();
+        var expectedPixels = expected.getPixels(bounds.x, bounds.y, bounds.width, bounds.height, (int[]) null);
+        assertThat(actual.getPixels(bounds.x, bounds.y, bounds.width, bounds.height, (int[]) null))
+                .isEqualTo(expectedPixels);
+        // the area covers a part of the image only
+        assertThat(expectedPixels).contains(0);
+        assertThat(expectedPixels).isNotEqualTo(new int[expectedPixels.length]);
+    }
+
+    @Test
+    void fusesNdviStatisticsLikeMaskingTheNdviImage() throws Exception {
+        var nir = coverage(7);
+        var red = coverage(3);
+        var aoi = JTSFactoryFinder.getGeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(0.2, 0.15), new Coordinate(0.85, 0.3), new Coordinate(0.5, 0.9), new Coordinate(0.2, 0.15)
+        });
+        var service = service(16);
+
+        var fused = service.calcNdviStatistics(nir, red, aoi);
+
+        // the former pipeline: mask both bands, compute the ndvi image and loop over it
+        var ndvi = service.calcCoverageNdvi(service.cropToAoi(nir, aoi), service.cropToAoi(red, aoi));
+        var expected = new NdviStatistics();
+        var raster = ndvi.getRenderedImage().getData();
+        var bounds = raster.getBounds();
+        expected.add(raster.getPixels(bounds.x, bounds.y, bounds.width, bounds.height, (float[]) null), 0,
+                bounds.width * bounds.height);
+
+        assertThat(fused.getCount()).isPositive().isEqualTo(expected.getCount());
+        assertThat(fused.getMin()).isEqualTo(expected.getMin());
+        assertThat(fused.getMax()).isEqualTo(expected.getMax());
+        assertThat(fused.getAvg()).isCloseTo(expected.getAvg(), within(1e-5f));
+    }
+
+    @Test
+    void comparesTheGridsOfCoverages() {
+        var service = service(16);
+        var shifted = new GridCoverageFactory().create(
+                "band", coverage(3).getRenderedImage(), new ReferencedEnvelope(0.5, 1.5, 0, 1, DefaultGeographicCRS.WGS84)
+        );
+
+        assertThat(service.isSameGrid(coverage(7), coverage(3))).isTrue();
+        assertThat(service.isSameGrid(coverage(7), shifted)).isFalse();
+        var aoi = JTSFactoryFinder.getGeometryFactory().createPoint(new Coordinate(0.5, 0.5));
+        assertThatThrownBy(() -> service.calcNdviStatistics(coverage(7), shifted, aoi))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsStripsWithoutRows() {
+        assertThatThrownBy(() -> service(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ImageProcessingServiceImpl service(int stripRows) {
+        var properties = new RasterProperties();
+        properties.getProcessing().setStripRows(stripRows);
+        properties.getProcessing().setParallelism(4);
+        var service = new ImageProcessingServiceImpl(mock(ObjectProvider.class), properties);
+        services.add(service);
+        return service;
+    }
+
+    /*
+    a single band image whose samples are distinct and not 0, covering 0/0 to 1/1.
+     */
+    private static GridCoverage2D coverage() {
+        var raster = RasterFactory.createBandedRaster(DataBuffer.TYPE_USHORT, SIZE, SIZE, 1, null);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                raster.setSample(x, y, 0, 1 + y * SIZE + x);
+            }
+        }
+        return new GridCoverageFactory().create(
+                "band", raster, new ReferencedEnvelope(0, 1, 0, 1, DefaultGeographicCRS.WGS84)
+        );
+    }
+
+    /*
+    a reflectance band whose samples (1..1000) vary with the position and the given factor.
+     */
+    private static GridCoverage2D coverage(int factor) {
+        var raster = RasterFactory.createBandedRaster(DataBuffer.TYPE_USHORT, SIZE, SIZE, 1, null);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                raster.setSample(x, y, 0, 1 + (x * factor + y * 13) % 1000);
+            }
+        }
+        return new GridCoverageFactory().create(
+                "band", raster, new ReferencedEnvelope(0, 1, 0, 1, DefaultGeographicCRS.WGS84)
+        );
+    }
+}
@@ -0,0 +1,164 @@
+package at.ac.tuwien.ba.demo.api.service.impl;
+
+import at.ac.tuwien.ba.demo.api.config.CloudProperties;
+import at.ac.tuwien.ba.demo.api.reopsitory.ItemSummary;
+import at.ac.tuwien.ba.demo.api.reopsitory.PcStacRepository;
+import at.ac.tuwien.ba.demo.api.service.CloudyService;
+import at.ac.tuwien.ba.demo.api.util.GeoJsonToJtsConverter;
+import io.github11904212.java.stac.client.core.Item;
+import mil.nga.sf.geojson.GeometryCollection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemServiceImplTest {
+
+    private static final ZonedDateTime FROM = ZonedDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final ZonedDateTime TO = FROM.plusYears(1);
+
+    private final PcStacRepository stacRepository = mock(PcStacRepository.class);
+    private final CloudyService cloudyService = mock(CloudyService.class);
+
+    private ItemServiceImpl itemService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        itemService = new ItemServiceImpl(
+                stacRepository, cloudyService, mock(GeoJsonToJtsConverter.class), new CloudProperties()
+        );
+
+        when(stacRepository.getItemsById(anyList())).thenAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(id -> !id.endsWith("-missing"))
+                    .map(ItemServiceImplTest::item)
+                    .toList();
+        });
+        // every third item is cloudy, the limit is respected like the real service does
+        when(cloudyService.filterCloudyCandidates(anyList(), any(), any(), anyInt(), anyDouble()))
+                .thenAnswer(invocation -> {
+                    List<ItemSummary> candidates = invocation.getArgument(0);
+                    Function<ItemSummary, Optional<Item>> itemOf = invocation.getArgument(1);
+                    int limit = invocation.getArgument(3);
+                    List<ItemSummary> cloudFree = new ArrayList<>();
+                    for (var candidate : candidates) {
+                        if (cloudFree.size() >= limit) {
+                            break;
+                        }
+                        var item = itemOf.apply(candidate);
+                        if (item.isEmpty() || !isCloudy(item.get().getId())) {
+                            cloudFree.add(candidate);
+                        }
+                    }
+                    return cloudFree;
+                });
+    }
+
+    @Test
+    void keepsTheOrderOfTheCandidates() throws Exception {
+        var summaries = summaries(120, 50.0);
+        summaries.set(1, new ItemSummary("item-001", "c", null, 0.0));
+        summaries.set(3, new ItemSummary("item-003", "c", null, 0.0));
+        searchReturns(summaries);
+
+        var result = itemService.getItemSummariesInInterval(
+                List.of("c"), FROM, TO, new GeometryCollection(), 5, true, 100, 10.0, 0
+        );
+
+        // item-003 is cloudy by its pixels, but clear by its scene cloud cover
+        assertThat(result).extracting(ItemSummary::id)
+                .containsExactly("item-001", "item-002", "item-003", "item-004", "item-005");
+    }
+
+    @Test
+    void checksClearScenesWithoutClearSceneCover() throws Exception {
+        var summaries = summaries(6, 50.0);
+        summaries.set(3, new ItemSummary("item-003", "c", null, 0.0));
+        searchReturns(summaries);
+
+        var result = itemService.getItemSummariesInInterval(
+                List.of("c"), FROM, TO, new GeometryCollection(), 5, true, 100, null, 0
+        );
+
+        // a clear scene may still be cloudy within the area, e.g. by cloud shadows
+        assertThat(result).extracting(ItemSummary::id).containsExactly("item-001", "item-002", "item-004", "item-005");
+    }
+
+    @Test
+    void stopsLoadingItemsOnceEnoughAreCloudFree() throws Exception {
+        searchReturns(summaries(120, 50.0));
+
+        var result = itemService.getItemSummariesInInterval(
+                List.of("c"), FROM, TO, new GeometryCollection(), 10, true, 100, 10.0, 0
+        );
+
+        assertThat(result).hasSize(10);
+        // the first batch of candidates holds enough cloud free items, the later ones are never loaded
+        verify(stacRepository, times(1)).getItemsById(anyList());
+    }
+
+    @Test
+    void loadsFurtherBatchesUntilEnoughAreCloudFree() throws Exception {
+        searchReturns(summaries(120, 50.0));
+
+        var result = itemService.getItemSummariesInInterval(
+                List.of("c"), FROM, TO, new GeometryCollection(), 40, true, 100, 10.0, 0
+        );
+
+        assertThat(result).hasSize(40).isSortedAccordingTo((a, b) -> a.id().compareTo(b.id()));
+        verify(stacRepository, times(2)).getItemsById(anyList());
+    }
+
+    @Test
+    void dropsItemsWhichCouldNotBeLoaded() throws Exception {
+        var summaries = summaries(3, 50.0);
+        summaries.set(1, new ItemSummary("item-001-missing", "c", null, 50.0));
+        searchReturns(summaries);
+
+        var result = itemService.getItemSummariesInInterval(
+                List.of("c"), FROM, TO, new GeometryCollection(), 10, true, 100, 10.0, 0
+        );
+
+        assertThat(result).extracting(ItemSummary::id).containsExactly("item-002");
+    }
+
+    private void searchReturns(List<ItemSummary> summaries) throws Exception {
+        when(stacRepository.getItemSummariesInIntervalAndAoi(any(), any(), any(), any(), anyInt(), any()))
+                .thenReturn(summaries);
+    }
+
+    private static List<ItemSummary> summaries(int count, double cloudCover) {
+        List<ItemSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            summaries.add(new ItemSummary(String.format("item-%03d", i), "c", null, cloudCover));
+        }
+        return summaries;
+    }
+
+    private static boolean isCloudy(String id) {
+        return Integer.parseInt(id.substring(5, 8)) % 3 == 0;
+    }
+
+    private static Item item(String id) {
+        var item = mock(Item.class);
+        when(item.getId()).thenReturn(id);
+        return item;
+    }
+}
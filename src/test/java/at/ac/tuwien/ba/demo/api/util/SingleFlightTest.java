@@ -0,0 +1,119 @@
+package at.ac.tuwien.ba.demo.api.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void sharesTheResultOfACallInFlight() throws Exception {
+        flight.bindTo(registry, "calls");
+        var release = new CountDownLatch(1);
+        var executions = new AtomicInteger();
+
+        var first = CompletableFuture.supplyAsync(() -> execute(() -> {
+            executions.incrementAndGet();
+            release.await();
+            return "result";
+        }));
+        awaitExecuted(1);
+        var second = CompletableFuture.supplyAsync(() -> execute(() -> "unused"));
+        awaitCoalesced();
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void sharesTheCheckedExceptionOfACall() throws Exception {
+        flight.bindTo(registry, "calls");
+        var release = new CountDownLatch(1);
+
+        var first = CompletableFuture.runAsync(() -> assertThatThrownBy(() -> flight.execute("key", () -> {
+            release.await();
+            throw new IOException("unavailable");
+        })).isInstanceOf(IOException.class));
+        awaitExecuted(1);
+        var waiterFailure = new AtomicReference<Throwable>();
+        var second = CompletableFuture.runAsync(() -> {
+            try {
+                flight.<IOException>execute("key", () -> "unused");
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                waiterFailure.set(e);
+            }
+        });
+        awaitCoalesced();
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(waiterFailure.get()).isInstanceOf(IOException.class).hasMessage("unavailable");
+    }
+
+    @Test
+    void executesTheCallAgainIfTheExecutingCallerGotInterrupted() throws Exception {
+        flight.bindTo(registry, "calls");
+        var interrupted = new CompletableFuture<Throwable>();
+
+        var first = new Thread(() -> {
+            try {
+                flight.execute("key", () -> {
+                    new CountDownLatch(1).await();
+                    return "never";
+                });
+            } catch (InterruptedException e) {
+                interrupted.complete(e);
+            }
+        });
+        first.start();
+        awaitExecuted(1);
+        var second = CompletableFuture.supplyAsync(() -> execute(() -> "retried"));
+        awaitCoalesced();
+        first.interrupt();
+
+        assertThat(interrupted.get(5, TimeUnit.SECONDS)).isInstanceOf(InterruptedException.class);
+        // the waiting caller was not interrupted, it executes the call itself
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("retried");
+        first.join();
+    }
+
+    private String execute(SingleFlight.Call<String, Exception> call) {
+        try {
+            return flight.execute("key", call);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitExecuted(long count) throws InterruptedException {
+        awaitCount("executed", count);
+    }
+
+    private void awaitCoalesced() throws InterruptedException {
+        awaitCount("coalesced", 1);
+    }
+
+    private void awaitCount(String result, long count) throws InterruptedException {
+        var counter = registry.get("calls").tag("result", result).functionCounter();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter.count() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(counter.count()).isGreaterThanOrEqualTo(count);
+    }
+}
@@ -0,0 +1,57 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.opengis.referencing.operation.TransformException;
+
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AoiMaskCacheTest {
+
+    private static final Rectangle RASTER = new Rectangle(0, 0, 10, 10);
+
+    private final AoiMaskCache cache = new AoiMaskCache(1024 * 1024);
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @Test
+    void reusesTheMaskOfTheSameGridAndArea() throws TransformException {
+        var grid = grid(new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84));
+
+        var first = cache.get(grid, RASTER, "aoi", this::compute);
+        var second = cache.get(grid(new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84)),
+                RASTER, "aoi", this::compute);
+
+        assertThat(second).isSameAs(first);
+        assertThat(computations).hasValue(1);
+    }
+
+    @Test
+    void computesTheMaskOfAnotherGridOrArea() throws TransformException {
+        var grid = grid(new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84));
+        var shiftedGrid = grid(new ReferencedEnvelope(5, 15, 0, 10, DefaultGeographicCRS.WGS84));
+
+        cache.get(grid, RASTER, "aoi", this::compute);
+        cache.get(shiftedGrid, RASTER, "aoi", this::compute);
+        cache.get(grid, RASTER, "other", this::compute);
+
+        assertThat(computations).hasValue(3);
+    }
+
+    private AoiMask compute() {
+        computations.incrementAndGet();
+        var square = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(1.6, 4.4, 1.6, 4.4));
+        return AoiMask.rasterize(square, RASTER);
+    }
+
+    private static GridGeometry2D grid(ReferencedEnvelope envelope) {
+        return new GridGeometry2D(new GridEnvelope2D(RASTER), envelope);
+    }
+}
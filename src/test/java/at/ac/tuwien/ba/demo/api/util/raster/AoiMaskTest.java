@@ -0,0 +1,119 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AoiMaskTest {
+
+    @Test
+    void containsPixelsTouchedByTheArea() {
+        // pixel centers lie on integer coordinates, the square covers the pixels 2..4 fully
+        var square = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(1.6, 4.4, 1.6, 4.4));
+
+        var mask = AoiMask.rasterize(square, new Rectangle(0, 0, 10, 10));
+
+        assertThat(mask.getBounds()).isEqualTo(new Rectangle(2, 2, 3, 3));
+        assertThat(mask.getCount()).isEqualTo(9);
+        assertThat(mask.contains(2, 2)).isTrue();
+        assertThat(mask.contains(1, 2)).isFalse();
+        assertThat(mask.contains(5, 5)).isFalse();
+    }
+
+    @Test
+    void excludesPixelsOutsideAPolygon() {
+        var triangle = JTSFactoryFinder.getGeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(-0.5, -0.5),
+                new Coordinate(99.5, -0.5),
+                new Coordinate(-0.5, 99.5),
+                new Coordinate(-0.5, -0.5)
+        });
+
+        var mask = AoiMask.rasterize(triangle, new Rectangle(0, 0, 100, 100));
+
+        assertThat(mask.contains(0, 0)).isTrue();
+        assertThat(mask.contains(70, 0)).isTrue();
+        assertThat(mask.contains(0, 99)).isTrue();
+        assertThat(mask.contains(70, 70)).isFalse();
+        assertThat(mask.contains(99, 99)).isFalse();
+    }
+
+    @Test
+    void containsOnlyPixelsWithinTheAreaForTheInterior() {
+        // the pixels 2 and 4 are touched by the border of the square, only the pixel 3 lies within it
+        var square = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(1.6, 4.4, 1.6, 4.4));
+
+        var mask = AoiMask.rasterizeInterior(square, new Rectangle(0, 0, 10, 10));
+
+        assertThat(mask.getCount()).isEqualTo(1);
+        assertThat(mask.contains(3, 3)).isTrue();
+        assertThat(mask.contains(2, 3)).isFalse();
+        assertThat(mask.contains(4, 4)).isFalse();
+    }
+
+    @Test
+    void hasNoInteriorForAnAreaSmallerThanAPixel() {
+        var square = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(3.1, 3.2, 3.1, 3.2));
+
+        assertThat(AoiMask.rasterizeInterior(square, new Rectangle(0, 0, 10, 10)).getCount()).isZero();
+    }
+
+    @Test
+    void isEmptyOutsideTheRaster() {
+        var square = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(20, 30, 20, 30));
+
+        var mask = AoiMask.rasterize(square, new Rectangle(0, 0, 10, 10));
+
+        assertThat(mask.getCount()).isZero();
+        assertThat(mask.getBounds().isEmpty()).isTrue();
+    }
+
+    @Test
+    void excludesPixelsWithinAHole() {
+        var factory = JTSFactoryFinder.getGeometryFactory();
+        var shell = factory.createLinearRing(factory.toGeometry(new Envelope(-0.5, 9.5, -0.5, 9.5)).getCoordinates());
+        var hole = factory.createLinearRing(factory.toGeometry(new Envelope(2.6, 6.4, 2.6, 6.4)).getCoordinates());
+
+        var mask = AoiMask.rasterize(factory.createPolygon(shell, new LinearRing[]{hole}), new Rectangle(0, 0, 10, 10));
+
+        // the pixels 4..5 lie fully within the hole, the pixels 3 and 6 are touched by its boundary
+        assertThat(mask.getCount()).isEqualTo(100 - 4);
+        assertThat(mask.contains(4, 4)).isFalse();
+        assertThat(mask.contains(5, 5)).isFalse();
+        assertThat(mask.contains(3, 4)).isTrue();
+        assertThat(mask.contains(6, 5)).isTrue();
+    }
+
+    @Test
+    void containsThePixelOfAnAreaSmallerThanAPixel() {
+        var square = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(3.1, 3.2, 3.1, 3.2));
+
+        var mask = AoiMask.rasterize(square, new Rectangle(0, 0, 10, 10));
+
+        assertThat(mask.getCount()).isEqualTo(1);
+        assertThat(mask.contains(3, 3)).isTrue();
+    }
+
+    @Test
+    void passesTheRunsOfEachRow() throws ParseException {
+        var multiPolygon = new WKTReader().read(
+                "MULTIPOLYGON (((0 0, 2 0, 2 0.2, 0 0.2, 0 0)), ((69.6 0, 80 0, 80 0.2, 69.6 0.2, 69.6 0)))"
+        );
+        List<int[]> runs = new ArrayList<>();
+
+        AoiMask.rasterize(multiPolygon, new Rectangle(0, 0, 100, 1))
+                .forEachRun((x, y, length) -> runs.add(new int[]{x, y, length}));
+
+        assertThat(runs).containsExactly(new int[]{0, 0, 3}, new int[]{70, 0, 11});
+    }
+}
@@ -0,0 +1,72 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import javax.media.jai.RasterFactory;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class NdviKernelTest {
+
+    @Test
+    void computesTheIndexOfUnsignedShortBands() {
+        var nir = raster(DataBuffer.TYPE_USHORT, 3000, 60000, 0, 100);
+        var red = raster(DataBuffer.TYPE_USHORT, 1000, 20000, 500, 0);
+
+        var ndvi = NdviKernel.compute(nir, red, 0);
+
+        assertThat(ndvi.getSampleFloat(0, 0, 0)).isCloseTo(0.5f, within(1e-6f));
+        // values above the signed short range stay positive
+        assertThat(ndvi.getSampleFloat(1, 0, 0)).isCloseTo(0.5f, within(1e-6f));
+        assertThat(ndvi.getSampleFloat(0, 1, 0)).isNaN();
+        assertThat(ndvi.getSampleFloat(1, 1, 0)).isNaN();
+    }
+
+    @Test
+    void computesTheIndexOfOtherBandsRowByRow() {
+        var nir = raster(DataBuffer.TYPE_INT, 3000, 2000, 0, 100);
+        var red = raster(DataBuffer.TYPE_INT, 1000, 2000, 500, 0);
+
+        var ndvi = NdviKernel.compute(nir, red, 0);
+
+        assertThat(ndvi.getSampleFloat(0, 0, 0)).isCloseTo(0.5f, within(1e-6f));
+        assertThat(ndvi.getSampleFloat(1, 0, 0)).isZero();
+        assertThat(ndvi.getSampleFloat(0, 1, 0)).isNaN();
+        assertThat(ndvi.getSampleFloat(1, 1, 0)).isNaN();
+    }
+
+    @Test
+    void accumulatesTheIndexOfMaskedPixels() {
+        var nir = raster(DataBuffer.TYPE_USHORT, 3000, 2000, 0, 100);
+        var red = raster(DataBuffer.TYPE_USHORT, 1000, 6000, 500, 0);
+        // the pixels 0/0, 1/0 and 0/1
+        var triangle = JTSFactoryFinder.getGeometryFactory().createPolygon(new Coordinate[]{
+                new Coordinate(-0.4, -0.4),
+                new Coordinate(0.9, -0.4),
+                new Coordinate(-0.4, 0.9),
+                new Coordinate(-0.4, -0.4)
+        });
+        var mask = AoiMask.rasterize(triangle, new Rectangle(0, 0, 2, 2));
+        var statistics = new NdviStatistics();
+
+        NdviKernel.accumulate(nir, red, mask, nir.getBounds(), 0, statistics);
+
+        // the no data pixel 0/1 is skipped
+        assertThat(statistics.getCount()).isEqualTo(2);
+        assertThat(statistics.getMin()).isCloseTo(-0.5f, within(1e-6f));
+        assertThat(statistics.getMax()).isCloseTo(0.5f, within(1e-6f));
+        assertThat(statistics.getAvg()).isCloseTo(0f, within(1e-6f));
+    }
+
+    private static WritableRaster raster(int dataType, int... samples) {
+        var raster = RasterFactory.createBandedRaster(dataType, 2, 2, 1, null);
+        raster.setSamples(0, 0, 2, 2, 0, samples);
+        return raster;
+    }
+}
@@ -0,0 +1,69 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import org.junit.jupiter.api.Test;
+
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RasterTilesTest {
+
+    // 10 x 10 pixels in tiles of 4 x 4, the pixel x/y holds the value 10 * y + x
+    private final TiledImage image = createImage();
+
+    @Test
+    void visitsTheTilesIntersectingTheRegion() {
+        List<Rectangle> areas = new ArrayList<>();
+
+        boolean complete = RasterTiles.forEach(image, new Rectangle(3, 3, 2, 6), (tile, area) -> {
+            assertThat(tile.getBounds().contains(area)).isTrue();
+            areas.add(area);
+            return true;
+        });
+
+        assertThat(complete).isTrue();
+        assertThat(areas).containsExactly(
+                new Rectangle(3, 3, 1, 1), new Rectangle(4, 3, 1, 1),
+                new Rectangle(3, 4, 1, 4), new Rectangle(4, 4, 1, 4),
+                new Rectangle(3, 8, 1, 1), new Rectangle(4, 8, 1, 1)
+        );
+    }
+
+    @Test
+    void stopsWhenTheVisitorDoes() {
+        List<Rectangle> areas = new ArrayList<>();
+
+        boolean complete = RasterTiles.forEach(image, (tile, area) -> {
+            areas.add(area);
+            return tile.getSample(area.x, area.y, 0) < 4;
+        });
+
+        assertThat(complete).isFalse();
+        assertThat(areas).containsExactly(new Rectangle(0, 0, 4, 4), new Rectangle(4, 0, 4, 4));
+    }
+
+    @Test
+    void readsARegionSpanningSeveralTiles() {
+        var region = RasterTiles.regionOf(image, new Rectangle(2, 2, 4, 4));
+
+        assertThat(region.getBounds()).isEqualTo(new Rectangle(2, 2, 4, 4));
+        assertThat(region.getSample(5, 5, 0)).isEqualTo(55);
+        assertThat(RasterTiles.regionOf(image, new Rectangle(4, 4, 2, 2))).isSameAs(image.getTile(1, 1));
+    }
+
+    private static TiledImage createImage() {
+        var sampleModel = RasterFactory.createBandedSampleModel(DataBuffer.TYPE_INT, 4, 4, 1);
+        var image = new TiledImage(0, 0, 10, 10, 0, 0, sampleModel, null);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                image.setSample(x, y, 0, 10 * y + x);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,49 @@
+package at.ac.tuwien.ba.demo.api.util.raster;
+
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SclHistogramTest {
+
+    @Test
+    void countsOnlyMaskedPixels() {
+        var raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, 4, 4, 1, null);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                raster.setSample(x, y, 0, x < 2 ? 4 : 9);
+            }
+        }
+        // the left three columns
+        var area = JTSFactoryFinder.getGeometryFactory().toGeometry(new Envelope(-0.4, 2.4, -0.4, 3.4));
+        var mask = AoiMask.rasterize(area, new Rectangle(0, 0, 4, 4));
+
+        var histogram = SclHistogram.of(raster, mask);
+
+        assertThat(histogram.getTotal()).isEqualTo(12);
+        assertThat(histogram.getCount(4)).isEqualTo(8);
+        assertThat(histogram.getCount(9)).isEqualTo(4);
+    }
+
+    @Test
+    void cloudPercentIgnoresNoData() {
+        var counts = new long[SclHistogram.CLASSES];
+        counts[0] = 50;
+        counts[4] = 30;
+        counts[9] = 10;
+        var clear = new boolean[SclHistogram.CLASSES];
+        clear[0] = true;
+        clear[4] = true;
+
+        var histogram = SclHistogram.of(counts);
+
+        assertThat(histogram.cloudPercent(clear, 0)).isCloseTo(25, within(1e-9));
+    }
+}